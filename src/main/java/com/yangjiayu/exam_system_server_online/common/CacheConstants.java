@@ -36,6 +36,16 @@ public class CacheConstants {
      */
     public static final String PAPER_DETAIL_KEY = "paper:detail:";
     
+    /**
+     * 试卷快照版本号key前缀（发布 下架 题目修改时自增，本地缓存据此判断是否过期）
+     */
+    public static final String PAPER_VERSION_KEY = "paper:version:";
+
+    /**
+     * 试卷快照缓存过期时间（秒）
+     */
+    public static final long PAPER_DETAIL_EXPIRE_SECONDS = 24 * 3600; // 1天
+
     /**
      * 考试记录详情缓存key前缀
      */
@@ -51,6 +61,204 @@ public class CacheConstants {
      */
     public static final String QUESTION_VIEW_COUNT_KEY = "question:view_count";
     
+    /**
+     * 待判卷任务队列key（list，元素为考试记录id）
+     */
+    public static final String GRADING_QUEUE_KEY = "exam_record:grading:queue";
+
+    /**
+     * 判卷中任务队列key（list，节点宕机后用于找回任务）
+     */
+    public static final String GRADING_PROCESSING_KEY = "exam_record:grading:processing";
+
+    /**
+     * 判卷任务状态key前缀（hash，前端轮询判卷进度）
+     */
+    public static final String GRADING_STATUS_KEY = "exam_record:grading:status:";
+
+    /**
+     * 判卷任务状态过期时间（秒）
+     */
+    public static final long GRADING_STATUS_EXPIRE_SECONDS = 7 * 24 * 3600; // 7天
+
+    /**
+     * 简答题ai判卷结果缓存key前缀
+     * 完整格式: question:grading_result:题目id:答案版本:满分:学生答案摘要
+     */
+    public static final String GRADING_RESULT_KEY = "question:grading_result:";
+
+    /**
+     * kimi每分钟请求数限流器key
+     */
+    public static final String KIMI_REQUEST_LIMITER_KEY = "kimi:rate_limit:requests";
+
+    /**
+     * kimi每分钟token数限流器key
+     */
+    public static final String KIMI_TOKEN_LIMITER_KEY = "kimi:rate_limit:tokens";
+
+    /**
+     * kimi在途请求信号量key
+     */
+    public static final String KIMI_IN_FLIGHT_KEY = "kimi:rate_limit:in_flight";
+
+    /**
+     * 开始考试分布式锁key前缀
+     * 完整格式: exam_record:start_lock:学生姓名:试卷id
+     */
+    public static final String EXAM_START_LOCK_KEY = "exam_record:start_lock:";
+
+    /**
+     * 开始考试幂等key前缀（value为考试记录id）
+     * 完整格式: exam_record:start_idempotency:学生姓名:请求头Idempotency-Key
+     */
+    public static final String EXAM_START_IDEMPOTENCY_KEY = "exam_record:start_idempotency:";
+
+    /**
+     * 开始考试幂等key过期时间（秒）
+     */
+    public static final long EXAM_START_IDEMPOTENCY_EXPIRE_SECONDS = 24 * 3600; // 1天
+
+    /**
+     * 考试答案草稿key前缀（hash，field为题目id，value为答案）
+     */
+    public static final String EXAM_ANSWER_DRAFT_KEY = "exam_record:answer_draft:";
+
+    /**
+     * 已交卷标记key前缀，存在时拒绝自动保存
+     */
+    public static final String EXAM_SUBMITTED_KEY = "exam_record:submitted:";
+
+    /**
+     * 答案草稿和已交卷标记的过期时间（秒）
+     */
+    public static final long EXAM_ANSWER_DRAFT_EXPIRE_SECONDS = 24 * 3600; // 1天
+
+    /**
+     * 进行中考试的截止时间key（zset，member为考试记录id，score为截止时间毫秒）
+     */
+    public static final String EXAM_DEADLINE_KEY = "exam_record:deadline";
+
+    /**
+     * 整卷重新判卷进度key前缀（hash）
+     */
+    public static final String PAPER_REGRADE_PROGRESS_KEY = "paper:regrade:progress:";
+
+    /**
+     * 整卷重新判卷互斥key前缀，同一张试卷同时只能有一个重新判卷任务
+     */
+    public static final String PAPER_REGRADE_LOCK_KEY = "paper:regrade:lock:";
+
+    /**
+     * 整卷重新判卷的简答题答案版本key前缀（hash：题目id -> 上一次重新判卷使用的答案版本）
+     */
+    public static final String PAPER_REGRADE_VERSION_KEY = "paper:regrade:version:";
+
+    /**
+     * 整卷重新判卷互斥key和进度的过期时间（秒）
+     */
+    public static final long PAPER_REGRADE_EXPIRE_SECONDS = 24 * 3600; // 1天
+
+    /**
+     * 试卷排行榜key前缀（zset，member为考试记录id，score为 得分*10^7-用时秒数）
+     */
+    public static final String RANKING_PAPER_KEY = "exam_record:ranking:paper:";
+
+    /**
+     * 总排行榜key（zset）
+     */
+    public static final String RANKING_GLOBAL_KEY = "exam_record:ranking:global";
+
+    /**
+     * 排行榜展示信息key（hash，考试记录id -> json）
+     */
+    public static final String RANKING_INFO_KEY = "exam_record:ranking:info";
+
+    /**
+     * 排行榜已经从数据库构建的标记key
+     */
+    public static final String RANKING_BUILT_KEY = "exam_record:ranking:built";
+
+    /**
+     * 已经有排行榜的试卷id集合key（set），重建时据此删除没有记录的试卷排行榜，不需要 KEYS 扫描
+     */
+    public static final String RANKING_PAPERS_KEY = "exam_record:ranking:papers";
+
+    /**
+     * 排行榜重建互斥锁key
+     */
+    public static final String RANKING_REBUILD_LOCK_KEY = "exam_record:ranking:rebuild:lock";
+
+    /**
+     * 排行榜重建互斥锁的过期时间（秒）
+     */
+    public static final long RANKING_REBUILD_LOCK_SECONDS = 600;
+
+    /**
+     * 重建期间更新 删除的考试记录（set，考试记录id:试卷id），rename之后从数据库重放
+     */
+    public static final String RANKING_REPLAY_KEY = "exam_record:ranking:replay";
+
+    /**
+     * 试卷成绩统计key前缀（hash，分数分布 + 每道题的累计值）
+     */
+    public static final String PAPER_STATS_KEY = "paper:stats:";
+
+    /**
+     * 已经计入成绩统计的考试记录id key前缀（set），同一条考试记录重复判卷不会重复统计
+     */
+    public static final String PAPER_STATS_COUNTED_KEY = "paper:stats:counted:";
+
+    /**
+     * 试卷成绩统计重建互斥锁key前缀，同一张试卷同时只有一个重建
+     */
+    public static final String PAPER_STATS_REBUILD_LOCK_KEY = "paper:stats:rebuild:lock:";
+
+    /**
+     * 试卷成绩统计重建互斥锁的过期时间（秒）
+     */
+    public static final long PAPER_STATS_REBUILD_LOCK_SECONDS = 300;
+
+    /**
+     * 成绩统计重建期间判卷完成的考试记录id key前缀（set），rename之后从数据库重放
+     */
+    public static final String PAPER_STATS_REPLAY_KEY = "paper:stats:replay:";
+
+    /**
+     * 试卷成绩统计过期时间（秒），过期后下一次查询从数据库重建，修正增量统计的偏差
+     */
+    public static final long PAPER_STATS_EXPIRE_SECONDS = 24 * 3600; // 1天
+
+    /**
+     * 考试生命周期事件stream（发件箱中继开启stream发布时写入）
+     */
+    public static final String EXAM_EVENT_STREAM_KEY = "exam:events";
+
+    /**
+     * 题目每小时访问次数key前缀（zset，完整格式: question:popular:hour:yyyyMMddHH）
+     */
+    public static final String POPULAR_QUESTIONS_HOUR_KEY = "question:popular:hour:";
+
+    /**
+     * 每小时访问次数的过期时间（秒），覆盖一周的热门计算
+     */
+    public static final long POPULAR_QUESTIONS_HOUR_EXPIRE_SECONDS = 8 * 24 * 3600; // 8天
+
+    /**
+     * 今日热门题目key（zset，最近24小时访问次数按时间衰减加权合并，后台定时刷新）
+     */
+    public static final String POPULAR_QUESTIONS_TODAY_KEY = "question:popular:today";
+
+    /**
+     * 本周热门题目key（zset，最近7天访问次数按时间衰减加权合并，后台定时刷新）
+     */
+    public static final String POPULAR_QUESTIONS_WEEK_KEY = "question:popular:week";
+
+    /**
+     * 热门题目刷新互斥key，多个节点同一个刷新间隔内只刷新一次
+     */
+    public static final String POPULAR_QUESTIONS_REFRESH_LOCK_KEY = "question:popular:refresh_lock";
+
     /**
      * 热门题目数量
      */
@@ -0,0 +1,81 @@
+package com.yangjiayu.exam_system_server_online.config;
+
+import com.yangjiayu.exam_system_server_online.config.properties.ExamOutboxProperties;
+import com.yangjiayu.exam_system_server_online.config.properties.ExamTimerProperties;
+import com.yangjiayu.exam_system_server_online.config.properties.GradingProperties;
+import com.yangjiayu.exam_system_server_online.config.properties.QuestionViewProperties;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * @Classname ExecutorConfiguration
+ * @Description 后台任务线程池配置，判卷等耗时任务不占用tomcat的请求线程
+ * @Date 2025/11/02 10:12
+ * @Created by YangJiaYu
+ */
+@Configuration
+@EnableScheduling
+@EnableConfigurationProperties({GradingProperties.class, ExamTimerProperties.class, ExamOutboxProperties.class,
+    QuestionViewProperties.class})
+@AllArgsConstructor
+public class ExecutorConfiguration {
+
+    private GradingProperties gradingProperties;
+
+    /**
+     * 判卷专用线程池
+     * 核心线程数 = 最大线程数，等待队列有界
+     * 调度器只在队列有空位时才从redis取任务，所以正常情况下不会触发拒绝策略
+     */
+    @Bean
+    public ThreadPoolTaskExecutor gradingExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(gradingProperties.getThreads());
+        executor.setMaxPoolSize(gradingProperties.getThreads());
+        executor.setQueueCapacity(gradingProperties.getQueueCapacity());
+        executor.setThreadNamePrefix("grading-");
+        // 兜底：队列真的满了，直接抛出异常，由调度器把任务放回redis队列
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        // 关闭应用时等待正在判卷的任务完成
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * spring mvc异步请求（返回Mono Flux SSE）使用的线程池
+     * 定义了判卷线程池之后spring boot不再创建默认的applicationTaskExecutor，这里单独提供一个
+     * 流式返回时每推送一条数据都会使用这个线程池写响应
+     */
+    @Bean
+    public ThreadPoolTaskExecutor mvcAsyncExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(8);
+        executor.setMaxPoolSize(32);
+        executor.setQueueCapacity(200);
+        executor.setThreadNamePrefix("mvc-async-");
+        return executor;
+    }
+
+    /**
+     * 题目访问计数写入redis使用的线程池
+     * 只有一个线程，等待队列容量1：上一次写入还没完成时最多再排队一次，其余直接拒绝，
+     * 被拒绝的访问次数留在本地继续累加，下一次写入时一起提交，不会丢失也不会堆积线程
+     */
+    @Bean
+    public ThreadPoolTaskExecutor viewCountExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.setThreadNamePrefix("view-count-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.AbortPolicy());
+        return executor;
+    }
+}
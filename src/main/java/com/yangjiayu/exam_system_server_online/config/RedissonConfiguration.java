@@ -0,0 +1,32 @@
+package com.yangjiayu.exam_system_server_online.config;
+
+import org.redisson.Redisson;
+import org.redisson.api.RedissonClient;
+import org.redisson.config.Config;
+import org.springframework.boot.autoconfigure.data.redis.RedisProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.util.ObjectUtils;
+
+/**
+ * @Classname RedissonConfiguration
+ * @Description redissonClient加入核心容器，连接信息复用spring.data.redis的配置
+ * redisson创建时就会连接redis，所以设置为懒加载，第一次使用时才创建
+ * @Date 2025/11/05 14:20
+ * @Created by YangJiaYu
+ */
+@Configuration
+public class RedissonConfiguration {
+
+    @Bean(destroyMethod = "shutdown")
+    @Lazy
+    public RedissonClient redissonClient(RedisProperties redisProperties) {
+        Config config = new Config();
+        config.useSingleServer()
+            .setAddress("redis://" + redisProperties.getHost() + ":" + redisProperties.getPort())
+            .setDatabase(redisProperties.getDatabase())
+            .setPassword(ObjectUtils.isEmpty(redisProperties.getPassword()) ? null : redisProperties.getPassword());
+        return Redisson.create(config);
+    }
+}
@@ -0,0 +1,29 @@
+package com.yangjiayu.exam_system_server_online.config;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * @Classname WebAsyncConfiguration
+ * @Description spring mvc异步请求配置，返回Mono Flux SSE的接口使用独立线程池写响应
+ * 超时时间通过 spring.mvc.async.request-timeout 配置
+ * @Date 2025/11/06 16:40
+ * @Created by YangJiaYu
+ */
+@Configuration
+public class WebAsyncConfiguration implements WebMvcConfigurer {
+
+    private final ThreadPoolTaskExecutor mvcAsyncExecutor;
+
+    public WebAsyncConfiguration(@Qualifier("mvcAsyncExecutor") ThreadPoolTaskExecutor mvcAsyncExecutor) {
+        this.mvcAsyncExecutor = mvcAsyncExecutor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(mvcAsyncExecutor);
+    }
+}
@@ -1,22 +1,30 @@
 package com.yangjiayu.exam_system_server_online.config;
 
 import com.yangjiayu.exam_system_server_online.config.properties.KimiProperties;
+import com.yangjiayu.exam_system_server_online.config.properties.KimiRateLimitProperties;
+import io.netty.channel.ChannelOption;
 import lombok.AllArgsConstructor;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
 
 /**
  * @Classname WebClientConfiguration
  * @Description webClient加入核心容器
+ * 底层使用reactor netty连接池，复用和kimi之间的长连接，并设置连接和响应超时
  * @Date 2025/10/20 10:27
  * @Created by YangJiaYu
  */
 @Configuration
-@EnableConfigurationProperties(KimiProperties.class)
+@EnableConfigurationProperties({KimiProperties.class, KimiRateLimitProperties.class})
 @AllArgsConstructor
 public class WebClientConfiguration {
 
@@ -24,8 +32,22 @@ public class WebClientConfiguration {
 
     @Bean
     public WebClient webClient() {
+        //1.连接池：限制最大连接数，连接都被占用时排队等待
+        ConnectionProvider connectionProvider = ConnectionProvider.builder("kimi")
+            .maxConnections(kimiProperties.getMaxConnections())
+            .pendingAcquireTimeout(Duration.ofSeconds(kimiProperties.getPendingAcquireTimeout()))
+            .maxIdleTime(Duration.ofSeconds(kimiProperties.getMaxIdleTime()))
+            .evictInBackground(Duration.ofSeconds(kimiProperties.getMaxIdleTime()))
+            .build();
+
+        //2.超时：建立连接超时 + 等待响应超时（大模型生成比较慢，响应超时要给够）
+        HttpClient httpClient = HttpClient.create(connectionProvider)
+            .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, kimiProperties.getConnectTimeout())
+            .responseTimeout(Duration.ofSeconds(kimiProperties.getResponseTimeout()));
+
         return  WebClient.builder()
             .baseUrl(kimiProperties.getUri())
+            .clientConnector(new ReactorClientHttpConnector(httpClient))
             .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
             .defaultHeader("Authorization","Bearer "+kimiProperties.getApiKey())
             .build();
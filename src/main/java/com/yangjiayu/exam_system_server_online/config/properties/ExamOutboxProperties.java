@@ -0,0 +1,67 @@
+package com.yangjiayu.exam_system_server_online.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 考试事件发件箱配置属性类
+ *
+ * 用于从 application.yml 中读取考试事件中继相关配置
+ * 配置前缀: exam.outbox
+ *
+ * @author Yangjiayu
+ * @description 考试事件发件箱（同事务写入 + 中继批量发布）的参数
+ */
+@ConfigurationProperties(prefix = "exam.outbox")
+@Data
+public class ExamOutboxProperties {
+
+    /**
+     * 是否开启事件中继
+     * 关闭后事件只写入发件箱，排行榜 成绩统计等下游消费者不会收到事件
+     * 默认值：true
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 中继拉取待发布事件的间隔（毫秒）
+     * 默认值：500毫秒
+     */
+    private Long intervalMs = 500L;
+
+    /**
+     * 每批发布的事件数量
+     * 默认值：100
+     */
+    private Integer batchSize = 100;
+
+    /**
+     * 每次中继最多连续发布的批次数，积压时不用等下一次调度
+     * 默认值：10
+     */
+    private Integer maxBatches = 10;
+
+    /**
+     * 单个事件最多发布失败次数，达到后标记为发布失败，不再重试
+     * 默认值：5
+     */
+    private Integer maxAttempts = 5;
+
+    /**
+     * 是否同时发布到redis stream，供其他服务消费
+     * 默认值：false
+     */
+    private Boolean streamEnabled = false;
+
+    /**
+     * redis stream 保留的大约事件数
+     * 默认值：100000
+     */
+    private Long streamMaxLength = 100000L;
+
+    /**
+     * 已发布事件在发件箱中的保留天数
+     * 默认值：7天
+     */
+    private Integer retentionDays = 7;
+}
@@ -0,0 +1,51 @@
+package com.yangjiayu.exam_system_server_online.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 考试计时配置属性类
+ *
+ * 用于从 application.yml 中读取考试到时自动交卷相关配置
+ * 配置前缀: exam.timer
+ *
+ * @author Yangjiayu
+ * @description 服务端考试计时（redis有序集合 + 定时自动交卷）的参数
+ */
+@ConfigurationProperties(prefix = "exam.timer")
+@Data
+public class ExamTimerProperties {
+
+    /**
+     * 是否开启到时自动交卷
+     * 默认值：true
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 扫描到期考试的间隔（毫秒）
+     * 默认值：1000毫秒
+     */
+    private Long intervalMs = 1000L;
+
+    /**
+     * 每次最多处理的到期考试数量
+     * 每次扫描的开销只和这个数量有关，和进行中的考试总数无关
+     * 默认值：50
+     */
+    private Integer batchSize = 50;
+
+    /**
+     * 宽限时间（秒）
+     * 考试时长结束后再等待一段时间才自动交卷，给前端最后一次自动保存和交卷留出时间
+     * 默认值：30秒
+     */
+    private Long graceSeconds = 30L;
+
+    /**
+     * 认领租期（秒）
+     * 节点认领到期考试之后在租期内完成交卷，节点宕机时租期过后由其他节点重新认领
+     * 默认值：120秒
+     */
+    private Long claimLeaseSeconds = 120L;
+}
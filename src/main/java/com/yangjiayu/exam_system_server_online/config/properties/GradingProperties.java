@@ -0,0 +1,120 @@
+package com.yangjiayu.exam_system_server_online.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 判卷流水线配置属性类
+ *
+ * 用于从 application.yml 中读取异步判卷相关配置
+ * 配置前缀: exam.grading
+ *
+ * @author Yangjiayu
+ * @description 交卷后异步判卷（队列 + 独立线程池 + 重试）的参数
+ */
+@ConfigurationProperties(prefix = "exam.grading")
+@Data
+public class GradingProperties {
+
+    /**
+     * 判卷线程数
+     * 同时进行判卷的考试记录数量，每个线程处理一份答卷
+     * 默认值：4
+     */
+    private Integer threads = 4;
+
+    /**
+     * 判卷线程池的等待队列容量
+     * 队列满了之后调度器不再从redis队列中取任务，任务留在redis中排队（背压）
+     * 默认值：100
+     */
+    private Integer queueCapacity = 100;
+
+    /**
+     * 单个判卷任务的最大尝试次数
+     * 超过此次数任务标记为失败，可以通过重新判卷接口再次触发
+     * 默认值：3次
+     */
+    private Integer maxAttempts = 3;
+
+    /**
+     * 调度器从redis队列拉取任务的间隔（毫秒）
+     * 默认值：500毫秒
+     */
+    private Long dispatchIntervalMs = 500L;
+
+    /**
+     * 判卷任务超时时间（秒）
+     * 处理中的任务超过此时间没有更新状态，认为所在节点已经宕机，重新放回队列
+     * 默认值：600秒
+     */
+    private Long taskTimeoutSeconds = 600L;
+
+    /**
+     * 兜底扫描：已完成但超过此时间（分钟）仍未批阅的考试记录会重新入队
+     * 用于redis数据丢失等极端情况
+     * 默认值：10分钟
+     */
+    private Integer staleMinutes = 10;
+
+    /**
+     * 单份答卷简答题ai判卷的并发数
+     * 一份答卷中最多同时发起多少个简答题判卷请求
+     * 默认值：4
+     */
+    private Integer aiConcurrencyPerExam = 4;
+
+    /**
+     * 本节点ai判卷的全局在途请求上限
+     * 所有正在判卷的答卷共享，超过之后排队等待
+     * 默认值：16
+     */
+    private Integer aiMaxInFlight = 16;
+
+    /**
+     * 是否开启简答题判卷结果缓存
+     * 同一道题相同的答案（空白 不会 照抄定义）直接复用之前的判卷结果
+     * 默认值：true
+     */
+    private Boolean resultCacheEnabled = true;
+
+    /**
+     * 本地（一级）缓存的最大条数
+     * 默认值：10000
+     */
+    private Integer resultCacheLocalSize = 10000;
+
+    /**
+     * 本地（一级）缓存的过期时间（秒）
+     * 默认值：3600秒
+     */
+    private Long resultCacheLocalExpireSeconds = 3600L;
+
+    /**
+     * redis（二级）缓存的过期时间（秒）
+     * 默认值：7天
+     */
+    private Long resultCacheExpireSeconds = 7 * 24 * 3600L;
+
+    /**
+     * 批量判卷：一次ai请求最多包含的答案数
+     * 同一道简答题的多份答案合并成一个请求，设置为1表示不合并
+     * 默认值：10
+     */
+    private Integer batchMaxSize = 10;
+
+    /**
+     * 批量判卷：一次ai请求的token预算
+     * 按 题目 + 标准答案 + 所有学生答案 + 预估回答 估算，超过预算拆分成多个请求
+     * 默认值：6000
+     */
+    private Integer batchTokenBudget = 6000;
+
+    /**
+     * 批量判卷：合并窗口（毫秒）
+     * 同时判卷的多份答卷中，同一道题的答案在窗口内合并成一个请求，设置为0表示不等待
+     * 有多份答卷同时判卷时，每道简答题最多增加一个窗口的延迟；只有一份答卷在判卷时不等待
+     * 默认值：300毫秒
+     */
+    private Long batchWindowMs = 300L;
+}
@@ -7,7 +7,7 @@ import org.springframework.stereotype.Component;
 /**
  *
  * @author: Yangjiayu
- * description: 接收kimi调用的五个参数
+ * description: 接收kimi调用的五个参数，以及webClient连接池、超时和重试参数
  */
 @ConfigurationProperties(prefix = "kimi.api")
 @Data
@@ -16,6 +16,25 @@ public class KimiProperties {
     private String model;
     private String uri;
     private String apiKey;
-//    private Integer maxTokens;
+    private Integer maxTokens = 4096;
     private Double temperature;
+
+    //连接池：最大连接数 等待连接超时（秒） 空闲连接回收时间（秒）
+    private Integer maxConnections = 50;
+    private Integer pendingAcquireTimeout = 60;
+    private Integer maxIdleTime = 30;
+
+    //超时：建立连接超时（毫秒） 等待响应超时（秒）
+    private Integer connectTimeout = 5000;
+    private Integer responseTimeout = 120;
+
+    //重试：失败后最多重试次数 第一次重试等待（毫秒） 最大等待（毫秒），每次等待时间指数增长
+    private Integer maxRetries = 2;
+    private Long retryBackoff = 1000L;
+    private Long retryMaxBackoff = 10000L;
+
+    //ai出题：超过多少道题拆分成多个请求（每个请求的题目数） 同时发起的请求数 标题相似度超过多少认为是重复题目
+    private Integer generateChunkSize = 10;
+    private Integer generateConcurrency = 4;
+    private Double titleSimilarityThreshold = 0.8;
 }
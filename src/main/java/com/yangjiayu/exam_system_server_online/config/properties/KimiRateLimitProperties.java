@@ -0,0 +1,65 @@
+package com.yangjiayu.exam_system_server_online.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * kimi调用限流配置属性类
+ *
+ * 用于从 application.yml 中读取ai调用限流相关配置
+ * 配置前缀: kimi.rate-limit
+ *
+ * @author Yangjiayu
+ * @description 基于redisson的分布式限流，多个节点共享同一份额度
+ */
+@ConfigurationProperties(prefix = "kimi.rate-limit")
+@Data
+public class KimiRateLimitProperties {
+
+    /**
+     * 是否开启限流
+     * 默认值：true
+     */
+    private Boolean enabled = true;
+
+    /**
+     * 每分钟请求数上限（RPM）
+     * 需要小于kimi账号对应等级的限制
+     * 默认值：60
+     */
+    private Integer requestsPerMinute = 60;
+
+    /**
+     * 每分钟token数上限（TPM）
+     * 每次请求按 提示词长度 + 预估回答长度 扣减
+     * 默认值：100000
+     */
+    private Integer tokensPerMinute = 100000;
+
+    /**
+     * 预估的单次回答token数
+     * 调用之前不知道回答有多长，按这个值预扣
+     * 默认值：1024
+     */
+    private Integer expectedCompletionTokens = 1024;
+
+    /**
+     * 同时在途的请求数上限（所有节点合计）
+     * 默认值：20
+     */
+    private Integer maxInFlight = 20;
+
+    /**
+     * 在途许可的租期（秒）
+     * 节点宕机没有归还的许可到期自动释放，要大于单次请求的响应超时
+     * 默认值：180秒
+     */
+    private Integer permitLeaseSeconds = 180;
+
+    /**
+     * 排队等待的最长时间（秒）
+     * 超过此时间仍拿不到额度，本次调用失败
+     * 默认值：60秒
+     */
+    private Integer acquireTimeoutSeconds = 60;
+}
@@ -0,0 +1,61 @@
+package com.yangjiayu.exam_system_server_online.config.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * 题目访问计数配置属性类
+ *
+ * 用于从 application.yml 中读取题目访问计数和热门题目相关配置
+ * 配置前缀: question.view-count
+ *
+ * @author Yangjiayu
+ * @description 题目访问计数（本地累加 + 定时批量写入redis）和热门题目（按小时分桶 + 时间衰减）的参数
+ */
+@ConfigurationProperties(prefix = "question.view-count")
+@Data
+public class QuestionViewProperties {
+
+    /**
+     * 本地累加的访问次数写入redis的间隔（毫秒）
+     * 默认值：1000毫秒
+     */
+    private Long flushIntervalMs = 1000L;
+
+    /**
+     * 本地最多累加的题目数量
+     * 超过后新题目的访问直接丢弃（已经在累加的题目不受影响），防止爬虫遍历题目id撑爆内存
+     * 默认值：100000
+     */
+    private Integer maxPendingKeys = 100000;
+
+    /**
+     * 今日 本周热门题目的刷新间隔（毫秒）
+     * 默认值：60000毫秒
+     */
+    private Long trendingRefreshIntervalMs = 60000L;
+
+    /**
+     * 今日热门的半衰期（小时）：访问次数每过这么多小时权重减半
+     * 默认值：6小时
+     */
+    private Double todayHalfLifeHours = 6D;
+
+    /**
+     * 本周热门的半衰期（小时）
+     * 默认值：48小时
+     */
+    private Double weekHalfLifeHours = 48D;
+
+    /**
+     * 今日 本周热门题目保留的题目数量
+     * 默认值：1000
+     */
+    private Integer trendingKeepSize = 1000;
+
+    /**
+     * 总热门题目（累计访问次数）保留的题目数量，超出的访问次数最少的题目被移除，防止有序集合无限增长
+     * 默认值：10000
+     */
+    private Integer allTimeKeepSize = 10000;
+}
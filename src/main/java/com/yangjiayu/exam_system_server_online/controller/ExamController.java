@@ -3,6 +3,8 @@ package com.yangjiayu.exam_system_server_online.controller;
 import com.yangjiayu.exam_system_server_online.common.Result;
 import com.yangjiayu.exam_system_server_online.entity.ExamRecord;
 import com.yangjiayu.exam_system_server_online.service.ExamService;
+import com.yangjiayu.exam_system_server_online.service.GradingTaskService;
+import com.yangjiayu.exam_system_server_online.vo.GradingStatusVo;
 import com.yangjiayu.exam_system_server_online.vo.StartExamVo;
 import com.yangjiayu.exam_system_server_online.vo.SubmitAnswerVo;
 import io.swagger.v3.oas.annotations.Operation;
@@ -10,6 +12,8 @@ import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
@@ -29,15 +33,19 @@ public class ExamController {
 
     private ExamService examService;
 
+    private GradingTaskService gradingTaskService;
+
     /**
      * 开始考试 - 创建新的考试记录
      * @param startExamVo 开始考试请求DTO
+     * @param idempotencyKey 幂等key，前端重试时携带相同的值返回同一条考试记录
      * @return 考试记录
      */
     @PostMapping("/start")  // 处理POST请求
     @Operation(summary = "开始考试", description = "学生开始考试，创建考试记录并返回试卷内容")  // API描述
-    public Result<ExamRecord> startExam(@RequestBody StartExamVo startExamVo) {
-        ExamRecord examRecord =  examService.startExam(startExamVo);
+    public Result<ExamRecord> startExam(@RequestBody StartExamVo startExamVo,
+        @Parameter(description = "幂等key，重复提交时携带相同的值") @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey) {
+        ExamRecord examRecord =  examService.startExam(startExamVo, idempotencyKey);
         log.info("开始考试，考试对象创建成功！{}",examRecord);
         return Result.success(examRecord, "考试开始成功");
     }
@@ -46,7 +54,7 @@ public class ExamController {
      * 根据ID获取考试记录详情 - 查询具体考试结果
      */
     @GetMapping("/{id}")  // 处理GET请求
-    @Operation(summary = "查询考试记录详情", description = "获取指定考试记录的详细信息，包括答题情况和得分")  // API描述
+    @Operation(summary = "查询考试记录详情", description = "获取指定考试记录的详细信息，包括答题情况和得分；考试进行中返回的试卷不含答案和解析")  // API描述
     public Result<ExamRecord> getExamRecordById(
         @Parameter(description = "考试记录ID") @PathVariable Integer id) {
         ExamRecord examRecord = examService.customGetExamRecordById(id);
@@ -54,19 +62,73 @@ public class ExamController {
         return Result.success(examRecord);
     }
 
+    /**
+     * 获取考试试卷 - 学生答题时使用，不包含标准答案、解析和选项对错
+     * 直接返回预先序列化好的json，不再每次序列化试卷对象
+     */
+    @GetMapping(value = "/{examRecordId}/paper", produces = MediaType.APPLICATION_JSON_VALUE)  // 处理GET请求
+    @Operation(summary = "获取考试试卷", description = "学生答题时获取试卷题目，不包含答案和解析")  // API描述
+    public ResponseEntity<byte[]> getStudentPaper(
+        @Parameter(description = "考试记录ID") @PathVariable Integer examRecordId) {
+        byte[] studentPaper = examService.customGetStudentPaper(examRecordId);
+        log.debug("获取考试试卷接口调用成功！考试记录id：{}",examRecordId);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(studentPaper);
+    }
+
+    /**
+     * 自动保存答案 - 答题过程中保存答案草稿（只写redis），交卷时统一写入数据库
+     * @param examRecordId 考试记录ID
+     * @param answers      本次变化的答案（可以只包含部分题目）
+     */
+    @PutMapping("/{examRecordId}/answers")  // 处理PUT请求
+    @Operation(summary = "自动保存答案", description = "答题过程中实时保存答案草稿，浏览器崩溃或刷新后可以恢复，交卷时统一写入")  // API描述
+    public Result<Void> saveDraftAnswers(
+        @Parameter(description = "考试记录ID") @PathVariable Integer examRecordId,
+        @RequestBody List<SubmitAnswerVo> answers) {
+        examService.customSaveDraftAnswers(examRecordId, answers);
+        return Result.success("答案已保存");
+    }
+
     /**
      * 提交答案 - 学生提交考试答案
      * @param examRecordId 考试记录ID
      * @param answers      答案列表
      */
     @PostMapping("/{examRecordId}/submit")  // 处理POST请求
-    @Operation(summary = "提交考试答案", description = "学生提交考试答案，系统记录答题情况")  // API描述
+    @Operation(summary = "提交考试答案", description = "学生提交考试答案，系统记录答题情况，判卷在后台异步进行")  // API描述
     public Result<Void> submitAnswers(
         @Parameter(description = "考试记录ID") @PathVariable Integer examRecordId,
         @RequestBody List<SubmitAnswerVo> answers) throws InterruptedException {
         examService.customSubmitAnswer(examRecordId,answers);
-        log.info("提交答案接口调用成功！");
-        return Result.success("答案提交成功");
+        log.info("提交答案接口调用成功！id:{}的考试记录已进入判卷队列",examRecordId);
+        return Result.success("答案提交成功，正在判卷");
+    }
+
+    /**
+     * 查询判卷进度 - 交卷后前端轮询，SUCCESS之后再查询考试记录详情
+     * @param examRecordId 考试记录ID
+     * @return 判卷进度
+     */
+    @GetMapping("/{examRecordId}/grading-status")  // 处理GET请求
+    @Operation(summary = "查询判卷进度", description = "查询异步判卷任务的状态：PENDING/GRADING/RETRYING/SUCCESS/FAILED")  // API描述
+    public Result<GradingStatusVo> getGradingStatus(
+        @Parameter(description = "考试记录ID") @PathVariable Integer examRecordId) {
+        GradingStatusVo gradingStatusVo = gradingTaskService.getGradingStatus(examRecordId);
+        return Result.success(gradingStatusVo);
+    }
+
+    /**
+     * 重试判卷 - 判卷失败（交卷之后仍是已完成）时，重新进入判卷队列
+     * 已批阅的考试记录不会重新批阅，修改标准答案之后使用整卷重新判卷
+     * @param examRecordId 考试记录ID
+     */
+    @PostMapping("/{examRecordId}/grade")  // 处理POST请求
+    @Operation(summary = "重试判卷", description = "判卷失败的考试记录（已完成状态）重新放入判卷队列，由后台异步批阅；进行中和已批阅的考试记录会被拒绝")  // API描述
+    public Result<Void> gradeExam(
+        @Parameter(description = "考试记录ID") @PathVariable Integer examRecordId) {
+        examService.customRetryGrading(examRecordId);
+        log.info("id:{}的考试记录重新进入判卷队列",examRecordId);
+        return Result.success("已进入判卷队列");
     }
 
 
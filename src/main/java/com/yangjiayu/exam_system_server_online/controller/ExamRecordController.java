@@ -6,7 +6,9 @@ import com.yangjiayu.exam_system_server_online.common.Result;
 import com.yangjiayu.exam_system_server_online.entity.ExamRecord;
 import com.yangjiayu.exam_system_server_online.entity.Paper;
 import com.yangjiayu.exam_system_server_online.service.ExamService;
+import com.yangjiayu.exam_system_server_online.service.LeaderboardService;
 import com.yangjiayu.exam_system_server_online.service.PaperService;
+import com.yangjiayu.exam_system_server_online.vo.CursorPageResult;
 import com.yangjiayu.exam_system_server_online.vo.ExamRankingVO;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -33,6 +35,9 @@ public class ExamRecordController {
     @Autowired
     private PaperService paperService;
 
+    @Autowired
+    private LeaderboardService leaderboardService;
+
     /**
      * 分页查询考试记录
      */
@@ -71,6 +76,32 @@ public class ExamRecordController {
     }
 
 
+    /**
+     * 游标分页查询考试记录 - 按开始时间倒序，翻页不使用offset，深分页和第一页一样快
+     */
+    @GetMapping("/cursor")  // 处理GET请求
+    @Operation(summary = "游标分页查询考试记录", description = "按开始时间倒序的游标分页，下一页传入上一页返回的nextCursor，可选返回总数（估算）")  // API描述
+    public Result<CursorPageResult<ExamRecord>> getExamRecordsByCursor(
+        @Parameter(description = "上一页返回的游标，第一页不传") @RequestParam(required = false) String cursor,
+        @Parameter(description = "每页显示数量", example = "20") @RequestParam(defaultValue = "20") Integer size,
+        @Parameter(description = "学生姓名筛选条件") @RequestParam(required = false) String studentName,
+        @Parameter(description = "考试状态，0-进行中，1-已完成，2-已批阅") @RequestParam(required = false) Integer status,
+        @Parameter(description = "开始日期，格式：yyyy-MM-dd") @RequestParam(required = false) String startDate,
+        @Parameter(description = "结束日期，格式：yyyy-MM-dd") @RequestParam(required = false) String endDate,
+        @Parameter(description = "是否返回总数，没有筛选条件时为估算值") @RequestParam(defaultValue = "false") Boolean withTotal
+    ) {
+        String strStatus = status == null ? null : switch (status) {
+            case 0 -> "进行中";
+            case 1 -> "已完成";
+            case 2 -> "已批阅";
+            default -> null;
+        };
+        int pageSize = Math.min(Math.max(size, 1), 100);
+        CursorPageResult<ExamRecord> result = examService.customQueryByCursor(cursor, pageSize, studentName, strStatus,
+            startDate, endDate, withTotal);
+        return Result.success(result);
+    }
+
     /**
      * 根据ID获取考试记录详情
      */
@@ -88,14 +119,14 @@ public class ExamRecordController {
      * 使用SQL关联查询，一次性获取所有需要的数据，性能提升数百倍
      *
      * @param paperId 试卷ID，可选参数
-     * @param limit 显示数量限制，可选参数
+     * @param limit 显示数量限制，可选参数，不传返回前100名
      * @return 排行榜列表
      */
     @GetMapping("/ranking")  // 处理GET请求
     @Operation(summary = "获取考试排行榜", description = "获取考试成绩排行榜，支持按试卷筛选和限制显示数量，使用优化的SQL关联查询提升性能")  // API描述
     public Result<List<ExamRankingVO>> getExamRanking(
         @Parameter(description = "试卷ID，可选，不传则显示所有试卷的排行") @RequestParam(required = false) Integer paperId,
-        @Parameter(description = "显示数量限制，可选，不传则返回所有记录") @RequestParam(required = false) Integer limit
+        @Parameter(description = "显示数量限制，可选，不传则返回前100名") @RequestParam(required = false) Integer limit
     ) {
         // 使用优化的查询方法，避免N+1查询问题
         List<ExamRankingVO> examRankingVOS =  examService.customGetRanking(paperId,limit);
@@ -103,5 +134,45 @@ public class ExamRecordController {
         return Result.success(examRankingVOS);
     }
 
+    /**
+     * 分页查询排行榜 - redis有序集合中物化的排行榜
+     */
+    @GetMapping("/ranking/page")  // 处理GET请求
+    @Operation(summary = "分页查询排行榜", description = "按 得分降序 用时升序 分页查询排行榜，total为上榜总人数")  // API描述
+    public Result<Page<ExamRankingVO>> getExamRankingPage(
+        @Parameter(description = "试卷ID，可选，不传则查询总排行榜") @RequestParam(required = false) Integer paperId,
+        @Parameter(description = "当前页码，从1开始", example = "1") @RequestParam(defaultValue = "1") Integer page,
+        @Parameter(description = "每页显示数量，1-100", example = "20") @RequestParam(defaultValue = "20") Integer size
+    ) {
+        int current = Math.max(page, 1);
+        int pageSize = Math.min(Math.max(size, 1), 100);
+        return Result.success(leaderboardService.page(paperId, current, pageSize));
+    }
+
+    /**
+     * 查询考试记录的名次
+     */
+    @GetMapping("/ranking/{examRecordId}")  // 处理GET请求
+    @Operation(summary = "查询我的名次", description = "查询考试记录在试卷排行榜（或总排行榜）中的名次，未批阅的记录没有名次")  // API描述
+    public Result<ExamRankingVO> getMyRank(
+        @Parameter(description = "考试记录ID") @PathVariable Integer examRecordId,
+        @Parameter(description = "试卷ID，可选，不传则查询总排行榜中的名次") @RequestParam(required = false) Integer paperId
+    ) {
+        return Result.success(leaderboardService.rankOf(examRecordId, paperId));
+    }
+
+    /**
+     * 从数据库重建排行榜 - 冷启动 redis数据丢失时使用
+     */
+    @PostMapping("/ranking/rebuild")  // 处理POST请求
+    @Operation(summary = "重建排行榜", description = "从数据库重建redis中的排行榜，不传试卷ID则重建全部")  // API描述
+    public Result<Integer> rebuildRanking(
+        @Parameter(description = "试卷ID，可选，不传则重建全部排行榜") @RequestParam(required = false) Integer paperId
+    ) {
+        int count = leaderboardService.rebuild(paperId);
+        log.info("重建排行榜成功！试卷id：{}，考试记录数：{}",paperId,count);
+        return Result.success(count, "排行榜重建成功");
+    }
+
 
 }
\ No newline at end of file
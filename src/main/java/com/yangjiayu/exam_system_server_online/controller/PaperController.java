@@ -4,9 +4,13 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.toolkit.ObjectUtils;
 import com.yangjiayu.exam_system_server_online.common.Result;
 import com.yangjiayu.exam_system_server_online.entity.Paper;
+import com.yangjiayu.exam_system_server_online.service.PaperRegradeService;
 import com.yangjiayu.exam_system_server_online.service.PaperService;
+import com.yangjiayu.exam_system_server_online.service.PaperStatsService;
 import com.yangjiayu.exam_system_server_online.vo.AiPaperVo;
+import com.yangjiayu.exam_system_server_online.vo.PaperStatsVo;
 import com.yangjiayu.exam_system_server_online.vo.PaperVo;
+import com.yangjiayu.exam_system_server_online.vo.RegradeProgressVo;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
 import lombok.RequiredArgsConstructor;
@@ -30,6 +34,10 @@ import java.util.List;
 public class PaperController  {
     private final PaperService paperService;
 
+    private final PaperRegradeService paperRegradeService;
+
+    private final PaperStatsService paperStatsService;
+
     /**
      * 获取所有试卷列表（支持模糊搜索和状态筛选）
      */
@@ -130,4 +138,42 @@ public class PaperController  {
         return Result.success("试卷删除成功！！");
     }
 
-}
\ No newline at end of file
+    /**
+     * 整卷重新判卷 - 修改标准答案之后，已批阅的考试记录在后台重新判分
+     * @param id 试卷ID
+     * @param questionIds 需要重新判卷的题目ID，不传表示整张试卷
+     * @return 初始进度
+     */
+    @PostMapping("/{id}/regrade")  // 处理POST请求
+    @Operation(summary = "整卷重新判卷", description = "修改标准答案后重新判分，只处理指定题目；不指定题目时答案版本没有变化的简答题不重新判卷")  // API描述
+    public Result<RegradeProgressVo> regradePaper(
+        @Parameter(description = "试卷ID") @PathVariable Long id,
+        @Parameter(description = "需要重新判卷的题目ID，不传表示整张试卷") @RequestParam(required = false) List<Long> questionIds) {
+        RegradeProgressVo progressVo = paperRegradeService.start(id, questionIds);
+        log.info("id:{}的试卷开始重新判卷，题目：{}",id,questionIds);
+        return Result.success(progressVo, "已开始重新判卷");
+    }
+
+    /**
+     * 查询整卷重新判卷进度
+     * @param id 试卷ID
+     * @return 进度
+     */
+    @GetMapping("/{id}/regrade")  // 处理GET请求
+    @Operation(summary = "查询重新判卷进度", description = "查询整卷重新判卷任务的状态：NONE/RUNNING/SUCCESS/FAILED")  // API描述
+    public Result<RegradeProgressVo> getRegradeProgress(@Parameter(description = "试卷ID") @PathVariable Long id) {
+        return Result.success(paperRegradeService.getProgress(id));
+    }
+
+    /**
+     * 查询试卷成绩统计
+     * @param id 试卷ID
+     * @return 分数分布 平均分 标准差 百分位数 题目分析
+     */
+    @GetMapping("/{id}/stats")  // 处理GET请求
+    @Operation(summary = "试卷成绩统计", description = "已批阅考试记录的分数分布、平均分、标准差、百分位数，以及每道题的正确率、难度和区分度")  // API描述
+    public Result<PaperStatsVo> getPaperStats(@Parameter(description = "试卷ID") @PathVariable Integer id) {
+        return Result.success(paperStatsService.getStats(id));
+    }
+
+}
@@ -13,12 +13,16 @@ import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * @Classname QuestionBatchController
@@ -87,14 +91,43 @@ public class QuestionBatchController {
      */
     @PostMapping("/ai-generate")  // 处理POST请求
     @Operation(summary = "AI智能生成题目", description = "使用AI技术根据指定主题和要求智能生成题目，支持预览后再决定是否导入")  // API描述
-    public Result<List<QuestionImportVo>> generateQuestionsByAi(
-        @RequestBody @Validated AiGenerateRequestVo request) throws InterruptedException {
-        List<QuestionImportVo> questionImportVoList = kimiAiService.aiGenerateQuestions(request);
-        log.info("使用ai生成：{} 为标题的题目成功！ 计划生成：{}道题，实际生成：{}道题！",
-            request.getTopic(),request.getCount(),questionImportVoList.size());
-        return Result.success(questionImportVoList);
+    public Mono<Result<List<QuestionImportVo>>> generateQuestionsByAi(
+        @RequestBody @Validated AiGenerateRequestVo request) {
+        //返回Mono，等待ai响应期间不占用tomcat线程
+        return kimiAiService.aiGenerateQuestionsReactive(request)
+            .map(questionImportVoList -> {
+                log.info("使用ai生成：{} 为标题的题目成功！ 计划生成：{}道题，实际生成：{}道题！",
+                    request.getTopic(),request.getCount(),questionImportVoList.size());
+                return Result.success(questionImportVoList);
+            });
     }
 
-
-
+    /**
+     * 使用AI流式生成题目（预览，不入库）
+     * 以SSE推送：每生成完一道题推送一个question事件，全部完成推送done事件，失败推送error事件
+     * @param request AI生成请求参数
+     * @return 逐题推送的事件流
+     */
+    @PostMapping(value = "/ai-generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "AI流式生成题目", description = "使用SSE逐题返回AI生成的题目，生成完一道推送一道，无需等待全部生成完成")
+    public Flux<ServerSentEvent<Object>> generateQuestionsByAiStream(
+        @RequestBody @Validated AiGenerateRequestVo request) {
+        AtomicInteger generatedCount = new AtomicInteger();
+        Flux<ServerSentEvent<Object>> questions = kimiAiService.aiGenerateQuestionsStream(request)
+            .map(questionImportVo -> ServerSentEvent.<Object>builder(questionImportVo)
+                .id(String.valueOf(generatedCount.incrementAndGet()))
+                .event("question")
+                .build());
+        return questions
+            .concatWith(Mono.fromSupplier(() -> {
+                log.info("使用ai流式生成：{} 为标题的题目成功！ 计划生成：{}道题，实际生成：{}道题！",
+                    request.getTopic(),request.getCount(),generatedCount.get());
+                return ServerSentEvent.<Object>builder(generatedCount.get()).event("done").build();
+            }))
+            .onErrorResume(e -> {
+                log.error("使用ai流式生成：{} 为标题的题目失败！已生成：{}道题，原因：{}",
+                    request.getTopic(),generatedCount.get(),e.getMessage());
+                return Mono.just(ServerSentEvent.<Object>builder("ai生成题目失败：" + e.getMessage()).event("error").build());
+            });
+    }
 }
@@ -147,10 +147,11 @@ public class QuestionController{
      * @return 热门题目列表
      */
     @GetMapping("/popular")  // 处理GET请求
-    @Operation(summary = "获取热门题目", description = "获取访问次数最多的热门题目，用于首页推荐展示")  // API描述
+    @Operation(summary = "获取热门题目", description = "获取今日/本周/累计访问次数最多的热门题目，用于首页推荐展示")  // API描述
     public Result<List<Question>> getPopularQuestions(
-        @Parameter(description = "返回题目数量", example = "10") @RequestParam(defaultValue = "6") Integer size) {
-        List<Question> questionList =  questionService.FindPopularQuestions(size);
+        @Parameter(description = "返回题目数量", example = "10") @RequestParam(defaultValue = "6") Integer size,
+        @Parameter(description = "热门范围：today-今日热门 week-本周热门 all-总榜", example = "today") @RequestParam(defaultValue = "all") String range) {
+        List<Question> questionList =  questionService.findTrendingQuestions(range, size);
         log.info("查询热门题目接口调用成功！热门题目数量：{},具体数据集合为：{}",questionList.size(),questionList);
         // 异常处理：记录日志并返回友好的错误信息
         return Result.success(questionList);
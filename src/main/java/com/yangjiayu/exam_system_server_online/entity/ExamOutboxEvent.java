@@ -0,0 +1,57 @@
+package com.yangjiayu.exam_system_server_online.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 考试事件发件箱表 - 和考试记录在同一个事务中写入，由中继任务批量发布给下游消费者
+ * 表结构见 ExamOutboxMapper.xml，发布后的事件只保留一段时间，不做逻辑删除
+ */
+@TableName(value = "exam_outbox_event")
+@Data
+@Schema(description = "考试事件发件箱信息")
+public class ExamOutboxEvent implements Serializable {
+
+    @Schema(description = "主键，事件按主键顺序发布")
+    @TableId(value = "id", type = IdType.AUTO)
+    private Long id;
+
+    @Schema(description = "事件类型", example = "GRADED",
+            allowableValues = {"STARTED", "SUBMITTED", "GRADED", "DELETED"})
+    private String eventType; // 事件类型
+
+    @Schema(description = "考试记录ID", example = "1")
+    private Long examRecordId; // 考试记录ID
+
+    @Schema(description = "试卷ID", example = "1")
+    private Integer paperId; // 试卷ID
+
+    @Schema(description = "考生姓名", example = "张三")
+    private String studentName; // 考生姓名
+
+    @Schema(description = "事件发生时考试记录的状态", example = "已批阅")
+    private String recordStatus; // 考试记录状态
+
+    @Schema(description = "事件发生时考试记录的得分", example = "85")
+    private Integer score; // 得分
+
+    @Schema(description = "发布状态：0-待发布，1-已发布，2-发布失败", example = "0")
+    private Integer publishStatus; // 发布状态
+
+    @Schema(description = "发布失败次数", example = "0")
+    private Integer attempts; // 失败次数
+
+    @Schema(description = "事件发生时间")
+    private LocalDateTime createTime; // 事件发生时间
+
+    @Schema(description = "发布时间")
+    private LocalDateTime publishTime; // 发布时间
+
+    private static final long serialVersionUID = 1L; // 序列化版本号
+}
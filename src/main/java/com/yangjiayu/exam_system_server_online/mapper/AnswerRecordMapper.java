@@ -1,8 +1,14 @@
 package com.yangjiayu.exam_system_server_online.mapper;
 
 import com.yangjiayu.exam_system_server_online.entity.AnswerRecord;
+import com.yangjiayu.exam_system_server_online.vo.QuestionStatsVo;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
+
+import java.util.Collection;
+import java.util.List;
 
 /**
  * (answer_record)数据Mapper
@@ -14,4 +20,52 @@ import org.apache.ibatis.annotations.Mapper;
 @Mapper
 public interface AnswerRecordMapper extends BaseMapper<AnswerRecord> {
 
+    /**
+     * 批量插入答题记录（一条多值insert）
+     * @param answerRecords 答题记录集合，不能为空
+     * @return 插入条数
+     */
+    int customInsertBatch(@Param("answerRecords") List<AnswerRecord> answerRecords);
+
+    /**
+     * 批量更新判卷结果（一条 update ... case id when ... 语句）
+     * @param answerRecords 已经判分的答题记录，不能为空
+     * @return 更新条数
+     */
+    int customUpdateGradingBatch(@Param("answerRecords") List<AnswerRecord> answerRecords);
+
+    /**
+     * 统计试卷下已批阅考试记录中指定题目的答题记录数
+     * @param paperId 试卷id
+     * @param questionIds 题目id集合，不能为空
+     * @return 答题记录数
+     */
+    long customCountByPaper(@Param("paperId") Long paperId, @Param("questionIds") Collection<Long> questionIds);
+
+    /**
+     * 流式读取试卷下已批阅考试记录中指定题目的答题记录（mysql流式结果集，不会一次性加载到内存）
+     * @param paperId 试卷id
+     * @param questionIds 题目id集合，不能为空
+     * @param handler 逐行处理
+     */
+    void customStreamByPaper(@Param("paperId") Long paperId, @Param("questionIds") Collection<Long> questionIds,
+                             ResultHandler<AnswerRecord> handler);
+
+    /**
+     * 按id游标分页读取试卷下已批阅考试记录中一道题目的答题记录（按id升序）
+     * @param paperId 试卷id
+     * @param questionId 题目id
+     * @param afterId 上一页最后一条答题记录的id，第一页传0
+     * @param limit 每页条数
+     * @return 一页答题记录
+     */
+    List<AnswerRecord> customPageByPaperQuestion(@Param("paperId") Long paperId, @Param("questionId") Long questionId,
+                                                 @Param("afterId") Long afterId, @Param("limit") int limit);
+
+    /**
+     * 按题目汇总试卷下已批阅考试记录的作答情况（成绩统计重建使用）
+     * @param paperId 试卷id
+     * @return 每道题的 作答人数 答对人数 得分合计 考试总分合计 答对的人考试总分合计
+     */
+    List<QuestionStatsVo> customQuestionStats(@Param("paperId") Long paperId);
 }
@@ -0,0 +1,50 @@
+package com.yangjiayu.exam_system_server_online.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.yangjiayu.exam_system_server_online.entity.ExamOutboxEvent;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * (exam_outbox_event)数据Mapper
+ *
+ * @author yangjiayu
+ * @description 考试事件发件箱
+*/
+@Mapper
+public interface ExamOutboxMapper extends BaseMapper<ExamOutboxEvent> {
+
+    /**
+     * 锁定一批待发布的事件（for update skip locked，多个节点的中继任务各自锁定不同的事件），必须在事务中调用
+     * @param limit 最多锁定的数量
+     * @return 按id升序的待发布事件
+     */
+    List<ExamOutboxEvent> customLockPending(@Param("limit") int limit);
+
+    /**
+     * 批量标记为已发布
+     * @param ids 事件id集合，不能为空
+     * @return 更新条数
+     */
+    int customMarkPublished(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 发布失败次数加一，达到最大次数标记为发布失败
+     * @param id 事件id
+     * @param maxAttempts 最大失败次数
+     * @return 更新条数
+     */
+    int customMarkFailed(@Param("id") Long id, @Param("maxAttempts") int maxAttempts);
+
+    /**
+     * 删除指定时间之前已经发布的事件
+     * @param before 发布时间早于这个时间
+     * @param limit 一次最多删除的数量
+     * @return 删除条数
+     */
+    int customDeletePublished(@Param("before") LocalDateTime before, @Param("limit") int limit);
+}
@@ -2,10 +2,13 @@ package com.yangjiayu.exam_system_server_online.mapper;
 
 import com.yangjiayu.exam_system_server_online.entity.ExamRecord;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.yangjiayu.exam_system_server_online.vo.ExamRankingVO;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -20,4 +23,64 @@ public interface ExamRecordMapper extends BaseMapper<ExamRecord> {
 
 
     List<ExamRankingVO> customQueryRanking(@Param("paperId") Integer paperId, @Param("limit") Integer limit);;
+
+    /**
+     * 分页查询排行榜（redis排行榜还没有构建或者不可用时的降级查询）
+     * @param page 分页参数
+     * @param paperId 试卷id，为空查询总排行榜
+     * @return 分页结果
+     */
+    IPage<ExamRankingVO> customQueryRankingPage(IPage<ExamRankingVO> page, @Param("paperId") Integer paperId);
+
+    /**
+     * 查询指定考试记录的排行榜信息（只返回已批阅的记录）
+     * @param examRecordIds 考试记录id集合，不能为空
+     * @return 排行榜信息
+     */
+    List<ExamRankingVO> customQueryRankingByIds(@Param("examRecordIds") Collection<Integer> examRecordIds);
+
+    /**
+     * 查询考试记录的名次（得分更高或者得分相同用时更短的记录数 + 1）
+     * @param examRecordId 考试记录id
+     * @param paperId 试卷id，为空查询在总排行榜中的名次
+     * @return 排行榜信息（包含名次），没有批阅返回null
+     */
+    ExamRankingVO customQueryRankOf(@Param("examRecordId") Integer examRecordId, @Param("paperId") Integer paperId);
+
+    /**
+     * 按答题记录重新汇总考试记录的总分（一条update语句）
+     * @param examRecordIds 考试记录id集合，不能为空
+     * @return 更新条数
+     */
+    int customRecomputeScores(@Param("examRecordIds") Collection<Long> examRecordIds);
+
+    /**
+     * 游标（keyset）分页查询考试记录，按 开始时间 id 倒序
+     * @param studentName 学生姓名（模糊）
+     * @param status 考试状态
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param cursorStartTime 上一页最后一条记录的开始时间，第一页为空
+     * @param cursorId 上一页最后一条记录的id，第一页为空
+     * @param limit 查询条数
+     * @return 考试记录
+     */
+    List<ExamRecord> customQueryByCursor(@Param("studentName") String studentName, @Param("status") String status,
+                                         @Param("startDate") String startDate, @Param("endDate") String endDate,
+                                         @Param("cursorStartTime") LocalDateTime cursorStartTime, @Param("cursorId") Long cursorId,
+                                         @Param("limit") int limit);
+
+    /**
+     * 统计满足条件的考试记录数，最多数到 cap 条
+     * @return 记录数（不超过cap）
+     */
+    long customCountCapped(@Param("studentName") String studentName, @Param("status") String status,
+                           @Param("startDate") String startDate, @Param("endDate") String endDate,
+                           @Param("cap") int cap);
+
+    /**
+     * 考试记录表的估算行数（information_schema统计信息，不扫描表）
+     * @return 估算行数
+     */
+    Long customEstimateRows();
 }
@@ -0,0 +1,52 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.yangjiayu.exam_system_server_online.entity.AnswerRecord;
+import com.yangjiayu.exam_system_server_online.entity.Question;
+import com.yangjiayu.exam_system_server_online.vo.GradingResult;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Classname AiGradingService
+ * @Description 简答题AI判卷接口层
+ * @Date 2025/11/03 19:30
+ * @Created by YangJiaYu
+ */
+public interface AiGradingService {
+
+    /**
+     * 单道简答题AI判卷
+     * @param question 题目（含标准答案）
+     * @param userAnswer 学生答案
+     * @param maxScore 本题满分
+     * @return 判卷结果
+     */
+    Mono<GradingResult> gradeTextAnswer(Question question, String userAnswer, Integer maxScore);
+
+    /**
+     * 同一道简答题的多份答案批量AI判卷
+     * 先查判卷结果缓存，没有命中的答案按token预算合并成若干个请求，合并结果解析失败的答案退回逐份判卷
+     * @param question 题目（含标准答案）
+     * @param userAnswers 学生答案
+     * @param maxScore 本题满分
+     * @return 与userAnswers顺序一致的判卷结果，判卷失败的答案对应位置为null
+     */
+    Mono<List<GradingResult>> gradeTextAnswers(Question question, List<String> userAnswers, Integer maxScore);
+
+    /**
+     * 一份答卷中的简答题并发AI判卷，结果直接写回答题记录（得分 是否正确 ai评语）
+     * 单题判卷失败该题0分，不影响其他题目
+     * 同时判卷的多份答卷中同一道题的答案会在合并窗口内合并成一个请求
+     * @param textRecords 简答题的答题记录
+     * @param questionMap 题目id -> 题目
+     * @return 全部判完后完成
+     */
+    Mono<Void> gradeTextRecords(List<AnswerRecord> textRecords, Map<Long, Question> questionMap);
+
+    /**
+     * 判卷结果写回答题记录（满分 1 0分 0 其余就是2）
+     */
+    void applyGradingResult(AnswerRecord answerRecord, GradingResult result, int maxScore);
+}
@@ -0,0 +1,195 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.yangjiayu.exam_system_server_online.common.CacheConstants;
+import com.yangjiayu.exam_system_server_online.vo.SubmitAnswerVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 考试答案草稿服务（答题过程中自动保存）
+ *
+ * 原来答案只在交卷时一次性写入数据库：浏览器崩溃答案全部丢失，考试结束时所有学生的答卷同时写入mysql
+ * 这里把答题过程中的答案实时保存到redis hash中，交卷时再一次性批量写入数据库
+ *
+ * 核心功能:
+ * 1. 自动保存：答案写入 exam_record:answer_draft:考试记录id（field为题目id，value为答案），只访问一次redis
+ * 2. 交卷封存：写入已交卷标记并取出全部草稿（lua脚本原子执行），封存之后的自动保存请求被拒绝
+ * 3. 草稿写入数据库之后删除；交卷事务回滚时撤销封存（删除已交卷标记），考试可以继续自动保存
+ * 4. 草稿和标记都有过期时间，没有交卷的草稿不会一直占用内存
+ *
+ * 草稿使用 StringRedisTemplate 读写，field和value都是原始字符串
+ *
+ * @author Yangjiayu
+ * @description 答题草稿的redis存储
+ */
+@Service
+@Slf4j
+public class AnswerDraftService {
+
+    /**
+     * 自动保存：已交卷返回0，否则写入草稿并刷新过期时间返回1
+     * KEYS[1] 草稿key KEYS[2] 已交卷标记key
+     * ARGV 题目id1 答案1 题目id2 答案2 ... 过期时间
+     */
+    private static final RedisScript<Long> SAVE_SCRIPT = new DefaultRedisScript<>(
+        "if redis.call('EXISTS', KEYS[2]) == 1 then return 0 end " +
+        "for i = 1, #ARGV - 1, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+        "redis.call('EXPIRE', KEYS[1], ARGV[#ARGV]) " +
+        "return 1", Long.class);
+
+    /**
+     * 交卷封存：写入已交卷标记，返回全部草稿
+     * KEYS[1] 草稿key KEYS[2] 已交卷标记key ARGV[1] 标记过期时间
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> SEAL_SCRIPT = new DefaultRedisScript<>(
+        "redis.call('SET', KEYS[2], '1', 'EX', ARGV[1]) " +
+        "return redis.call('HGETALL', KEYS[1])", List.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+
+    public AnswerDraftService(StringRedisTemplate stringRedisTemplate) {
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    // ============== 核心方法 ==============
+
+    /**
+     * 自动保存答案草稿
+     *
+     * @param examRecordId 考试记录id
+     * @param answers 本次变化的答案（可以只包含部分题目）
+     * @return 是否保存成功，已经交卷返回false
+     */
+    public boolean save(Integer examRecordId, List<SubmitAnswerVo> answers) {
+        if (ObjectUtils.isEmpty(answers)) {
+            return true;
+        }
+        Object[] args = new Object[answers.size() * 2 + 1];
+        int i = 0;
+        for (SubmitAnswerVo answer : answers) {
+            args[i++] = String.valueOf(answer.getQuestionId());
+            args[i++] = answer.getUserAnswer() == null ? "" : answer.getUserAnswer();
+        }
+        args[i] = String.valueOf(CacheConstants.EXAM_ANSWER_DRAFT_EXPIRE_SECONDS);
+        Long saved = stringRedisTemplate.execute(SAVE_SCRIPT,
+            List.of(draftKey(examRecordId), submittedKey(examRecordId)), args);
+        return saved != null && saved == 1L;
+    }
+
+    /**
+     * 查询答案草稿
+     * redis不可用时返回空，只影响草稿回显
+     *
+     * @param examRecordId 考试记录id
+     * @return 题目id -> 答案
+     */
+    public Map<Integer, String> get(Integer examRecordId) {
+        try {
+            Map<Object, Object> entries = stringRedisTemplate.opsForHash().entries(draftKey(examRecordId));
+            Map<Integer, String> drafts = new LinkedHashMap<>(entries.size() * 2);
+            entries.forEach((questionId, answer) -> drafts.put(Integer.valueOf((String) questionId), toAnswer((String) answer)));
+            return drafts;
+        } catch (Exception e) {
+            log.warn("查询id={}考试记录的答案草稿失败！原因：{}", examRecordId, e.getMessage());
+            return Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 交卷封存：之后的自动保存请求全部被拒绝，返回封存时的全部草稿
+     * redis不可用时抛出异常，交卷事务回滚（考试仍然是进行中），不能只保存交卷请求中的答案把草稿丢掉
+     *
+     * @param examRecordId 考试记录id
+     * @return 题目id -> 答案
+     */
+    public Map<Integer, String> seal(Integer examRecordId) {
+        try {
+            List<?> flat = stringRedisTemplate.execute(SEAL_SCRIPT,
+                List.of(draftKey(examRecordId), submittedKey(examRecordId)),
+                String.valueOf(CacheConstants.EXAM_ANSWER_DRAFT_EXPIRE_SECONDS));
+            if (ObjectUtils.isEmpty(flat)) {
+                return Collections.emptyMap();
+            }
+            Map<Integer, String> drafts = new LinkedHashMap<>(flat.size());
+            for (int i = 0; i + 1 < flat.size(); i += 2) {
+                drafts.put(Integer.valueOf((String) flat.get(i)), toAnswer((String) flat.get(i + 1)));
+            }
+            return drafts;
+        } catch (Exception e) {
+            log.error("封存id={}考试记录的答案草稿失败，本次交卷回滚！原因：{}", examRecordId, e.getMessage());
+            throw new RuntimeException("id为%s的考试记录的答案草稿读取失败，请稍后重新交卷！".formatted(examRecordId));
+        }
+    }
+
+    /**
+     * 撤销封存（交卷事务回滚时调用）：删除已交卷标记，草稿没有被删除，继续自动保存即可
+     */
+    public void unseal(Integer examRecordId) {
+        try {
+            stringRedisTemplate.delete(submittedKey(examRecordId));
+        } catch (Exception e) {
+            log.warn("撤销id={}考试记录的交卷封存失败，标记过期之前无法自动保存！原因：{}", examRecordId, e.getMessage());
+        }
+    }
+
+    /**
+     * 删除草稿（已经写入数据库）
+     */
+    public void clear(Integer examRecordId) {
+        try {
+            stringRedisTemplate.delete(draftKey(examRecordId));
+        } catch (Exception e) {
+            log.warn("删除id={}考试记录的答案草稿失败！原因：{}", examRecordId, e.getMessage());
+        }
+    }
+
+    /**
+     * 草稿和交卷提交的答案合并，交卷提交的答案优先
+     *
+     * @return 按题目id去重之后的答案
+     */
+    public static List<SubmitAnswerVo> merge(Map<Integer, String> drafts, List<SubmitAnswerVo> answers) {
+        Map<Integer, String> merged = new LinkedHashMap<>(drafts);
+        if (!ObjectUtils.isEmpty(answers)) {
+            for (SubmitAnswerVo answer : answers) {
+                merged.put(answer.getQuestionId(), answer.getUserAnswer());
+            }
+        }
+        List<SubmitAnswerVo> result = new ArrayList<>(merged.size());
+        merged.forEach((questionId, userAnswer) -> {
+            SubmitAnswerVo vo = new SubmitAnswerVo();
+            vo.setQuestionId(questionId);
+            vo.setUserAnswer(userAnswer);
+            result.add(vo);
+        });
+        return result;
+    }
+
+    // ============== 私有方法 ==============
+
+    private String draftKey(Integer examRecordId) {
+        return CacheConstants.EXAM_ANSWER_DRAFT_KEY + examRecordId;
+    }
+
+    private String submittedKey(Integer examRecordId) {
+        return CacheConstants.EXAM_SUBMITTED_KEY + examRecordId;
+    }
+
+    /**
+     * 空字符串表示清空了答案，和交卷时没有作答保持一致
+     */
+    private String toAnswer(String answer) {
+        return ObjectUtils.isEmpty(answer) ? null : answer;
+    }
+}
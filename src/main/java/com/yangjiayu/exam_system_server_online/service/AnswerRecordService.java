@@ -3,6 +3,8 @@ package com.yangjiayu.exam_system_server_online.service;
 import com.baomidou.mybatisplus.extension.service.IService;
 import com.yangjiayu.exam_system_server_online.entity.AnswerRecord;
 
+import java.util.List;
+
 /**
  * 服务接口
  *
@@ -12,4 +14,11 @@ import com.yangjiayu.exam_system_server_online.entity.AnswerRecord;
  */
 public interface AnswerRecordService extends IService<AnswerRecord> {
 
+    /**
+     * 批量保存判卷结果（分数 是否正确 ai评价）
+     * 一条 update ... case id when ... 语句更新一批答题记录，代替每条记录一个update
+     * 没有判分的记录（题目被删除）不更新
+     * @param answerRecords 已经判分的答题记录
+     */
+    void customUpdateGradingResults(List<AnswerRecord> answerRecords);
 }
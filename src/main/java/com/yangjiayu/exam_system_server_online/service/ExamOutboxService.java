@@ -0,0 +1,166 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.yangjiayu.exam_system_server_online.common.CacheConstants;
+import com.yangjiayu.exam_system_server_online.config.properties.ExamOutboxProperties;
+import com.yangjiayu.exam_system_server_online.entity.ExamOutboxEvent;
+import com.yangjiayu.exam_system_server_online.entity.ExamRecord;
+import com.yangjiayu.exam_system_server_online.mapper.ExamOutboxMapper;
+import com.yangjiayu.exam_system_server_online.vo.ExamLifecycleEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 考试事件发件箱服务
+ *
+ * 开始考试 交卷 判卷完成 删除考试记录时，排行榜 成绩统计等下游处理原来都要在业务方法中同步调用；
+ * 这里业务方法只在修改考试记录的同一个事务中写入一条发件箱事件，事务提交即事件成立，回滚即事件不存在，
+ * 再由中继任务（ExamOutboxRelay）批量发布给下游消费者，下游处理慢不会增加交卷等请求的耗时
+ *
+ * 核心功能:
+ * 1. append：和考试记录同事务写入事件
+ * 2. relay：for update skip locked 锁定一批事件，发布为进程内spring事件（可选同时写入redis stream），标记为已发布；
+ *    多个节点同时中继时各自锁定不同的事件，节点宕机时事务回滚，事件由其他节点重新发布
+ * 3. 单个事件发布失败不影响同批其他事件，失败次数达到上限后标记为发布失败
+ * 4. cleanup：删除超过保留天数的已发布事件
+ *
+ * 事件至少发布一次，消费者需要保证幂等
+ *
+ * @author Yangjiayu
+ * @description 考试生命周期事件的事务发件箱
+ */
+@Service
+@Slf4j
+public class ExamOutboxService {
+
+    /**
+     * 清理已发布事件时一条delete语句最多删除的数量
+     */
+    private static final int CLEANUP_CHUNK_SIZE = 1000;
+
+    private final ExamOutboxMapper examOutboxMapper;
+    private final ExamOutboxProperties examOutboxProperties;
+    private final ApplicationEventPublisher applicationEventPublisher;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public ExamOutboxService(ExamOutboxMapper examOutboxMapper, ExamOutboxProperties examOutboxProperties,
+                             ApplicationEventPublisher applicationEventPublisher,
+                             StringRedisTemplate stringRedisTemplate, TransactionTemplate transactionTemplate) {
+        this.examOutboxMapper = examOutboxMapper;
+        this.examOutboxProperties = examOutboxProperties;
+        this.applicationEventPublisher = applicationEventPublisher;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    // ============== 核心方法 ==============
+
+    /**
+     * 写入一条考试事件，必须和考试记录的修改在同一个事务中调用
+     *
+     * @param eventType 事件类型，见 ExamLifecycleEvent
+     * @param examRecord 修改之后的考试记录
+     */
+    public void append(String eventType, ExamRecord examRecord) {
+        ExamOutboxEvent outboxEvent = new ExamOutboxEvent();
+        outboxEvent.setEventType(eventType);
+        outboxEvent.setExamRecordId(examRecord.getId());
+        outboxEvent.setPaperId(examRecord.getExamId());
+        outboxEvent.setStudentName(examRecord.getStudentName());
+        outboxEvent.setRecordStatus(examRecord.getStatus());
+        outboxEvent.setScore(examRecord.getScore());
+        outboxEvent.setPublishStatus(0);
+        outboxEvent.setAttempts(0);
+        outboxEvent.setCreateTime(LocalDateTime.now());
+        examOutboxMapper.insert(outboxEvent);
+    }
+
+    /**
+     * 发布一批待发布的事件
+     *
+     * @return 本批锁定的事件数，小于批次大小说明已经没有积压
+     */
+    public int relay() {
+        Integer locked = transactionTemplate.execute(status -> {
+            List<ExamOutboxEvent> outboxEvents = examOutboxMapper.customLockPending(examOutboxProperties.getBatchSize());
+            if (outboxEvents.isEmpty()) {
+                return 0;
+            }
+            List<Long> publishedIds = new ArrayList<>(outboxEvents.size());
+            for (ExamOutboxEvent outboxEvent : outboxEvents) {
+                try {
+                    publish(outboxEvent);
+                    publishedIds.add(outboxEvent.getId());
+                } catch (Exception e) {
+                    log.warn("id={}的考试事件（{}）发布失败，稍后重试！原因：{}",
+                        outboxEvent.getId(), outboxEvent.getEventType(), e.getMessage());
+                    examOutboxMapper.customMarkFailed(outboxEvent.getId(), examOutboxProperties.getMaxAttempts());
+                }
+            }
+            if (!publishedIds.isEmpty()) {
+                examOutboxMapper.customMarkPublished(publishedIds);
+            }
+            if (Boolean.TRUE.equals(examOutboxProperties.getStreamEnabled())) {
+                trimStream();
+            }
+            return outboxEvents.size();
+        });
+        return locked == null ? 0 : locked;
+    }
+
+    /**
+     * 删除超过保留天数的已发布事件
+     *
+     * @return 删除的事件数
+     */
+    public int cleanup() {
+        LocalDateTime before = LocalDateTime.now().minusDays(examOutboxProperties.getRetentionDays());
+        int total = 0;
+        int deleted;
+        do {
+            deleted = examOutboxMapper.customDeletePublished(before, CLEANUP_CHUNK_SIZE);
+            total += deleted;
+        } while (deleted == CLEANUP_CHUNK_SIZE);
+        return total;
+    }
+
+    // ============== 私有方法 ==============
+
+    private void publish(ExamOutboxEvent outboxEvent) {
+        ExamLifecycleEvent event = ExamLifecycleEvent.of(outboxEvent);
+        //进程内消费者（同步执行，在中继线程中，不占用请求线程）
+        applicationEventPublisher.publishEvent(event);
+        //其他服务通过redis stream消费
+        if (Boolean.TRUE.equals(examOutboxProperties.getStreamEnabled())) {
+            Map<String, String> fields = new HashMap<>();
+            fields.put("eventId", String.valueOf(event.getEventId()));
+            fields.put("type", event.getType());
+            fields.put("examRecordId", String.valueOf(event.getExamRecordId()));
+            fields.put("paperId", String.valueOf(event.getPaperId()));
+            fields.put("studentName", String.valueOf(event.getStudentName()));
+            fields.put("recordStatus", String.valueOf(event.getRecordStatus()));
+            fields.put("score", String.valueOf(event.getScore()));
+            fields.put("occurredAt", String.valueOf(event.getOccurredAt()));
+            stringRedisTemplate.opsForStream().add(StreamRecords.string(fields).withStreamKey(CacheConstants.EXAM_EVENT_STREAM_KEY));
+        }
+    }
+
+    private void trimStream() {
+        try {
+            stringRedisTemplate.opsForStream().trim(CacheConstants.EXAM_EVENT_STREAM_KEY,
+                examOutboxProperties.getStreamMaxLength(), true);
+        } catch (Exception e) {
+            log.warn("裁剪考试事件stream失败！原因：{}", e.getMessage());
+        }
+    }
+}
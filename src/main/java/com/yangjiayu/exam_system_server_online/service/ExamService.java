@@ -6,6 +6,7 @@ import com.baomidou.mybatisplus.extension.service.IService;
 import com.yangjiayu.exam_system_server_online.entity.Exam;
 import com.yangjiayu.exam_system_server_online.entity.ExamRecord;
 import com.yangjiayu.exam_system_server_online.entity.QuestionAnswer;
+import com.yangjiayu.exam_system_server_online.vo.CursorPageResult;
 import com.yangjiayu.exam_system_server_online.vo.ExamRankingVO;
 import com.yangjiayu.exam_system_server_online.vo.StartExamVo;
 import com.yangjiayu.exam_system_server_online.vo.SubmitAnswerVo;
@@ -20,20 +21,73 @@ import java.util.List;
  */
 public interface ExamService  extends IService<ExamRecord> {
 
-    ExamRecord startExam(StartExamVo startExamVo);
+    /**
+     * 开始考试（幂等）
+     * 同一个学生同一张试卷只会有一条进行中的考试记录，重复请求返回同一条记录
+     * @param startExamVo
+     * @param idempotencyKey 请求头 Idempotency-Key，可以为空
+     * @return
+     */
+    ExamRecord startExam(StartExamVo startExamVo, String idempotencyKey);
 
     ExamRecord customGetExamRecordById(Integer id);
 
+    /**
+     * 获取考试记录对应的学生答题试卷（不含答案）
+     * @param examRecordId
+     * @return 已经序列化好的 Result 响应json字节
+     */
+    byte[] customGetStudentPaper(Integer examRecordId);
+
+    /**
+     * 自动保存答案草稿（答题过程中高频调用，只有进行中的考试记录可以保存，草稿只写redis）
+     * @param examRecordId
+     * @param answers 本次变化的答案
+     */
+    void customSaveDraftAnswers(Integer examRecordId, List<SubmitAnswerVo> answers);
+
+    /**
+     * 交卷：答案草稿和提交的答案合并之后一次性写入数据库，进入判卷队列
+     * @param examRecordId
+     * @param answers
+     */
     void customSubmitAnswer(Integer examRecordId, List<SubmitAnswerVo> answers);
 
     /**
-     * ai智能判卷
+     * 到时自动交卷：使用已经保存的答案草稿交卷
+     * @param examRecordId
+     * @return 是否交卷，考试记录不存在或者已经不是进行中返回false
+     */
+    boolean customAutoSubmit(Integer examRecordId);
+
+    /**
+     * ai智能判卷（只处理已完成的考试记录，其他状态直接返回）
      * @param examRecordId
      * @return
      */
     ExamRecord gradeExam1(Integer examRecordId);
 
+    /**
+     * 判卷失败重试：已完成（交卷之后还没有批阅成功）的考试记录重新进入判卷队列
+     * @param examRecordId
+     */
+    void customRetryGrading(Integer examRecordId);
+
     void customRemoveById(Integer id);
 
     List<ExamRankingVO> customGetRanking(Integer paperId, Integer limit);
+
+    /**
+     * 游标分页查询考试记录（按开始时间 id 倒序），附带试卷基本信息
+     * @param cursor 上一页返回的游标，第一页为空
+     * @param size 每页数量
+     * @param studentName 学生姓名（模糊）
+     * @param status 考试状态
+     * @param startDate 开始日期
+     * @param endDate 结束日期
+     * @param withTotal 是否返回总数（没有筛选条件时为估算值，有筛选条件时最多数到10000）
+     * @return 游标分页结果
+     */
+    CursorPageResult<ExamRecord> customQueryByCursor(String cursor, Integer size, String studentName, String status,
+                                                     String startDate, String endDate, boolean withTotal);
 }
@@ -0,0 +1,109 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.yangjiayu.exam_system_server_online.common.CacheConstants;
+import com.yangjiayu.exam_system_server_online.config.properties.ExamTimerProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 考试计时服务
+ *
+ * 进行中的考试按截止时间保存在redis有序集合 exam_record:deadline 中（member为考试记录id，score为截止时间毫秒）
+ *
+ * 核心功能:
+ * 1. 开始考试时登记截止时间（开始时间 + 试卷时长 + 宽限时间）
+ * 2. 交卷时移除
+ * 3. 认领到期考试：lua脚本原子地取出最早到期的一批，并把它们的score推后一个租期
+ *    多个节点同时扫描也不会认领到同一场考试；认领的节点宕机，租期过后会被重新认领
+ * 4. 每次认领的开销是 O(log N + 批量大小)，与进行中的考试总数无关，不扫描数据库
+ *
+ * @author Yangjiayu
+ * @description 服务端考试计时（到期考试的有序集合）
+ */
+@Service
+@Slf4j
+public class ExamTimerService {
+
+    /**
+     * 认领到期考试
+     * KEYS[1] 有序集合key ARGV[1] 当前时间 ARGV[2] 批量大小 ARGV[3] 租期结束时间
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> CLAIM_SCRIPT = new DefaultRedisScript<>(
+        "local ids = redis.call('ZRANGEBYSCORE', KEYS[1], '-inf', ARGV[1], 'LIMIT', 0, ARGV[2]) " +
+        "for _, id in ipairs(ids) do redis.call('ZADD', KEYS[1], ARGV[3], id) end " +
+        "return ids", List.class);
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ExamTimerProperties properties;
+
+    public ExamTimerService(StringRedisTemplate stringRedisTemplate, ExamTimerProperties properties) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.properties = properties;
+    }
+
+    // ============== 核心方法 ==============
+
+    /**
+     * 登记考试截止时间
+     * 登记失败不影响开始考试，只是这场考试不会自动交卷
+     *
+     * @param examRecordId 考试记录id
+     * @param startTime 开始时间
+     * @param durationMinutes 试卷时长（分钟），为空或者小于等于0不限时
+     */
+    public void register(Long examRecordId, LocalDateTime startTime, Integer durationMinutes) {
+        if (durationMinutes == null || durationMinutes <= 0) {
+            return;
+        }
+        long deadline = startTime.plusMinutes(durationMinutes).plusSeconds(properties.getGraceSeconds())
+            .atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        try {
+            stringRedisTemplate.opsForZSet().add(CacheConstants.EXAM_DEADLINE_KEY, String.valueOf(examRecordId), deadline);
+        } catch (Exception e) {
+            log.warn("登记id={}考试记录的截止时间失败！原因：{}", examRecordId, e.getMessage());
+        }
+    }
+
+    /**
+     * 移除考试（已交卷 或者 已经不是进行中）
+     */
+    public void cancel(Integer examRecordId) {
+        try {
+            stringRedisTemplate.opsForZSet().remove(CacheConstants.EXAM_DEADLINE_KEY, String.valueOf(examRecordId));
+        } catch (Exception e) {
+            log.warn("移除id={}考试记录的截止时间失败！原因：{}", examRecordId, e.getMessage());
+        }
+    }
+
+    /**
+     * 认领一批到期的考试
+     *
+     * @return 考试记录id集合，没有到期的考试返回空集合
+     */
+    public List<Integer> claimExpired() {
+        long now = System.currentTimeMillis();
+        List<?> ids = stringRedisTemplate.execute(CLAIM_SCRIPT,
+            Collections.singletonList(CacheConstants.EXAM_DEADLINE_KEY),
+            String.valueOf(now), String.valueOf(properties.getBatchSize()),
+            String.valueOf(now + properties.getClaimLeaseSeconds() * 1000));
+        if (ObjectUtils.isEmpty(ids)) {
+            return Collections.emptyList();
+        }
+        List<Integer> examRecordIds = new ArrayList<>(ids.size());
+        for (Object id : ids) {
+            examRecordIds.add(Integer.valueOf((String) id));
+        }
+        return examRecordIds;
+    }
+}
@@ -0,0 +1,152 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yangjiayu.exam_system_server_online.common.CacheConstants;
+import com.yangjiayu.exam_system_server_online.config.properties.GradingProperties;
+import com.yangjiayu.exam_system_server_online.entity.Question;
+import com.yangjiayu.exam_system_server_online.entity.QuestionAnswer;
+import com.yangjiayu.exam_system_server_online.utils.RedisUtils;
+import com.yangjiayu.exam_system_server_online.vo.GradingResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.text.Normalizer;
+import java.time.Duration;
+
+/**
+ * 简答题判卷结果缓存服务
+ *
+ * 同一道简答题经常出现完全相同的答案（空白、"不会"、照抄课本定义），
+ * 相同的答案直接复用之前的ai判卷结果，减少ai调用的耗时和费用
+ *
+ * 两级缓存:
+ * 1. 一级：本地Caffeine缓存，命中不需要任何网络请求
+ * 2. 二级：redis缓存，多个节点共享
+ *
+ * 缓存key由内容决定：题目id + 答案版本（题目 标准答案 关键词的摘要）+ 满分 + 规范化后学生答案的摘要
+ * 修改标准答案之后版本变化，旧的判卷结果自然不会再命中：修改或删除题目时只清除本地缓存，
+ * redis中的旧结果等待过期（按模式删除需要 KEYS 扫描整个redis，会阻塞redis）
+ *
+ * @author Yangjiayu
+ * @description 简答题ai判卷结果的二级缓存
+ */
+@Service
+@Slf4j
+public class GradingCacheService {
+
+    private final RedisUtils redisUtils;
+    private final GradingProperties properties;
+
+    /**
+     * 一级缓存
+     */
+    private final Cache<String, GradingResult> localCache;
+
+    public GradingCacheService(RedisUtils redisUtils, GradingProperties properties) {
+        this.redisUtils = redisUtils;
+        this.properties = properties;
+        this.localCache = Caffeine.newBuilder()
+            .maximumSize(properties.getResultCacheLocalSize())
+            .expireAfterWrite(Duration.ofSeconds(properties.getResultCacheLocalExpireSeconds()))
+            .build();
+    }
+
+    // ============== 核心方法 ==============
+
+    /**
+     * 生成缓存key
+     *
+     * @param question 题目（包含标准答案）
+     * @param userAnswer 学生答案
+     * @param maxScore 满分
+     * @return 缓存key
+     */
+    public String buildKey(Question question, String userAnswer, Integer maxScore) {
+        return CacheConstants.GRADING_RESULT_KEY + question.getId() + ":" + answerVersion(question) + ":"
+            + maxScore + ":" + md5(normalizeAnswer(userAnswer));
+    }
+
+    /**
+     * 查询判卷结果，先查本地再查redis，redis命中回填本地
+     *
+     * @return 判卷结果，没有命中返回null
+     */
+    public GradingResult get(String key) {
+        if (!properties.getResultCacheEnabled()) {
+            return null;
+        }
+        GradingResult result = localCache.getIfPresent(key);
+        if (result != null) {
+            return result;
+        }
+        try {
+            result = (GradingResult) redisUtils.get(key);
+        } catch (Exception e) {
+            //redis出问题当作没有命中，继续调用ai判卷
+            log.warn("查询判卷结果缓存失败，key：{}，原因：{}", key, e.getMessage());
+            return null;
+        }
+        if (result == null || result.getScore() == null) {
+            //没有分数的结果（修复之前写入的）当作没有命中，重新判卷后覆盖
+            return null;
+        }
+        localCache.put(key, result);
+        return result;
+    }
+
+    /**
+     * 保存判卷结果到两级缓存，没有分数的结果不缓存
+     */
+    public void put(String key, GradingResult result) {
+        if (!properties.getResultCacheEnabled() || result == null || result.getScore() == null) {
+            return;
+        }
+        localCache.put(key, result);
+        try {
+            redisUtils.set(key, result, properties.getResultCacheExpireSeconds());
+        } catch (Exception e) {
+            log.warn("保存判卷结果缓存失败，key：{}，原因：{}", key, e.getMessage());
+        }
+    }
+
+    /**
+     * 清除某道题目在本地的判卷结果缓存（修改 删除题目时调用）
+     * redis中的结果key包含答案版本，标准答案修改后不会再命中，不需要删除，等待过期即可
+     */
+    public void evictQuestion(Long questionId) {
+        String prefix = CacheConstants.GRADING_RESULT_KEY + questionId + ":";
+        localCache.asMap().keySet().removeIf(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * 答案版本：题目 标准答案 关键词任意一个变化，版本就变化
+     */
+    public String answerVersion(Question question) {
+        QuestionAnswer answer = question.getAnswer();
+        String content = question.getTitle() + "|" + (answer == null ? "" : answer.getAnswer() + "|" + answer.getKeywords());
+        return md5(content).substring(0, 12);
+    }
+
+    // ============== 私有方法 ==============
+
+    /**
+     * 规范化学生答案：全角转半角、忽略大小写、去掉所有空白和结尾的标点
+     * "  不会。" 和 "不会" 视为同一个答案
+     */
+    private String normalizeAnswer(String userAnswer) {
+        if (userAnswer == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(userAnswer, Normalizer.Form.NFKC)
+            .toLowerCase()
+            .replaceAll("\\s+", "");
+        return normalized.replaceAll("[。.！!？?；;，,]+$", "");
+    }
+
+    private String md5(String content) {
+        return DigestUtils.md5DigestAsHex(content.getBytes(StandardCharsets.UTF_8));
+    }
+}
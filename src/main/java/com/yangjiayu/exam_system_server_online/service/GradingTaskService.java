@@ -0,0 +1,60 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.yangjiayu.exam_system_server_online.vo.GradingStatusVo;
+
+/**
+ * @Classname GradingTaskService
+ * @Description 异步判卷任务队列接口层（redis可靠队列 + 任务状态）
+ * @Date 2025/11/02 10:20
+ * @Created by YangJiaYu
+ */
+public interface GradingTaskService {
+
+    /**
+     * 提交判卷任务，存在事务时在事务提交之后才真正入队
+     * @param examRecordId 考试记录id
+     */
+    void submitGradingTask(Integer examRecordId);
+
+    /**
+     * 取出一个待判卷任务（同时移入处理中队列）
+     * @return 考试记录id，队列为空返回null
+     */
+    Integer pollGradingTask();
+
+    /**
+     * 判卷中任务的心跳：刷新任务状态的更新时间，判卷耗时再长也不会被当作超时任务找回
+     * @param examRecordId 考试记录id
+     */
+    void heartbeat(Integer examRecordId);
+
+    /**
+     * 判卷成功，移出处理中队列
+     * @param examRecordId 考试记录id
+     */
+    void completeGradingTask(Integer examRecordId);
+
+    /**
+     * 判卷失败，未超过最大次数重新入队，否则标记为失败
+     * @param examRecordId 考试记录id
+     * @param e 失败原因
+     */
+    void failGradingTask(Integer examRecordId, Exception e);
+
+    /**
+     * 查询判卷进度
+     * @param examRecordId 考试记录id
+     * @return 判卷进度
+     */
+    GradingStatusVo getGradingStatus(Integer examRecordId);
+
+    /**
+     * 找回超时的处理中任务（节点宕机）
+     */
+    void recoverStaleTasks();
+
+    /**
+     * 兜底扫描长时间未批阅的考试记录并重新入队（redis数据丢失）
+     */
+    void requeueStaleRecords();
+}
@@ -3,6 +3,8 @@ package com.yangjiayu.exam_system_server_online.service;
 import com.yangjiayu.exam_system_server_online.entity.Question;
 import com.yangjiayu.exam_system_server_online.vo.AiGenerateRequestVo;
 import com.yangjiayu.exam_system_server_online.vo.QuestionImportVo;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 import java.util.List;
 
@@ -21,9 +23,39 @@ public interface KimiAiService {
      */
     String callKimiAI(String prompt) throws InterruptedException;
 
+    /**
+     * 非阻塞的kimi调用，不占用调用方线程，可以和其他调用组合
+     * 失败按指数退避重试
+     * @param prompt
+     * @return 模型反馈的结果
+     */
+    Mono<String> callKimiAIReactive(String prompt);
+
+    /**
+     * 流式调用kimi（stream: true），模型生成一段就返回一段
+     * @param prompt
+     * @return 模型逐段返回的内容
+     */
+    Flux<String> callKimiAIStream(String prompt);
+
     List<QuestionImportVo> aiGenerateQuestions(AiGenerateRequestVo request) throws InterruptedException;
 
+    /**
+     * 非阻塞的ai出题
+     */
+    Mono<List<QuestionImportVo>> aiGenerateQuestionsReactive(AiGenerateRequestVo request);
+
+    /**
+     * 流式ai出题，每生成完一道题就返回一道题
+     */
+    Flux<QuestionImportVo> aiGenerateQuestionsStream(AiGenerateRequestVo request);
+
     String buildGradingPrompt(Question question, String userAnswer, Integer maxScore);
 
+    /**
+     * 批量判卷提示词：同一道题的多份答案，返回json数组
+     */
+    String buildBatchGradingPrompt(Question question, List<String> userAnswers, Integer maxScore);
+
     String buildSummaryPrompt(Integer totalScore, Integer maxScore, Integer questionCount, Integer correctCount);
 }
\ No newline at end of file
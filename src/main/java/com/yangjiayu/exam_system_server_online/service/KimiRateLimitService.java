@@ -0,0 +1,174 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.yangjiayu.exam_system_server_online.common.CacheConstants;
+import com.yangjiayu.exam_system_server_online.config.properties.KimiRateLimitProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RateIntervalUnit;
+import org.redisson.api.RateType;
+import org.redisson.api.RedissonClient;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * kimi调用限流服务
+ *
+ * 基于 Redisson 实现的分布式限流，所有节点共享同一份额度
+ * 在调用kimi之前拿到许可，避免突发流量把供应商的限流打满（429）
+ *
+ * 核心功能:
+ * 1. 每分钟请求数限制（令牌桶 RRateLimiter）
+ * 2. 每分钟token数限制（令牌桶 RRateLimiter，按预估token数扣减）
+ * 3. 在途请求数限制（可过期信号量 RPermitExpirableSemaphore，节点宕机许可自动过期）
+ * 4. 拿不到额度时排队等待，超过等待时间才失败
+ * 5. redis不可用时降级为不限流，不影响正常调用
+ *
+ * @author Yangjiayu
+ * @description ai调用限流 - 令牌桶 + 并发控制
+ */
+@Service
+@Slf4j
+public class KimiRateLimitService {
+
+    /**
+     * redisson连接redis是懒加载的，第一次调用时才创建
+     */
+    private final RedissonClient redissonClient;
+    private final KimiRateLimitProperties properties;
+
+    /**
+     * 限流器的速率和信号量的许可数是否已经写入redis
+     */
+    private volatile boolean initialized = false;
+
+    public KimiRateLimitService(@Lazy RedissonClient redissonClient, KimiRateLimitProperties properties) {
+        this.redissonClient = redissonClient;
+        this.properties = properties;
+    }
+
+    // ============== 核心方法 ==============
+
+    /**
+     * 获取一次调用的许可
+     *
+     * 依次获取：请求数令牌 -> token数令牌 -> 在途许可，三者共享同一个截止时间
+     * 调用结束之后（成功 失败 取消）必须调用 release 归还在途许可
+     *
+     * @param estimatedTokens 本次调用预估消耗的token数
+     * @return 许可，超过等待时间仍未拿到则抛出 RateLimitTimeoutException（调用方不应重试）
+     */
+    public Mono<Permit> acquire(int estimatedTokens) {
+        if (!properties.getEnabled()) {
+            return Mono.just(Permit.NONE);
+        }
+        long deadline = System.currentTimeMillis() + properties.getAcquireTimeoutSeconds() * 1000L;
+        //单次扣减不能超过桶的容量，否则redisson直接报错
+        int tokens = Math.max(1, Math.min(estimatedTokens, properties.getTokensPerMinute()));
+
+        return initialize()
+            .then(tryAcquireRate(CacheConstants.KIMI_REQUEST_LIMITER_KEY, 1, deadline))
+            .flatMap(ok -> tryAcquireRate(CacheConstants.KIMI_TOKEN_LIMITER_KEY, tokens, deadline))
+            //信号量超时没拿到许可返回null，Mono为空；等待时间和租期只能用同一个单位，统一换算成毫秒
+            .flatMap(ok -> Mono.fromCompletionStage(() -> inFlightSemaphore().tryAcquireAsync(remaining(deadline),
+                TimeUnit.SECONDS.toMillis(properties.getPermitLeaseSeconds()), TimeUnit.MILLISECONDS)))
+            .map(Permit::new)
+            .onErrorResume(e -> {
+                //redis出问题不能影响ai调用，降级为不限流
+                log.warn("kimi限流器不可用，本次调用不限流！原因：{}", e.getMessage());
+                return Mono.just(Permit.NONE);
+            })
+            .switchIfEmpty(Mono.error(() -> new RateLimitTimeoutException(
+                "ai调用排队超过%s秒仍未获取到额度，请稍后再试！".formatted(properties.getAcquireTimeoutSeconds()))));
+    }
+
+    /**
+     * 归还在途许可
+     */
+    public Mono<Void> release(Permit permit) {
+        if (permit.getPermitId() == null) {
+            return Mono.empty();
+        }
+        return Mono.fromCompletionStage(() -> inFlightSemaphore().tryReleaseAsync(permit.getPermitId()))
+            .then()
+            .onErrorResume(e -> {
+                //归还失败也没关系，许可到期会自动释放
+                log.warn("归还kimi在途许可失败，许可将在租期结束后自动释放！原因：{}", e.getMessage());
+                return Mono.empty();
+            });
+    }
+
+    /**
+     * 预估一次调用消耗的token数
+     * 中文大约一个字一个token，回答长度调用之前未知，按配置预扣
+     */
+    public int estimateTokens(String prompt) {
+        return (prompt == null ? 0 : prompt.length()) + properties.getExpectedCompletionTokens();
+    }
+
+    // ============== 私有方法 ==============
+
+    /**
+     * 在截止时间之前获取令牌，获取不到返回空
+     */
+    private Mono<Boolean> tryAcquireRate(String key, long permits, long deadline) {
+        return Mono.fromCompletionStage(() -> redissonClient.getRateLimiter(key)
+                .tryAcquireAsync(permits, remaining(deadline), TimeUnit.MILLISECONDS))
+            .filter(Boolean::booleanValue);
+    }
+
+    /**
+     * 第一次使用时把限流速率和许可数写入redis
+     * trySet只在redis中不存在时生效，多个节点启动不会互相覆盖；修改配置后需要删除对应的key
+     */
+    private Mono<Void> initialize() {
+        if (initialized) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> Mono.fromCompletionStage(() -> redissonClient.getRateLimiter(CacheConstants.KIMI_REQUEST_LIMITER_KEY)
+                .trySetRateAsync(RateType.OVERALL, properties.getRequestsPerMinute(), 1, RateIntervalUnit.MINUTES))
+            .then(Mono.fromCompletionStage(() -> redissonClient.getRateLimiter(CacheConstants.KIMI_TOKEN_LIMITER_KEY)
+                .trySetRateAsync(RateType.OVERALL, properties.getTokensPerMinute(), 1, RateIntervalUnit.MINUTES)))
+            .then(Mono.fromCompletionStage(() -> inFlightSemaphore().trySetPermitsAsync(properties.getMaxInFlight())))
+            .doOnSuccess(v -> initialized = true)
+            .then());
+    }
+
+    private RPermitExpirableSemaphore inFlightSemaphore() {
+        return redissonClient.getPermitExpirableSemaphore(CacheConstants.KIMI_IN_FLIGHT_KEY);
+    }
+
+    private long remaining(long deadline) {
+        return Math.max(0, deadline - System.currentTimeMillis());
+    }
+
+    /**
+     * 排队超过等待时间仍未获取到额度：限流器已经饱和，重试只会再排一次队，调用方直接失败
+     */
+    public static class RateLimitTimeoutException extends RuntimeException {
+
+        public RateLimitTimeoutException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * 一次调用的许可，permitId为空表示没有占用在途许可（未开启限流或已降级）
+     */
+    public static class Permit {
+
+        public static final Permit NONE = new Permit(null);
+
+        private final String permitId;
+
+        public Permit(String permitId) {
+            this.permitId = permitId;
+        }
+
+        public String getPermitId() {
+            return permitId;
+        }
+    }
+}
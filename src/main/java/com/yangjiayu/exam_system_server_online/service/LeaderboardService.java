@@ -0,0 +1,432 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.alibaba.fastjson.JSON;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.yangjiayu.exam_system_server_online.common.CacheConstants;
+import com.yangjiayu.exam_system_server_online.entity.ExamRecord;
+import com.yangjiayu.exam_system_server_online.entity.Paper;
+import com.yangjiayu.exam_system_server_online.mapper.ExamRecordMapper;
+import com.yangjiayu.exam_system_server_online.vo.ExamRankingVO;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.DefaultTypedTuple;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ZSetOperations;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * 考试排行榜服务
+ *
+ * 原来每次查询排行榜都要 exam_records join paper + TIMESTAMPDIFF + order by score desc, duration asc，
+ * 不传limit时返回整张表；这里把排行榜物化到redis有序集合中，判卷完成时增量更新
+ *
+ * 数据结构:
+ * 1. exam_record:ranking:paper:试卷id  每张试卷的排行榜（zset，member为考试记录id）
+ * 2. exam_record:ranking:global        所有试卷的总排行榜（zset）
+ * 3. exam_record:ranking:info          考试记录id -> 排行榜展示信息json（hash）
+ * 4. exam_record:ranking:papers        已经有排行榜的试卷id（set），重建时不需要 KEYS 扫描
+ *
+ * 排序分数 = 考试得分 * 10^7 - 用时秒数：得分高的在前，得分相同用时短的在前，一个zset就能表达两个排序条件
+ *
+ * 核心功能:
+ * 1. 判卷完成（已批阅）时更新排行榜，O(log n)
+ * 2. 分页查询 O(log n + 每页数量)，查询自己的名次 O(log n)
+ * 3. 从数据库重建排行榜（启动任务 管理接口 重新判卷之后），新数据写到临时key之后rename，重建过程中查询不受影响；
+ *    多个节点 多个请求同时重建时只有拿到锁（SET NX）的一个执行，重建期间更新 删除的考试记录在rename之后从数据库重放
+ * 4. 排行榜还没有构建或者redis不可用时，降级为数据库查询，查询请求不会触发重建
+ *
+ * @author Yangjiayu
+ * @description redis物化的考试排行榜
+ */
+@Service
+@Slf4j
+public class LeaderboardService {
+
+    /**
+     * 排序分数中得分的权重，用时秒数必须小于它
+     */
+    private static final double SCORE_FACTOR = 10_000_000D;
+
+    /**
+     * 分页查询每页最多的数量
+     */
+    private static final long MAX_PAGE_SIZE = 100;
+
+    /**
+     * 不传limit时最多返回的数量
+     */
+    public static final int DEFAULT_RANKING_LIMIT = 100;
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ExamRecordMapper examRecordMapper;
+
+    public LeaderboardService(StringRedisTemplate stringRedisTemplate, ExamRecordMapper examRecordMapper) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.examRecordMapper = examRecordMapper;
+    }
+
+    // ============== 核心方法 ==============
+
+    /**
+     * 考试记录判卷完成，更新试卷排行榜和总排行榜
+     * 更新失败不影响判卷，可以通过重建恢复
+     *
+     * @param examRecord 已批阅的考试记录
+     * @param paper 考试记录对应的试卷
+     */
+    public void update(ExamRecord examRecord, Paper paper) {
+        ExamRankingVO rankingVO = new ExamRankingVO();
+        rankingVO.setId(examRecord.getId().intValue());
+        rankingVO.setStudentName(examRecord.getStudentName());
+        rankingVO.setScore(examRecord.getScore());
+        rankingVO.setExamId(examRecord.getExamId());
+        rankingVO.setPaperName(paper.getName());
+        rankingVO.setPaperTotalScore(paper.getTotalScore());
+        rankingVO.setStartTime(examRecord.getStartTime());
+        rankingVO.setEndTime(examRecord.getEndTime());
+        if (examRecord.getStartTime() != null && examRecord.getEndTime() != null) {
+            rankingVO.setDuration(Duration.between(examRecord.getStartTime(), examRecord.getEndTime()).toMinutes());
+        }
+        try {
+            write(rankingVO, isRebuilding());
+        } catch (Exception e) {
+            log.warn("更新id={}考试记录的排行榜失败！原因：{}", rankingVO.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 从排行榜中移除考试记录（删除考试记录时调用）
+     */
+    public void remove(Integer examRecordId, Integer paperId) {
+        try {
+            if (isRebuilding()) {
+                markReplay(examRecordId, paperId);
+            }
+            delete(examRecordId, paperId);
+        } catch (Exception e) {
+            log.warn("从排行榜移除id={}考试记录失败！原因：{}", examRecordId, e.getMessage());
+        }
+    }
+
+    /**
+     * 查询排行榜前几名
+     *
+     * @param paperId 试卷id，为空查询总排行榜
+     * @param limit 数量，为空返回前100名
+     * @return 排行榜
+     */
+    public List<ExamRankingVO> top(Integer paperId, Integer limit) {
+        int size = limit == null || limit <= 0 ? DEFAULT_RANKING_LIMIT : limit;
+        if (!isBuilt()) {
+            return examRecordMapper.customQueryRanking(paperId, size);
+        }
+        try {
+            return range(rankingKey(paperId), 0, size - 1);
+        } catch (Exception e) {
+            log.warn("查询redis排行榜失败，直接查询数据库！原因：{}", e.getMessage());
+            return examRecordMapper.customQueryRanking(paperId, size);
+        }
+    }
+
+    /**
+     * 分页查询排行榜
+     *
+     * @param paperId 试卷id，为空查询总排行榜
+     * @param current 页码，从1开始（小于1按第1页）
+     * @param size 每页数量（限制在1-100之间）
+     * @return 分页结果，total为排行榜总人数
+     */
+    public Page<ExamRankingVO> page(Integer paperId, long current, long size) {
+        //页码小于1时start为负数，range会从有序集合的末尾取出最后几名；每页过大会一次取出整个排行榜
+        current = Math.max(current, 1);
+        size = Math.min(Math.max(size, 1), MAX_PAGE_SIZE);
+        if (!isBuilt()) {
+            return pageFromDatabase(paperId, current, size);
+        }
+        try {
+            String key = rankingKey(paperId);
+            Long total = stringRedisTemplate.opsForZSet().zCard(key);
+            Page<ExamRankingVO> page = new Page<>(current, size, total == null ? 0 : total);
+            long start = (current - 1) * size;
+            page.setRecords(total == null || start >= total ? Collections.emptyList() : range(key, start, start + size - 1));
+            return page;
+        } catch (Exception e) {
+            log.warn("分页查询redis排行榜失败，直接查询数据库！原因：{}", e.getMessage());
+            return pageFromDatabase(paperId, current, size);
+        }
+    }
+
+    /**
+     * 查询考试记录的名次
+     *
+     * @param examRecordId 考试记录id
+     * @param paperId 试卷id，为空查询在总排行榜中的名次
+     * @return 排行榜信息（包含名次），没有上榜（未批阅）返回null
+     */
+    public ExamRankingVO rankOf(Integer examRecordId, Integer paperId) {
+        if (!isBuilt()) {
+            return examRecordMapper.customQueryRankOf(examRecordId, paperId);
+        }
+        String member = String.valueOf(examRecordId);
+        try {
+            Long rank = stringRedisTemplate.opsForZSet().reverseRank(rankingKey(paperId), member);
+            if (rank == null) {
+                return null;
+            }
+            Object info = stringRedisTemplate.opsForHash().get(CacheConstants.RANKING_INFO_KEY, member);
+            if (info == null) {
+                return null;
+            }
+            ExamRankingVO rankingVO = JSON.parseObject((String) info, ExamRankingVO.class);
+            rankingVO.setRank(rank + 1);
+            return rankingVO;
+        } catch (Exception e) {
+            log.warn("查询redis排行榜名次失败，直接查询数据库！原因：{}", e.getMessage());
+            return examRecordMapper.customQueryRankOf(examRecordId, paperId);
+        }
+    }
+
+    /**
+     * 从数据库重建排行榜（启动任务 管理接口 重新判卷之后调用，查询请求不会触发）
+     * 同一时间只有一个重建（所有节点），没有拿到锁直接抛出异常
+     *
+     * @param paperId 试卷id，为空重建总排行榜和所有试卷的排行榜
+     * @return 重建的考试记录数
+     */
+    public int rebuild(Integer paperId) {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(CacheConstants.RANKING_REBUILD_LOCK_KEY, token,
+            Duration.ofSeconds(CacheConstants.RANKING_REBUILD_LOCK_SECONDS));
+        if (!Boolean.TRUE.equals(acquired)) {
+            throw new RuntimeException("排行榜正在重建中，请稍后再试！");
+        }
+        try {
+            //拿到锁之后再查询数据库：之后判卷完成的记录都会进入重放集合，之前的已经在查询结果中
+            stringRedisTemplate.delete(CacheConstants.RANKING_REPLAY_KEY);
+            int count = rebuildLocked(paperId);
+            replay();
+            return count;
+        } finally {
+            if (token.equals(stringRedisTemplate.opsForValue().get(CacheConstants.RANKING_REBUILD_LOCK_KEY))) {
+                stringRedisTemplate.delete(CacheConstants.RANKING_REBUILD_LOCK_KEY);
+            }
+        }
+    }
+
+    /**
+     * 排行榜是否已经从数据库构建
+     */
+    public boolean isBuilt() {
+        try {
+            return Boolean.TRUE.equals(stringRedisTemplate.hasKey(CacheConstants.RANKING_BUILT_KEY));
+        } catch (Exception e) {
+            log.warn("查询排行榜状态失败！原因：{}", e.getMessage());
+            return false;
+        }
+    }
+
+    // ============== 私有方法 ==============
+
+    private int rebuildLocked(Integer paperId) {
+        List<ExamRankingVO> rankings = examRecordMapper.customQueryRanking(paperId, null);
+        //目标key -> 排行榜数据
+        Map<String, Set<ZSetOperations.TypedTuple<String>>> boards = new HashMap<>();
+        Set<String> paperIds = new HashSet<>();
+        Map<String, String> infos = new HashMap<>(rankings.size() * 2);
+        for (ExamRankingVO rankingVO : rankings) {
+            String member = String.valueOf(rankingVO.getId());
+            DefaultTypedTuple<String> tuple = new DefaultTypedTuple<>(member, rankScore(rankingVO));
+            boards.computeIfAbsent(paperKey(rankingVO.getExamId()), key -> new HashSet<>()).add(tuple);
+            paperIds.add(String.valueOf(rankingVO.getExamId()));
+            if (paperId == null) {
+                boards.computeIfAbsent(CacheConstants.RANKING_GLOBAL_KEY, key -> new HashSet<>()).add(tuple);
+            }
+            infos.put(member, JSON.toJSONString(rankingVO));
+        }
+        if (paperId == null) {
+            //没有任何已批阅记录的试卷不会出现在查询结果中，旧的排行榜直接删除（试卷id集合中记录了所有有排行榜的试卷）
+            Set<String> stalePaperIds = stringRedisTemplate.opsForSet().members(CacheConstants.RANKING_PAPERS_KEY);
+            if (!ObjectUtils.isEmpty(stalePaperIds)) {
+                stalePaperIds.removeAll(paperIds);
+                if (!stalePaperIds.isEmpty()) {
+                    stringRedisTemplate.delete(stalePaperIds.stream().map(id -> CacheConstants.RANKING_PAPER_KEY + id).toList());
+                    stringRedisTemplate.opsForSet().remove(CacheConstants.RANKING_PAPERS_KEY, stalePaperIds.toArray());
+                }
+            }
+            boards.putIfAbsent(CacheConstants.RANKING_GLOBAL_KEY, Collections.emptySet());
+        } else {
+            boards.putIfAbsent(paperKey(paperId), Collections.emptySet());
+        }
+        if (!paperIds.isEmpty()) {
+            stringRedisTemplate.opsForSet().add(CacheConstants.RANKING_PAPERS_KEY, paperIds.toArray(new String[0]));
+        }
+        if (!infos.isEmpty()) {
+            stringRedisTemplate.opsForHash().putAll(CacheConstants.RANKING_INFO_KEY, infos);
+        }
+        //先写临时key，再rename覆盖，重建过程中查询看到的始终是完整的排行榜
+        boards.forEach(this::replaceBoard);
+        if (paperId == null) {
+            stringRedisTemplate.opsForValue().set(CacheConstants.RANKING_BUILT_KEY, "1");
+        } else {
+            //单张试卷重建之后同步刷新总排行榜中的分数
+            boards.get(paperKey(paperId)).forEach(tuple ->
+                stringRedisTemplate.opsForZSet().add(CacheConstants.RANKING_GLOBAL_KEY, tuple.getValue(), tuple.getScore()));
+        }
+        log.info("排行榜重建完成，试卷id：{}，考试记录数：{}", paperId, rankings.size());
+        return rankings.size();
+    }
+
+    /**
+     * 重放重建期间更新 删除的考试记录：rename可能覆盖了这些写入，按数据库的当前状态重新写入或者移除
+     */
+    private void replay() {
+        Set<String> entries = stringRedisTemplate.opsForSet().members(CacheConstants.RANKING_REPLAY_KEY);
+        stringRedisTemplate.delete(CacheConstants.RANKING_REPLAY_KEY);
+        if (ObjectUtils.isEmpty(entries)) {
+            return;
+        }
+        //考试记录id -> 试卷id
+        Map<Integer, Integer> replayIds = new HashMap<>();
+        for (String entry : entries) {
+            String[] parts = entry.split(":");
+            replayIds.put(Integer.valueOf(parts[0]), parts.length > 1 && !"null".equals(parts[1]) ? Integer.valueOf(parts[1]) : null);
+        }
+        Map<Integer, ExamRankingVO> graded = new HashMap<>();
+        examRecordMapper.customQueryRankingByIds(replayIds.keySet()).forEach(rankingVO -> graded.put(rankingVO.getId(), rankingVO));
+        replayIds.forEach((examRecordId, paperId) -> {
+            ExamRankingVO rankingVO = graded.get(examRecordId);
+            if (rankingVO != null) {
+                write(rankingVO, false);
+            } else {
+                delete(examRecordId, paperId);
+            }
+        });
+        log.info("排行榜重建期间的{}条考试记录重放完成", replayIds.size());
+    }
+
+    /**
+     * 写入一条考试记录的排行榜数据（试卷排行榜 总排行榜 展示信息 试卷id集合）
+     *
+     * @param rankingVO 排行榜信息
+     * @param rebuilding 正在重建：同时记入重放集合，rename之后重放
+     */
+    private void write(ExamRankingVO rankingVO, boolean rebuilding) {
+        String member = String.valueOf(rankingVO.getId());
+        double rankScore = rankScore(rankingVO);
+        String info = JSON.toJSONString(rankingVO);
+        stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                RedisOperations<String, String> redisOperations = (RedisOperations<String, String>) operations;
+                redisOperations.opsForZSet().add(paperKey(rankingVO.getExamId()), member, rankScore);
+                redisOperations.opsForZSet().add(CacheConstants.RANKING_GLOBAL_KEY, member, rankScore);
+                redisOperations.opsForHash().put(CacheConstants.RANKING_INFO_KEY, member, info);
+                redisOperations.opsForSet().add(CacheConstants.RANKING_PAPERS_KEY, String.valueOf(rankingVO.getExamId()));
+                if (rebuilding) {
+                    redisOperations.opsForSet().add(CacheConstants.RANKING_REPLAY_KEY, member + ":" + rankingVO.getExamId());
+                    redisOperations.expire(CacheConstants.RANKING_REPLAY_KEY,
+                        Duration.ofSeconds(CacheConstants.RANKING_REBUILD_LOCK_SECONDS));
+                }
+                return null;
+            }
+        });
+    }
+
+    private void delete(Integer examRecordId, Integer paperId) {
+        String member = String.valueOf(examRecordId);
+        if (paperId != null) {
+            stringRedisTemplate.opsForZSet().remove(paperKey(paperId), member);
+        }
+        stringRedisTemplate.opsForZSet().remove(CacheConstants.RANKING_GLOBAL_KEY, member);
+        stringRedisTemplate.opsForHash().delete(CacheConstants.RANKING_INFO_KEY, member);
+    }
+
+    private void markReplay(Integer examRecordId, Integer paperId) {
+        stringRedisTemplate.opsForSet().add(CacheConstants.RANKING_REPLAY_KEY, examRecordId + ":" + paperId);
+        stringRedisTemplate.expire(CacheConstants.RANKING_REPLAY_KEY, Duration.ofSeconds(CacheConstants.RANKING_REBUILD_LOCK_SECONDS));
+    }
+
+    /**
+     * 当前是否有节点正在重建排行榜
+     */
+    private boolean isRebuilding() {
+        return Boolean.TRUE.equals(stringRedisTemplate.hasKey(CacheConstants.RANKING_REBUILD_LOCK_KEY));
+    }
+
+    /**
+     * 数据库分页查询排行榜，名次按分页位置计算
+     */
+    private Page<ExamRankingVO> pageFromDatabase(Integer paperId, long current, long size) {
+        Page<ExamRankingVO> page = new Page<>(current, size);
+        examRecordMapper.customQueryRankingPage(page, paperId);
+        long rank = (current - 1) * size;
+        for (ExamRankingVO rankingVO : page.getRecords()) {
+            rankingVO.setRank(++rank);
+        }
+        return page;
+    }
+
+    private void replaceBoard(String key, Set<ZSetOperations.TypedTuple<String>> tuples) {
+        if (tuples.isEmpty()) {
+            stringRedisTemplate.delete(key);
+            return;
+        }
+        String tempKey = key + ":rebuilding:" + UUID.randomUUID();
+        stringRedisTemplate.opsForZSet().add(tempKey, tuples);
+        stringRedisTemplate.rename(tempKey, key);
+    }
+
+    private List<ExamRankingVO> range(String key, long start, long end) {
+        Set<String> members = stringRedisTemplate.opsForZSet().reverseRange(key, start, end);
+        if (ObjectUtils.isEmpty(members)) {
+            return Collections.emptyList();
+        }
+        List<Object> infos = stringRedisTemplate.opsForHash().multiGet(CacheConstants.RANKING_INFO_KEY, new ArrayList<>(members));
+        List<ExamRankingVO> rankings = new ArrayList<>(infos.size());
+        long rank = start;
+        for (Object info : infos) {
+            rank++;
+            if (info == null) {
+                continue;
+            }
+            ExamRankingVO rankingVO = JSON.parseObject((String) info, ExamRankingVO.class);
+            rankingVO.setRank(rank);
+            rankings.add(rankingVO);
+        }
+        return rankings;
+    }
+
+    /**
+     * 排序分数 = 得分 * 10^7 - 用时秒数
+     */
+    private double rankScore(ExamRankingVO rankingVO) {
+        long seconds = 0;
+        if (rankingVO.getStartTime() != null && rankingVO.getEndTime() != null) {
+            seconds = Math.max(0, Duration.between(rankingVO.getStartTime(), rankingVO.getEndTime()).getSeconds());
+        }
+        int score = rankingVO.getScore() == null ? 0 : rankingVO.getScore();
+        return score * SCORE_FACTOR - Math.min(seconds, (long) SCORE_FACTOR - 1);
+    }
+
+    private String rankingKey(Integer paperId) {
+        return paperId == null ? CacheConstants.RANKING_GLOBAL_KEY : paperKey(paperId);
+    }
+
+    private String paperKey(Integer paperId) {
+        return CacheConstants.RANKING_PAPER_KEY + paperId;
+    }
+}
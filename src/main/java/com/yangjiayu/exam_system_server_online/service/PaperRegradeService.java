@@ -0,0 +1,382 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.yangjiayu.exam_system_server_online.common.CacheConstants;
+import com.yangjiayu.exam_system_server_online.entity.AnswerRecord;
+import com.yangjiayu.exam_system_server_online.entity.Question;
+import com.yangjiayu.exam_system_server_online.mapper.AnswerRecordMapper;
+import com.yangjiayu.exam_system_server_online.mapper.ExamRecordMapper;
+import com.yangjiayu.exam_system_server_online.utils.ObjectiveGradingUtils;
+import com.yangjiayu.exam_system_server_online.utils.RedisUtils;
+import com.yangjiayu.exam_system_server_online.vo.GradingResult;
+import com.yangjiayu.exam_system_server_online.vo.PaperSnapshot;
+import com.yangjiayu.exam_system_server_online.vo.RegradeProgressVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 整卷重新判卷服务
+ *
+ * 老师修改了试卷中题目的标准答案之后，已经批阅的考试记录需要重新判分
+ * 逐个调用 gradeExam1 每次都要重新加载试卷，并且所有简答题都重新调用ai，这里改成一个后台任务：
+ *
+ * 核心功能:
+ * 1. 试卷快照只加载一次，只重新判指定的题目（不指定时判整张试卷）
+ * 2. 客观题的答题记录使用mysql流式游标逐行读取，边读边判，不会一次性加载全部考试的答题记录
+ * 3. 得分有变化的记录攒够一批用一条case更新语句写回
+ * 4. 简答题逐题按id游标分页读取，每页走批量判卷 + 判卷结果缓存；
+ *    不指定题目时只重新判答案版本（题目 标准答案 关键词）和上一次重新判卷不同的简答题，其他简答题不动、不调用ai
+ * 5. 得分有变化的考试记录按批重新汇总总分（一条update语句）
+ * 6. 进度保存在redis hash中（paper:regrade:progress:试卷id），前端轮询
+ * 7. 完成之后重建这张试卷的排行榜
+ *
+ * 注意：只重新计算分数，不重新生成ai考试评语
+ *
+ * @author Yangjiayu
+ * @description 修改标准答案后整卷重新判卷
+ */
+@Service
+@Slf4j
+public class PaperRegradeService {
+
+    public static final String STATUS_NONE = "NONE";
+    public static final String STATUS_RUNNING = "RUNNING";
+    public static final String STATUS_SUCCESS = "SUCCESS";
+    public static final String STATUS_FAILED = "FAILED";
+
+    /**
+     * 一条case更新语句写回的答题记录数
+     */
+    private static final int WRITE_CHUNK_SIZE = 500;
+
+    /**
+     * 一条update语句重新汇总的考试记录数
+     */
+    private static final int SCORE_CHUNK_SIZE = 500;
+
+    /**
+     * 简答题每页读取并批量判卷的答题记录数
+     */
+    private static final int TEXT_PAGE_SIZE = 200;
+
+    private final PaperSnapshotService paperSnapshotService;
+    private final AnswerRecordMapper answerRecordMapper;
+    private final AnswerRecordService answerRecordService;
+    private final ExamRecordMapper examRecordMapper;
+    private final AiGradingService aiGradingService;
+    private final GradingCacheService gradingCacheService;
+    private final RedisUtils redisUtils;
+    private final LeaderboardService leaderboardService;
+    private final PaperStatsService paperStatsService;
+    private final ThreadPoolTaskExecutor gradingExecutor;
+
+    public PaperRegradeService(PaperSnapshotService paperSnapshotService, AnswerRecordMapper answerRecordMapper,
+                               AnswerRecordService answerRecordService, ExamRecordMapper examRecordMapper,
+                               AiGradingService aiGradingService, GradingCacheService gradingCacheService,
+                               RedisUtils redisUtils,
+                               LeaderboardService leaderboardService, PaperStatsService paperStatsService,
+                               @Qualifier("gradingExecutor") ThreadPoolTaskExecutor gradingExecutor) {
+        this.paperSnapshotService = paperSnapshotService;
+        this.answerRecordMapper = answerRecordMapper;
+        this.answerRecordService = answerRecordService;
+        this.examRecordMapper = examRecordMapper;
+        this.aiGradingService = aiGradingService;
+        this.gradingCacheService = gradingCacheService;
+        this.redisUtils = redisUtils;
+        this.leaderboardService = leaderboardService;
+        this.paperStatsService = paperStatsService;
+        this.gradingExecutor = gradingExecutor;
+    }
+
+    // ============== 核心方法 ==============
+
+    /**
+     * 开始整卷重新判卷（后台执行）
+     *
+     * @param paperId 试卷id
+     * @param questionIds 需要重新判卷的题目id，为空表示整张试卷（简答题只判答案版本有变化的）
+     * @return 初始进度
+     */
+    public RegradeProgressVo start(Long paperId, List<Long> questionIds) {
+        //1.试卷快照只加载一次，确定需要重新判卷的题目
+        PaperSnapshot snapshot = paperSnapshotService.getPaperSnapshot(paperId);
+        Map<Object, Object> gradedVersions = ObjectUtils.isEmpty(questionIds) ? loadGradedVersions(paperId) : Map.of();
+        Map<Long, Question> questions = new LinkedHashMap<>();
+        Map<Long, String> textVersions = new LinkedHashMap<>();
+        for (Question question : snapshot.getPaper().getQuestions()) {
+            if (!ObjectUtils.isEmpty(questionIds) && !questionIds.contains(question.getId())) {
+                continue;
+            }
+            if ("TEXT".equalsIgnoreCase(question.getType())) {
+                String version = gradingCacheService.answerVersion(question);
+                if (version.equals(gradedVersions.get(question.getId().toString()))) {
+                    //答案版本和上一次重新判卷相同，分数不会变化
+                    continue;
+                }
+                textVersions.put(question.getId(), version);
+            }
+            questions.put(question.getId(), question);
+        }
+        if (questions.isEmpty()) {
+            throw new RuntimeException("id=%s的试卷中没有需要重新判卷的题目！".formatted(paperId));
+        }
+
+        //2.同一张试卷同时只能有一个重新判卷任务
+        String lockKey = CacheConstants.PAPER_REGRADE_LOCK_KEY + paperId;
+        if (!Boolean.TRUE.equals(redisUtils.setIfAbsent(lockKey, 1, CacheConstants.PAPER_REGRADE_EXPIRE_SECONDS))) {
+            throw new RuntimeException("id=%s的试卷正在重新判卷，请稍后再试！".formatted(paperId));
+        }
+
+        //3.交给判卷线程池执行
+        RegradeJob job = new RegradeJob(paperId, questions, textVersions,
+            answerRecordMapper.customCountByPaper(paperId, questions.keySet()));
+        job.saveProgress(STATUS_RUNNING, null);
+        try {
+            gradingExecutor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            redisUtils.delete(lockKey);
+            job.saveProgress(STATUS_FAILED, "判卷线程池繁忙");
+            throw new RuntimeException("判卷线程池繁忙，请稍后再试！");
+        }
+        log.info("id={}的试卷开始重新判卷，题目数：{}，答题记录数：{}", paperId, questions.size(), job.total);
+        return getProgress(paperId);
+    }
+
+    /**
+     * 查询重新判卷进度
+     */
+    public RegradeProgressVo getProgress(Long paperId) {
+        Map<Object, Object> progress = redisUtils.hGetAll(CacheConstants.PAPER_REGRADE_PROGRESS_KEY + paperId);
+        RegradeProgressVo progressVo = new RegradeProgressVo();
+        progressVo.setPaperId(paperId);
+        if (ObjectUtils.isEmpty(progress)) {
+            progressVo.setStatus(STATUS_NONE);
+            return progressVo;
+        }
+        progressVo.setStatus((String) progress.get("status"));
+        progressVo.setTotal(toLong(progress.get("total")));
+        progressVo.setProcessed(toLong(progress.get("processed")));
+        progressVo.setChanged(toLong(progress.get("changed")));
+        progressVo.setExamRecords(toLong(progress.get("examRecords")));
+        progressVo.setMessage((String) progress.get("message"));
+        return progressVo;
+    }
+
+    // ============== 私有方法 ==============
+
+    private void run(RegradeJob job) {
+        try {
+            //1.流式读取客观题的答题记录，边读边判
+            Set<Long> objectiveIds = new HashSet<>(job.questions.keySet());
+            objectiveIds.removeAll(job.textVersions.keySet());
+            if (!objectiveIds.isEmpty()) {
+                answerRecordMapper.customStreamByPaper(job.paperId, objectiveIds,
+                    context -> job.accept(context.getResultObject()));
+            }
+            job.flushWrites();
+            //2.简答题逐题分页读取判卷，ai调用期间不占用数据库连接
+            for (Map.Entry<Long, String> entry : job.textVersions.entrySet()) {
+                if (job.gradeTextQuestion(job.questions.get(entry.getKey()))) {
+                    saveGradedVersion(job.paperId, entry.getKey(), entry.getValue());
+                }
+            }
+            //3.得分有变化的考试记录重新汇总总分
+            job.recomputeScores();
+            //总分变化之后重建这张试卷的排行榜，清除成绩统计（下一次查询重建）
+            if (!job.examRecordIds.isEmpty()) {
+                paperStatsService.evict(job.paperId.intValue());
+                try {
+                    leaderboardService.rebuild(job.paperId.intValue());
+                } catch (Exception e) {
+                    //分数已经保存，排行榜可以通过管理接口重建，不影响重新判卷的结果
+                    log.warn("id={}的试卷重新判卷之后重建排行榜失败！原因：{}", job.paperId, e.getMessage());
+                }
+            }
+            job.saveProgress(STATUS_SUCCESS, null);
+            log.info("id={}的试卷重新判卷完成，处理答题记录：{}，得分变化：{}，考试记录：{}",
+                job.paperId, job.processed, job.changed, job.examRecordIds.size());
+        } catch (Exception e) {
+            log.error("id={}的试卷重新判卷失败！原因：{}", job.paperId, e.getMessage(), e);
+            job.saveProgress(STATUS_FAILED, e.getMessage());
+        } finally {
+            redisUtils.delete(CacheConstants.PAPER_REGRADE_LOCK_KEY + job.paperId);
+        }
+    }
+
+    /**
+     * 上一次重新判卷时每道简答题的答案版本，redis出问题当作都没有判过
+     */
+    private Map<Object, Object> loadGradedVersions(Long paperId) {
+        try {
+            return redisUtils.hGetAll(CacheConstants.PAPER_REGRADE_VERSION_KEY + paperId);
+        } catch (Exception e) {
+            log.warn("查询id={}试卷的简答题答案版本失败，简答题全部重新判卷！原因：{}", paperId, e.getMessage());
+            return Map.of();
+        }
+    }
+
+    /**
+     * 简答题所有答题记录都判卷成功之后记录答案版本，下一次整卷重新判卷版本没变就跳过
+     */
+    private void saveGradedVersion(Long paperId, Long questionId, String version) {
+        try {
+            redisUtils.hSet(CacheConstants.PAPER_REGRADE_VERSION_KEY + paperId, questionId.toString(), version);
+        } catch (Exception e) {
+            log.warn("保存id={}试卷的简答题答案版本失败，题目id：{}，原因：{}", paperId, questionId, e.getMessage());
+        }
+    }
+
+    private Long toLong(Object value) {
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    /**
+     * 一次重新判卷任务的状态（只在判卷线程中使用）
+     */
+    private class RegradeJob {
+
+        private final Long paperId;
+        private final Map<Long, Question> questions;
+
+        /**
+         * 需要重新判卷的简答题：题目id -> 当前答案版本
+         */
+        private final Map<Long, String> textVersions;
+        private final long total;
+
+        /**
+         * 得分有变化，等待写回的答题记录
+         */
+        private final List<AnswerRecord> pendingWrites = new ArrayList<>(WRITE_CHUNK_SIZE);
+
+        /**
+         * 得分有变化的考试记录
+         */
+        private final Set<Long> examRecordIds = new HashSet<>();
+
+        private long processed;
+        private long changed;
+        private long examRecords;
+
+        private RegradeJob(Long paperId, Map<Long, Question> questions, Map<Long, String> textVersions, long total) {
+            this.paperId = paperId;
+            this.questions = questions;
+            this.textVersions = textVersions;
+            this.total = total;
+        }
+
+        private void accept(AnswerRecord answerRecord) {
+            Question question = questions.get(answerRecord.getQuestionId().longValue());
+            Integer oldScore = answerRecord.getScore();
+            Integer oldIsCorrect = answerRecord.getIsCorrect();
+            String oldAiCorrection = answerRecord.getAiCorrection();
+            ObjectiveGradingUtils.grade(answerRecord, question);
+            onGraded(answerRecord, oldScore, oldIsCorrect, oldAiCorrection);
+        }
+
+        /**
+         * 按id游标分页读取一道简答题的答题记录，每页批量判卷并写回
+         *
+         * @return 所有答题记录都判卷成功
+         */
+        private boolean gradeTextQuestion(Question question) {
+            int maxScore = question.getPaperScore().intValue();
+            boolean allGraded = true;
+            long afterId = 0;
+            List<AnswerRecord> records;
+            do {
+                records = answerRecordMapper.customPageByPaperQuestion(paperId, question.getId(), afterId, TEXT_PAGE_SIZE);
+                if (records.isEmpty()) {
+                    break;
+                }
+                afterId = records.get(records.size() - 1).getId();
+                List<String> userAnswers = new ArrayList<>(records.size());
+                for (AnswerRecord answerRecord : records) {
+                    userAnswers.add(answerRecord.getUserAnswer());
+                }
+                //批量判卷内部先查缓存并对相同答案去重，只有没判过的答案才调用ai
+                List<GradingResult> results = aiGradingService.gradeTextAnswers(question, userAnswers, maxScore).block();
+                for (int i = 0; i < records.size(); i++) {
+                    AnswerRecord answerRecord = records.get(i);
+                    GradingResult result = results == null ? null : results.get(i);
+                    if (result == null) {
+                        //判卷失败保留原来的得分，不记录答案版本，下一次整卷重新判卷再判
+                        allGraded = false;
+                        processed++;
+                        continue;
+                    }
+                    Integer oldScore = answerRecord.getScore();
+                    Integer oldIsCorrect = answerRecord.getIsCorrect();
+                    String oldAiCorrection = answerRecord.getAiCorrection();
+                    aiGradingService.applyGradingResult(answerRecord, result, maxScore);
+                    onGraded(answerRecord, oldScore, oldIsCorrect, oldAiCorrection);
+                }
+                flushWrites();
+            } while (records.size() == TEXT_PAGE_SIZE);
+            return allGraded;
+        }
+
+        private void onGraded(AnswerRecord answerRecord, Integer oldScore, Integer oldIsCorrect, String oldAiCorrection) {
+            processed++;
+            if (Objects.equals(oldScore, answerRecord.getScore()) && Objects.equals(oldIsCorrect, answerRecord.getIsCorrect())
+                && Objects.equals(oldAiCorrection, answerRecord.getAiCorrection())) {
+                return;
+            }
+            changed++;
+            pendingWrites.add(answerRecord);
+            examRecordIds.add(answerRecord.getExamRecordId().longValue());
+            if (pendingWrites.size() >= WRITE_CHUNK_SIZE) {
+                flushWrites();
+            }
+        }
+
+        private void flushWrites() {
+            if (!pendingWrites.isEmpty()) {
+                answerRecordService.customUpdateGradingResults(pendingWrites);
+                pendingWrites.clear();
+            }
+            saveProgress(STATUS_RUNNING, null);
+        }
+
+        private void recomputeScores() {
+            List<Long> ids = new ArrayList<>(examRecordIds);
+            for (int from = 0; from < ids.size(); from += SCORE_CHUNK_SIZE) {
+                List<Long> chunk = ids.subList(from, Math.min(from + SCORE_CHUNK_SIZE, ids.size()));
+                examRecordMapper.customRecomputeScores(chunk);
+                examRecords += chunk.size();
+                saveProgress(STATUS_RUNNING, null);
+            }
+        }
+
+        private void saveProgress(String status, String message) {
+            Map<String, Object> progress = new HashMap<>();
+            progress.put("status", status);
+            progress.put("total", total);
+            progress.put("processed", processed);
+            progress.put("changed", changed);
+            progress.put("examRecords", examRecords);
+            if (message != null) {
+                progress.put("message", message);
+            }
+            String key = CacheConstants.PAPER_REGRADE_PROGRESS_KEY + paperId;
+            try {
+                redisUtils.hSetAll(key, progress);
+                redisUtils.expire(key, CacheConstants.PAPER_REGRADE_EXPIRE_SECONDS);
+            } catch (Exception e) {
+                log.warn("保存id={}试卷的重新判卷进度失败！原因：{}", paperId, e.getMessage());
+            }
+        }
+    }
+}
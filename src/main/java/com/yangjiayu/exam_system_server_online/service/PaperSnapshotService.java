@@ -0,0 +1,379 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.alibaba.fastjson.JSON;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.yangjiayu.exam_system_server_online.common.CacheConstants;
+import com.yangjiayu.exam_system_server_online.common.Result;
+import com.yangjiayu.exam_system_server_online.entity.Paper;
+import com.yangjiayu.exam_system_server_online.entity.Question;
+import com.yangjiayu.exam_system_server_online.entity.QuestionChoice;
+import com.yangjiayu.exam_system_server_online.mapper.PaperMapper;
+import com.yangjiayu.exam_system_server_online.mapper.QuestionMapper;
+import com.yangjiayu.exam_system_server_online.utils.LongIntHashMap;
+import com.yangjiayu.exam_system_server_online.utils.RedisUtils;
+import com.yangjiayu.exam_system_server_online.vo.PaperSnapshot;
+import com.yangjiayu.exam_system_server_online.vo.StudentPaperVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.BeanUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * 试卷快照服务
+ *
+ * 已发布的试卷不能修改，但是每次考试 查看考试记录 判卷都要查询一次试卷详情
+ * （中间表 x 题目 x 答案 x 选项 四表联查 + 按题型排序），这里把组装好的试卷详情缓存成快照
+ *
+ * 核心功能:
+ * 1. 发布试卷时生成快照，写入本地缓存（Caffeine）和redis（paper:detail:试卷id）
+ * 2. 读取时比对redis中的版本号，版本一致直接返回本地快照，不访问数据库
+ * 3. 下架 修改试卷 修改题目时版本号自增，所有节点的快照随之失效
+ * 4. 草稿状态的试卷不缓存，每次查询数据库
+ * 5. redis不可用时降级为直接查询数据库
+ * 6. 快照中同时保存学生答题用的试卷（不含答案）序列化之后的字节，考试接口直接返回
+ * 7. 快照中同时保存 题目id -> 题目位置 的索引，考试记录组装和判卷直接按位置定位题目
+ * 8. 试卷摘要（不含题目）的本地缓存，列表页批量获取试卷名称 总分
+ *
+ * @author Yangjiayu
+ * @description 已发布试卷的详情快照缓存
+ */
+@Service
+@Slf4j
+public class PaperSnapshotService {
+
+    private final PaperMapper paperMapper;
+    private final QuestionMapper questionMapper;
+    private final RedisUtils redisUtils;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * 本地快照缓存：试卷id -> 快照
+     */
+    private final Cache<Long, PaperSnapshot> localSnapshots = Caffeine.newBuilder()
+        .maximumSize(200)
+        .expireAfterAccess(Duration.ofHours(1))
+        .build();
+
+    /**
+     * 试卷摘要缓存：试卷id -> 试卷基本信息（不含题目），考试记录列表展示试卷名称 总分使用
+     * 其他节点修改试卷时本节点无法感知，5分钟过期
+     */
+    private final Cache<Long, Paper> paperSummaries = Caffeine.newBuilder()
+        .maximumSize(2000)
+        .expireAfterWrite(Duration.ofMinutes(5))
+        .build();
+
+    public PaperSnapshotService(PaperMapper paperMapper, QuestionMapper questionMapper, RedisUtils redisUtils,
+                                ObjectMapper objectMapper) {
+        this.paperMapper = paperMapper;
+        this.questionMapper = questionMapper;
+        this.redisUtils = redisUtils;
+        this.objectMapper = objectMapper;
+    }
+
+    // ============== 核心方法 ==============
+
+    /**
+     * 获取试卷详情
+     * 已发布的试卷返回快照中的对象（只读），其他状态的试卷查询数据库
+     *
+     * @param paperId 试卷id
+     * @return 试卷详情（包含按题型排序的题目 选项 答案）
+     */
+    public Paper getPaperDetail(Long paperId) {
+        PaperSnapshot snapshot = getSnapshot(paperId);
+        return snapshot != null ? snapshot.getPaper() : loadPaperDetail(paperId);
+    }
+
+    /**
+     * 获取试卷快照（包含题目位置索引）
+     * 已发布的试卷返回缓存的快照，其他状态的试卷查询数据库生成一个临时快照（不缓存）
+     *
+     * @param paperId 试卷id
+     * @return 快照
+     */
+    public PaperSnapshot getPaperSnapshot(Long paperId) {
+        PaperSnapshot snapshot = getSnapshot(paperId);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        Paper paper = loadPaperDetail(paperId);
+        snapshot = new PaperSnapshot(paperId, -1L, paper);
+        snapshot.setQuestionIndex(buildQuestionIndex(paper));
+        return snapshot;
+    }
+
+    /**
+     * 获取已发布试卷的快照
+     *
+     * @param paperId 试卷id
+     * @return 快照，试卷不是发布状态或者redis不可用时返回null
+     */
+    public PaperSnapshot getSnapshot(Long paperId) {
+        long version;
+        try {
+            version = currentVersion(paperId);
+        } catch (Exception e) {
+            log.warn("读取id={}试卷的快照版本失败，直接查询数据库！原因：{}", paperId, e.getMessage());
+            return null;
+        }
+        //1.本地快照版本一致直接返回
+        PaperSnapshot snapshot = localSnapshots.getIfPresent(paperId);
+        if (snapshot != null && snapshot.getVersion() == version) {
+            return snapshot;
+        }
+        //2.redis中的快照版本一致，放入本地缓存
+        snapshot = readRedisSnapshot(paperId);
+        if (snapshot != null && snapshot.getVersion() == version) {
+            snapshot.setStudentView(serializeStudentView(snapshot.getPaper()));
+            snapshot.setQuestionIndex(buildQuestionIndex(snapshot.getPaper()));
+            localSnapshots.put(paperId, snapshot);
+            return snapshot;
+        }
+        //3.都没有（redis过期 或者 发布前就存在的试卷），已发布的试卷重新生成快照
+        Paper paper = loadPaperDetail(paperId);
+        if (!"PUBLISHED".equals(paper.getStatus())) {
+            return null;
+        }
+        return saveSnapshot(paperId, version, paper);
+    }
+
+    /**
+     * 获取学生答题用的试卷（不含答案），已经序列化成 Result 响应的json字节
+     * 已发布的试卷直接返回快照中预先序列化好的字节
+     *
+     * @param paperId 试卷id
+     * @return json字节
+     */
+    public byte[] getStudentView(Long paperId) {
+        PaperSnapshot snapshot = getSnapshot(paperId);
+        return snapshot != null ? snapshot.getStudentView() : serializeStudentView(loadPaperDetail(paperId));
+    }
+
+    /**
+     * 复制一份不含答案的试卷（去掉标准答案 解析 选项对错），快照中的试卷是共享的，不能直接修改
+     *
+     * @param paper 完整的试卷
+     * @return 不含答案的试卷副本
+     */
+    public Paper withoutAnswers(Paper paper) {
+        Paper copy = new Paper();
+        BeanUtils.copyProperties(paper, copy, "questions");
+        List<Question> questions = new ArrayList<>(paper.getQuestions().size());
+        for (Question question : paper.getQuestions()) {
+            Question questionCopy = new Question();
+            BeanUtils.copyProperties(question, questionCopy, "choices", "answer", "analysis");
+            if (!ObjectUtils.isEmpty(question.getChoices())) {
+                List<QuestionChoice> choices = new ArrayList<>(question.getChoices().size());
+                for (QuestionChoice choice : question.getChoices()) {
+                    QuestionChoice choiceCopy = new QuestionChoice();
+                    BeanUtils.copyProperties(choice, choiceCopy, "isCorrect");
+                    choices.add(choiceCopy);
+                }
+                questionCopy.setChoices(choices);
+            }
+            questions.add(questionCopy);
+        }
+        copy.setQuestions(questions);
+        return copy;
+    }
+
+    /**
+     * 批量获取试卷摘要（试卷基本信息，不含题目）
+     * 本地缓存没有的试卷一次批量查询数据库
+     *
+     * @param paperIds 试卷id集合
+     * @return 试卷id -> 试卷，已经删除的试卷不在结果中
+     */
+    public Map<Long, Paper> getPaperSummaries(Collection<Long> paperIds) {
+        if (ObjectUtils.isEmpty(paperIds)) {
+            return Collections.emptyMap();
+        }
+        return paperSummaries.getAll(paperIds, missing -> paperMapper.selectBatchIds(missing).stream()
+            .collect(Collectors.toMap(Paper::getId, paper -> paper)));
+    }
+
+    /**
+     * 发布试卷：版本号自增，生成新的快照
+     */
+    public void publish(Long paperId) {
+        paperSummaries.invalidate(paperId);
+        try {
+            long version = redisUtils.incr(CacheConstants.PAPER_VERSION_KEY + paperId);
+            saveSnapshot(paperId, version, loadPaperDetail(paperId));
+            log.info("id={}的试卷发布，生成第{}版试卷快照", paperId, version);
+        } catch (Exception e) {
+            //快照生成失败不影响发布，第一次查询时会重新生成
+            log.warn("id={}的试卷生成快照失败！原因：{}", paperId, e.getMessage());
+        }
+    }
+
+    /**
+     * 清除试卷快照：版本号自增，所有节点的本地快照失效
+     * 试卷下架 修改 删除，以及试卷中的题目被修改时调用
+     */
+    public void evict(Long paperId) {
+        localSnapshots.invalidate(paperId);
+        paperSummaries.invalidate(paperId);
+        try {
+            redisUtils.incr(CacheConstants.PAPER_VERSION_KEY + paperId);
+            redisUtils.delete(CacheConstants.PAPER_DETAIL_KEY + paperId);
+        } catch (Exception e) {
+            log.warn("清除id={}试卷的快照失败！原因：{}", paperId, e.getMessage());
+        }
+    }
+
+    /**
+     * 根据试卷id查询试卷详情（数据库）
+     * 试卷对象
+     * 题目集合
+     * 注意： 题目的选项sort正序
+     * 注意： 所有题目根据类型排序
+     * @param id 试卷id
+     * @return
+     */
+    public Paper loadPaperDetail(Long id) {
+        //1. 单表java代码进行paper查询
+        Paper paper = paperMapper.selectById(id);
+        //2. 校验paper == null -> 抛异常
+        if (paper == null){
+            throw new RuntimeException("指定id:%s试卷已经被删除，无法查看详情！".formatted(id));
+        }
+        //3. 根据paperid查询题目集合（中间，题目，答案，选项）
+        List<Question> questionList = questionMapper.customQueryQuestionListByPaperId(id);
+        //4. 校验题目集合 == null -> 赋空集合！ log->做好记录
+        if (ObjectUtils.isEmpty(questionList)){
+            paper.setQuestions(new ArrayList<Question>());
+            log.warn("试卷中没有题目！可以进行试卷编辑！但是不能用于考试！！,对应试卷id：{}",id);
+            return paper;
+        }
+        log.debug("题目信息排序前：{}",questionList);
+        //对题目进行排序（选择 -> 判断 -> 简答）
+        questionList.sort((o1, o2) -> Integer.compare(typeToInt(o1.getType()),typeToInt(o2.getType())));
+        //注意：type排序，是字符类型 -》 字符 -》 对应 -》 固定的数字 1 2 3
+        log.debug("题目信息排序后：{}",questionList);
+        //进行paper题目集合赋值
+        paper.setQuestions(questionList);
+        return paper;
+    }
+
+    // ============== 私有方法 ==============
+
+    /**
+     * 获取题目类型的排序顺序
+     * @param type 题目类型
+     * @return 排序序号
+     */
+    private int typeToInt(String type) {
+        switch (type) {
+            case "CHOICE": return 1; // 选择题
+            case "JUDGE": return 2;  // 判断题
+            case "TEXT": return 3;   // 简答题
+            default: return 4;       // 其他类型
+        }
+    }
+
+    private long currentVersion(Long paperId) {
+        Object version = redisUtils.get(CacheConstants.PAPER_VERSION_KEY + paperId);
+        return version == null ? 0L : ((Number) version).longValue();
+    }
+
+    private PaperSnapshot readRedisSnapshot(Long paperId) {
+        try {
+            Object json = redisUtils.get(CacheConstants.PAPER_DETAIL_KEY + paperId);
+            return json == null ? null : JSON.parseObject((String) json, PaperSnapshot.class);
+        } catch (Exception e) {
+            log.warn("读取id={}试卷的redis快照失败！原因：{}", paperId, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 保存快照：题目集合设置为只读，写入本地缓存和redis
+     */
+    private PaperSnapshot saveSnapshot(Long paperId, long version, Paper paper) {
+        paper.setQuestions(Collections.unmodifiableList(paper.getQuestions()));
+        PaperSnapshot snapshot = new PaperSnapshot(paperId, version, paper);
+        snapshot.setStudentView(serializeStudentView(paper));
+        snapshot.setQuestionIndex(buildQuestionIndex(paper));
+        localSnapshots.put(paperId, snapshot);
+        try {
+            redisUtils.set(CacheConstants.PAPER_DETAIL_KEY + paperId, JSON.toJSONString(snapshot),
+                CacheConstants.PAPER_DETAIL_EXPIRE_SECONDS);
+        } catch (Exception e) {
+            log.warn("保存id={}试卷的redis快照失败！原因：{}", paperId, e.getMessage());
+        }
+        return snapshot;
+    }
+
+    /**
+     * 题目id -> 题目在试卷中的下标
+     */
+    private LongIntHashMap buildQuestionIndex(Paper paper) {
+        List<Question> questions = paper.getQuestions();
+        LongIntHashMap questionIndex = new LongIntHashMap(questions.size());
+        for (int i = 0; i < questions.size(); i++) {
+            questionIndex.put(questions.get(i).getId(), i);
+        }
+        return questionIndex;
+    }
+
+    /**
+     * 学生答题用的试卷序列化成 Result 响应的json字节
+     */
+    private byte[] serializeStudentView(Paper paper) {
+        try {
+            return objectMapper.writeValueAsBytes(Result.success(toStudentPaperVo(paper)));
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("id=%s的试卷序列化失败！".formatted(paper.getId()), e);
+        }
+    }
+
+    /**
+     * 去掉标准答案 解析 选项对错
+     */
+    private StudentPaperVo toStudentPaperVo(Paper paper) {
+        StudentPaperVo studentPaperVo = new StudentPaperVo();
+        studentPaperVo.setId(paper.getId());
+        studentPaperVo.setName(paper.getName());
+        studentPaperVo.setDescription(paper.getDescription());
+        studentPaperVo.setTotalScore(paper.getTotalScore());
+        studentPaperVo.setQuestionCount(paper.getQuestionCount());
+        studentPaperVo.setDuration(paper.getDuration());
+        List<StudentPaperVo.StudentQuestionDto> questions = new ArrayList<>(paper.getQuestions().size());
+        for (Question question : paper.getQuestions()) {
+            StudentPaperVo.StudentQuestionDto questionDto = new StudentPaperVo.StudentQuestionDto();
+            questionDto.setId(question.getId());
+            questionDto.setTitle(question.getTitle());
+            questionDto.setType(question.getType());
+            questionDto.setMulti(question.getMulti());
+            questionDto.setDifficulty(question.getDifficulty());
+            questionDto.setPaperScore(question.getPaperScore());
+            if (!ObjectUtils.isEmpty(question.getChoices())) {
+                List<StudentPaperVo.StudentChoiceDto> choices = new ArrayList<>(question.getChoices().size());
+                for (QuestionChoice choice : question.getChoices()) {
+                    StudentPaperVo.StudentChoiceDto choiceDto = new StudentPaperVo.StudentChoiceDto();
+                    choiceDto.setId(choice.getId());
+                    choiceDto.setContent(choice.getContent());
+                    choiceDto.setSort(choice.getSort());
+                    choices.add(choiceDto);
+                }
+                questionDto.setChoices(choices);
+            }
+            questions.add(questionDto);
+        }
+        studentPaperVo.setQuestions(questions);
+        return studentPaperVo;
+    }
+}
@@ -0,0 +1,326 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.yangjiayu.exam_system_server_online.common.CacheConstants;
+import com.yangjiayu.exam_system_server_online.entity.AnswerRecord;
+import com.yangjiayu.exam_system_server_online.entity.ExamRecord;
+import com.yangjiayu.exam_system_server_online.entity.Question;
+import com.yangjiayu.exam_system_server_online.mapper.AnswerRecordMapper;
+import com.yangjiayu.exam_system_server_online.mapper.ExamRecordMapper;
+import com.yangjiayu.exam_system_server_online.utils.ScoreStatistics;
+import com.yangjiayu.exam_system_server_online.vo.PaperSnapshot;
+import com.yangjiayu.exam_system_server_online.vo.PaperStatsVo;
+import com.yangjiayu.exam_system_server_online.vo.QuestionStatsVo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 试卷成绩统计服务
+ *
+ * 原来老师只能导出考试记录自己算平均分；这里每张试卷在redis中维护一份可以累加的统计数据，
+ * 判卷完成时增量累加，查询时只读取这份统计数据计算结果，不再扫描考试记录和答题记录
+ *
+ * 数据结构（hash：paper:stats:试卷id）:
+ * 1. h:分数             得到这个分数的人数（精确的分数分布，平均分 标准差 百分位数都由它计算）
+ * 2. q:题目id:n         作答人数
+ * 3. q:题目id:c         答对人数
+ * 4. q:题目id:e         作答人得分合计
+ * 5. q:题目id:t         作答人考试总分合计
+ * 6. q:题目id:ct        答对的人考试总分合计
+ * 7. built              统计数据已经从数据库构建，没有这个字段时不做增量累加，查询时重建
+ *
+ * 核心功能:
+ * 1. 判卷完成时一次lua脚本原子累加，已经计入的考试记录（set）不会重复累加
+ * 2. 统计数据不存在时从数据库聚合重建，写临时key之后rename；同一张试卷同时只有一个重建（SET NX锁），
+ *    重建期间判卷完成的考试记录进入重放集合，rename之后从数据库重放，没拿到锁的查询直接从数据库聚合
+ * 3. 删除考试记录 重新判卷之后清除统计数据，下一次查询重建；统计数据1天过期，过期后重建修正偏差
+ * 4. redis不可用时直接从数据库聚合计算
+ *
+ * @author Yangjiayu
+ * @description 试卷分数分布 百分位数 题目分析
+ */
+@Service
+@Slf4j
+public class PaperStatsService {
+
+    /**
+     * 增量累加脚本
+     * KEYS[1] 统计数据hash  KEYS[2] 已计入的考试记录set  KEYS[3] 重建锁  KEYS[4] 重放集合
+     * ARGV[1] 考试记录id  ARGV[2] 考试得分  ARGV[3..] 每道题的 题目id 是否答对 得分
+     * 返回 1累加成功 0已经计入过 -1统计数据还没有构建 -2正在重建，已经记入重放集合
+     */
+    private static final DefaultRedisScript<Long> RECORD_SCRIPT = new DefaultRedisScript<>("""
+        if redis.call('HEXISTS', KEYS[1], 'built') == 0 then
+            if redis.call('EXISTS', KEYS[3]) == 1 then
+                redis.call('SADD', KEYS[4], ARGV[1])
+                return -2
+            end
+            return -1
+        end
+        if redis.call('SADD', KEYS[2], ARGV[1]) == 0 then
+            return 0
+        end
+        local total = tonumber(ARGV[2])
+        redis.call('HINCRBY', KEYS[1], 'h:' .. ARGV[2], 1)
+        for i = 3, #ARGV, 3 do
+            local prefix = 'q:' .. ARGV[i] .. ':'
+            redis.call('HINCRBY', KEYS[1], prefix .. 'n', 1)
+            redis.call('HINCRBY', KEYS[1], prefix .. 'e', tonumber(ARGV[i + 2]))
+            redis.call('HINCRBY', KEYS[1], prefix .. 't', total)
+            if ARGV[i + 1] == '1' then
+                redis.call('HINCRBY', KEYS[1], prefix .. 'c', 1)
+                redis.call('HINCRBY', KEYS[1], prefix .. 'ct', total)
+            end
+        end
+        return 1
+        """, Long.class);
+
+    private static final String BUILT_FIELD = "built";
+    private static final String HISTOGRAM_PREFIX = "h:";
+    private static final String QUESTION_PREFIX = "q:";
+
+    private final StringRedisTemplate stringRedisTemplate;
+    private final ExamRecordMapper examRecordMapper;
+    private final AnswerRecordMapper answerRecordMapper;
+    private final PaperSnapshotService paperSnapshotService;
+
+    public PaperStatsService(StringRedisTemplate stringRedisTemplate, ExamRecordMapper examRecordMapper,
+                             AnswerRecordMapper answerRecordMapper, PaperSnapshotService paperSnapshotService) {
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.examRecordMapper = examRecordMapper;
+        this.answerRecordMapper = answerRecordMapper;
+        this.paperSnapshotService = paperSnapshotService;
+    }
+
+    // ============== 核心方法 ==============
+
+    /**
+     * 考试记录判卷完成，累加到试卷的成绩统计中
+     * 累加失败不影响判卷，统计数据过期或者清除之后会从数据库重建
+     *
+     * @param examRecord 已批阅的考试记录（包含答题记录）
+     */
+    public void record(ExamRecord examRecord) {
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(examRecord.getId()));
+        args.add(String.valueOf(examRecord.getScore() == null ? 0 : examRecord.getScore()));
+        if (examRecord.getAnswerRecords() != null) {
+            for (AnswerRecord answerRecord : examRecord.getAnswerRecords()) {
+                //题目被删除的答题记录没有判分，不参与统计
+                if (answerRecord.getScore() == null || answerRecord.getQuestionId() == null) {
+                    continue;
+                }
+                args.add(String.valueOf(answerRecord.getQuestionId()));
+                args.add(Integer.valueOf(1).equals(answerRecord.getIsCorrect()) ? "1" : "0");
+                args.add(String.valueOf(answerRecord.getScore()));
+            }
+        }
+        try {
+            Integer paperId = examRecord.getExamId();
+            stringRedisTemplate.execute(RECORD_SCRIPT,
+                List.of(statsKey(paperId), countedKey(paperId), lockKey(paperId), replayKey(paperId)), args.toArray());
+        } catch (Exception e) {
+            log.warn("id={}的考试记录累加成绩统计失败！原因：{}", examRecord.getId(), e.getMessage());
+        }
+    }
+
+    /**
+     * 清除试卷的成绩统计（删除考试记录 重新判卷之后调用），下一次查询从数据库重建
+     */
+    public void evict(Integer paperId) {
+        try {
+            stringRedisTemplate.delete(List.of(statsKey(paperId), countedKey(paperId)));
+        } catch (Exception e) {
+            log.warn("清除id={}试卷的成绩统计失败！原因：{}", paperId, e.getMessage());
+        }
+    }
+
+    /**
+     * 查询试卷的成绩统计
+     *
+     * @param paperId 试卷id
+     * @return 分数分布 平均分 标准差 百分位数 题目分析
+     */
+    public PaperStatsVo getStats(Integer paperId) {
+        //试卷被删除时直接抛出异常
+        PaperSnapshot snapshot = paperSnapshotService.getPaperSnapshot(paperId.longValue());
+        Map<Object, Object> fields;
+        try {
+            fields = stringRedisTemplate.opsForHash().entries(statsKey(paperId));
+            if (!fields.containsKey(BUILT_FIELD)) {
+                fields = rebuild(paperId);
+            }
+        } catch (Exception e) {
+            log.warn("读取id={}试卷的成绩统计失败，直接查询数据库！原因：{}", paperId, e.getMessage());
+            fields = aggregate(paperId, new ArrayList<>());
+        }
+        return compute(paperId, snapshot, fields);
+    }
+
+    // ============== 私有方法 ==============
+
+    /**
+     * 拿到重建锁之后从数据库重建统计数据，其他节点正在重建时直接从数据库聚合（不写redis）
+     */
+    private Map<Object, Object> rebuild(Integer paperId) {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(lockKey(paperId), token,
+            Duration.ofSeconds(CacheConstants.PAPER_STATS_REBUILD_LOCK_SECONDS));
+        if (!Boolean.TRUE.equals(acquired)) {
+            return aggregate(paperId, new ArrayList<>());
+        }
+        try {
+            //拿到锁之后再查询数据库：之后判卷完成的记录都会进入重放集合，之前的已经在查询结果中
+            stringRedisTemplate.delete(replayKey(paperId));
+            Map<Object, Object> fields = rebuildLocked(paperId);
+            replay(paperId);
+            return fields;
+        } finally {
+            if (token.equals(stringRedisTemplate.opsForValue().get(lockKey(paperId)))) {
+                stringRedisTemplate.delete(lockKey(paperId));
+            }
+        }
+    }
+
+    /**
+     * 从数据库聚合重建统计数据，先写临时key再rename，重建过程中不会读到一半的数据
+     */
+    private Map<Object, Object> rebuildLocked(Integer paperId) {
+        List<String> recordIds = new ArrayList<>();
+        Map<Object, Object> fields = aggregate(paperId, recordIds);
+        String suffix = ":rebuilding:" + UUID.randomUUID();
+        String tempStatsKey = statsKey(paperId) + suffix;
+        String tempCountedKey = countedKey(paperId) + suffix;
+        stringRedisTemplate.opsForHash().putAll(tempStatsKey, fields);
+        stringRedisTemplate.expire(tempStatsKey, CacheConstants.PAPER_STATS_EXPIRE_SECONDS, TimeUnit.SECONDS);
+        if (recordIds.isEmpty()) {
+            stringRedisTemplate.delete(countedKey(paperId));
+        } else {
+            stringRedisTemplate.opsForSet().add(tempCountedKey, recordIds.toArray(new String[0]));
+            stringRedisTemplate.expire(tempCountedKey, CacheConstants.PAPER_STATS_EXPIRE_SECONDS, TimeUnit.SECONDS);
+            stringRedisTemplate.rename(tempCountedKey, countedKey(paperId));
+        }
+        stringRedisTemplate.rename(tempStatsKey, statsKey(paperId));
+        log.info("id={}试卷的成绩统计重建完成，考试记录数：{}", paperId, recordIds.size());
+        return fields;
+    }
+
+    /**
+     * 重放重建期间判卷完成的考试记录：rename之后统计数据已经构建，不会再有记录进入重放集合，
+     * 已经在聚合结果中的记录由已计入集合去重
+     */
+    private void replay(Integer paperId) {
+        Set<String> recordIds = stringRedisTemplate.opsForSet().members(replayKey(paperId));
+        stringRedisTemplate.delete(replayKey(paperId));
+        if (recordIds == null || recordIds.isEmpty()) {
+            return;
+        }
+        for (String recordId : recordIds) {
+            ExamRecord examRecord = examRecordMapper.selectById(Long.valueOf(recordId));
+            if (examRecord == null || !"已批阅".equals(examRecord.getStatus())) {
+                continue;
+            }
+            examRecord.setAnswerRecords(answerRecordMapper.selectList(
+                new LambdaQueryWrapper<AnswerRecord>().eq(AnswerRecord::getExamRecordId, examRecord.getId())));
+            record(examRecord);
+        }
+        log.info("id={}试卷的成绩统计重放重建期间判卷的考试记录：{}条", paperId, recordIds.size());
+    }
+
+    /**
+     * 从数据库聚合出和redis中相同格式的统计数据
+     *
+     * @param recordIds 收集参与统计的考试记录id
+     */
+    private Map<Object, Object> aggregate(Integer paperId, List<String> recordIds) {
+        Map<Object, Object> fields = new HashMap<>();
+        fields.put(BUILT_FIELD, "1");
+        Map<Integer, Long> distribution = new HashMap<>();
+        List<ExamRecord> examRecords = examRecordMapper.selectList(new LambdaQueryWrapper<ExamRecord>()
+            .select(ExamRecord::getId, ExamRecord::getScore)
+            .eq(ExamRecord::getExamId, paperId)
+            .eq(ExamRecord::getStatus, "已批阅"));
+        for (ExamRecord examRecord : examRecords) {
+            distribution.merge(examRecord.getScore() == null ? 0 : examRecord.getScore(), 1L, Long::sum);
+            recordIds.add(String.valueOf(examRecord.getId()));
+        }
+        distribution.forEach((score, count) -> fields.put(HISTOGRAM_PREFIX + score, String.valueOf(count)));
+        for (QuestionStatsVo questionStats : answerRecordMapper.customQuestionStats(paperId.longValue())) {
+            String prefix = QUESTION_PREFIX + questionStats.getQuestionId() + ":";
+            fields.put(prefix + "n", String.valueOf(questionStats.getAttempts()));
+            fields.put(prefix + "c", String.valueOf(questionStats.getCorrectCount()));
+            fields.put(prefix + "e", String.valueOf(questionStats.getEarnedSum()));
+            fields.put(prefix + "t", String.valueOf(questionStats.getTotalSum()));
+            fields.put(prefix + "ct", String.valueOf(questionStats.getCorrectTotalSum()));
+        }
+        return fields;
+    }
+
+    /**
+     * 由累计值计算最终的统计结果，题目分析按试卷题目顺序输出
+     */
+    private PaperStatsVo compute(Integer paperId, PaperSnapshot snapshot, Map<Object, Object> fields) {
+        TreeMap<Integer, Long> distribution = new TreeMap<>();
+        Map<String, Long> counters = new HashMap<>();
+        fields.forEach((key, value) -> {
+            String field = (String) key;
+            if (field.startsWith(HISTOGRAM_PREFIX)) {
+                distribution.put(Integer.valueOf(field.substring(HISTOGRAM_PREFIX.length())), Long.valueOf((String) value));
+            } else if (field.startsWith(QUESTION_PREFIX)) {
+                counters.put(field, Long.valueOf((String) value));
+            }
+        });
+        PaperStatsVo statsVo = new PaperStatsVo();
+        statsVo.setPaperId(paperId);
+        int totalScore = snapshot.getPaper().getTotalScore() == null ? 0 : snapshot.getPaper().getTotalScore().intValue();
+        statsVo.setTotalScore(totalScore);
+        ScoreStatistics.summarize(statsVo, distribution, totalScore);
+
+        List<QuestionStatsVo> questions = new ArrayList<>();
+        for (Question question : snapshot.getPaper().getQuestions()) {
+            String prefix = QUESTION_PREFIX + question.getId() + ":";
+            QuestionStatsVo questionStats = new QuestionStatsVo();
+            questionStats.setQuestionId(question.getId());
+            questionStats.setTitle(question.getTitle());
+            questionStats.setType(question.getType());
+            questionStats.setMaxScore(question.getPaperScore() == null ? null : question.getPaperScore().intValue());
+            questionStats.setAttempts(counters.getOrDefault(prefix + "n", 0L));
+            questionStats.setCorrectCount(counters.getOrDefault(prefix + "c", 0L));
+            questionStats.setEarnedSum(counters.getOrDefault(prefix + "e", 0L));
+            questionStats.setTotalSum(counters.getOrDefault(prefix + "t", 0L));
+            questionStats.setCorrectTotalSum(counters.getOrDefault(prefix + "ct", 0L));
+            ScoreStatistics.analyze(questionStats, statsVo.getStddev());
+            questions.add(questionStats);
+        }
+        statsVo.setQuestions(questions);
+        return statsVo;
+    }
+
+    private String statsKey(Integer paperId) {
+        return CacheConstants.PAPER_STATS_KEY + paperId;
+    }
+
+    private String countedKey(Integer paperId) {
+        return CacheConstants.PAPER_STATS_COUNTED_KEY + paperId;
+    }
+
+    private String lockKey(Integer paperId) {
+        return CacheConstants.PAPER_STATS_REBUILD_LOCK_KEY + paperId;
+    }
+
+    private String replayKey(Integer paperId) {
+        return CacheConstants.PAPER_STATS_REPLAY_KEY + paperId;
+    }
+}
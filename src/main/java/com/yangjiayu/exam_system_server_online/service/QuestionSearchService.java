@@ -0,0 +1,166 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.yangjiayu.exam_system_server_online.entity.Question;
+import com.yangjiayu.exam_system_server_online.entity.QuestionChoice;
+import com.yangjiayu.exam_system_server_online.entity.VO.QuestionQueryVo;
+import com.yangjiayu.exam_system_server_online.mapper.QuestionChoiceMapper;
+import com.yangjiayu.exam_system_server_online.mapper.QuestionMapper;
+import com.yangjiayu.exam_system_server_online.utils.QuestionSearchIndex;
+import com.yangjiayu.exam_system_server_online.utils.TextSimilarityUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * 题目全文检索服务
+ *
+ * 原来按关键字查询题目是 title like '%关键字%'，前置通配符用不上索引，每次查询都全表扫描，而且只能匹配标题；
+ * 这里启动时把所有题目（标题 解析 选项内容）加载到内存倒排索引（QuestionSearchIndex），
+ * 有关键字的分页查询先在索引中得到按相关度排序的题目id，再按id查询当前页的题目
+ *
+ * 核心功能:
+ * 1. rebuild：两次查询（题目 选项）加载所有题目，在新的索引中构建完成后整体替换，构建期间的增量修改构建完成后重放
+ * 2. index / remove：新增 修改 删除题目时增量更新索引，当前有事务时在事务提交之后更新，回滚的修改不会进入索引
+ * 3. search：关键字规范化后至少2个字符并且索引已经构建完成才使用索引，否则调用方回退到原来的like查询
+ *
+ * 索引只在当前节点的内存中，其他节点修改的题目由定时全量重建（QuestionSearchIndexScheduler）同步
+ *
+ * @author Yangjiayu
+ * @description 题目关键字检索的内存倒排索引
+ */
+@Service
+@Slf4j
+public class QuestionSearchService {
+
+    private final QuestionMapper questionMapper;
+    private final QuestionChoiceMapper questionChoiceMapper;
+
+    private volatile QuestionSearchIndex searchIndex = new QuestionSearchIndex();
+
+    /**
+     * 至少完成过一次全量构建
+     */
+    private volatile boolean ready;
+
+    /**
+     * 全量构建期间的增量修改，构建完成后在新索引上重放，为null表示当前没有在构建
+     */
+    private List<Consumer<QuestionSearchIndex>> pendingChanges;
+
+    public QuestionSearchService(QuestionMapper questionMapper, QuestionChoiceMapper questionChoiceMapper) {
+        this.questionMapper = questionMapper;
+        this.questionChoiceMapper = questionChoiceMapper;
+    }
+
+    // ============== 核心方法 ==============
+
+    /**
+     * 关键字能否使用索引检索
+     *
+     * @param keyword 关键字
+     * @return 索引已经构建完成并且关键字规范化后至少2个字符
+     */
+    public boolean supports(String keyword) {
+        return ready && TextSimilarityUtils.normalize(keyword).length() >= 2;
+    }
+
+    /**
+     * 检索一页题目id（按相关度排序）
+     *
+     * @param questionQueryVo 关键字 分类 类型 难度
+     * @param offset 跳过的条数
+     * @param limit 返回的条数
+     * @return 当前页的题目id和命中总数
+     */
+    public QuestionSearchIndex.SearchResult search(QuestionQueryVo questionQueryVo, long offset, long limit) {
+        return searchIndex.search(questionQueryVo.getKeyword(), questionQueryVo.getCategoryId(),
+            questionQueryVo.getType(), questionQueryVo.getDifficulty(), offset, limit);
+    }
+
+    /**
+     * 新增或者修改题目之后更新索引（需要带上选项）
+     */
+    public void index(Question question) {
+        afterCommit(index -> index.put(question));
+    }
+
+    /**
+     * 删除题目之后从索引中移除
+     */
+    public void remove(Long questionId) {
+        afterCommit(index -> index.remove(questionId));
+    }
+
+    /**
+     * 全量重建索引
+     */
+    public void rebuild() {
+        synchronized (this) {
+            if (pendingChanges != null) {
+                log.debug("题目检索索引正在构建，本次跳过");
+                return;
+            }
+            pendingChanges = new ArrayList<>();
+        }
+        QuestionSearchIndex rebuilt = new QuestionSearchIndex();
+        try {
+            List<Question> questions = questionMapper.selectList(new LambdaQueryWrapper<Question>()
+                .select(Question::getId, Question::getTitle, Question::getType, Question::getCategoryId,
+                    Question::getDifficulty, Question::getAnalysis, Question::getCreateTime));
+            Map<Long, List<QuestionChoice>> choiceMap = questionChoiceMapper.selectList(new LambdaQueryWrapper<QuestionChoice>()
+                    .select(QuestionChoice::getQuestionId, QuestionChoice::getContent))
+                .stream()
+                .collect(Collectors.groupingBy(QuestionChoice::getQuestionId));
+            for (Question question : questions) {
+                question.setChoices(choiceMap.get(question.getId()));
+                rebuilt.put(question);
+            }
+        } catch (RuntimeException e) {
+            //增量修改已经写入了当前索引，构建失败继续使用当前索引
+            synchronized (this) {
+                pendingChanges = null;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            pendingChanges.forEach(change -> change.accept(rebuilt));
+            pendingChanges = null;
+            searchIndex = rebuilt;
+            ready = true;
+        }
+        log.info("题目检索索引构建完成，共{}道题目", rebuilt.size());
+    }
+
+    // ============== 私有方法 ==============
+
+    /**
+     * 当前有事务时在事务提交之后修改索引，否则立即修改
+     */
+    private void afterCommit(Consumer<QuestionSearchIndex> change) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    apply(change);
+                }
+            });
+        } else {
+            apply(change);
+        }
+    }
+
+    private synchronized void apply(Consumer<QuestionSearchIndex> change) {
+        change.accept(searchIndex);
+        if (pendingChanges != null) {
+            pendingChanges.add(change);
+        }
+    }
+}
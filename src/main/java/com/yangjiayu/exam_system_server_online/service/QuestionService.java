@@ -33,6 +33,14 @@ public interface QuestionService extends IService<Question> {
 
     List<Question> FindPopularQuestions(Integer size);
 
+    /**
+     * 查询热门题目
+     * @param range 热门范围：today-今日热门 week-本周热门 all-总榜（累计访问次数）
+     * @param size 题目数量
+     * @return 按热度排列的题目（含选项和答案），不足时补充最新题目
+     */
+    List<Question> findTrendingQuestions(String range, Integer size);
+
     List<QuestionImportVo> preViewExcel(MultipartFile file);
 
     int importBatchQuestions(List<QuestionImportVo> questions);
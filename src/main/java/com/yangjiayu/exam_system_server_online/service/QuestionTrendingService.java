@@ -0,0 +1,143 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.yangjiayu.exam_system_server_online.common.CacheConstants;
+import com.yangjiayu.exam_system_server_online.config.properties.QuestionViewProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.zset.Aggregate;
+import org.springframework.data.redis.connection.zset.Weights;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * 热门题目（今日 本周 总榜）服务
+ *
+ * 原来只有一个累计访问次数的有序集合，很久以前热门的题目一直排在前面，集合也只增不减；
+ * 这里访问次数同时按小时写入分桶有序集合（8天过期），后台定时把最近24小时 / 7天的分桶
+ * 按时间衰减的权重（半衰期）ZUNIONSTORE 合并成今日 / 本周热门，查询时只读取一个有序集合
+ *
+ * 数据结构:
+ * 1. question:popular:hour:yyyyMMddHH  每小时的访问次数（zset）
+ * 2. question:popular:today            今日热门，权重 = 0.5 ^ (距今小时数 / 今日半衰期)
+ * 3. question:popular:week             本周热门，权重 = 0.5 ^ (距今小时数 / 本周半衰期)
+ * 4. question:popular                  累计访问次数（总榜），刷新时只保留访问次数最多的题目
+ *
+ * 合并结果先写临时key再rename，刷新过程中查询看到的始终是完整的排行
+ *
+ * @author Yangjiayu
+ * @description 按小时分桶 + 时间衰减的热门题目
+ */
+@Service
+@Slf4j
+public class QuestionTrendingService {
+
+    /**
+     * 今日热门
+     */
+    public static final String RANGE_TODAY = "today";
+
+    /**
+     * 本周热门
+     */
+    public static final String RANGE_WEEK = "week";
+
+    /**
+     * 总榜（累计访问次数）
+     */
+    public static final String RANGE_ALL = "all";
+
+    private static final DateTimeFormatter HOUR_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHH");
+
+    private static final int TODAY_HOURS = 24;
+    private static final int WEEK_HOURS = 7 * 24;
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final QuestionViewProperties questionViewProperties;
+
+    public QuestionTrendingService(RedisTemplate<String, Object> redisTemplate, QuestionViewProperties questionViewProperties) {
+        this.redisTemplate = redisTemplate;
+        this.questionViewProperties = questionViewProperties;
+    }
+
+    // ============== 核心方法 ==============
+
+    /**
+     * 指定时间所在小时的访问次数分桶key
+     */
+    public static String hourKey(LocalDateTime time) {
+        return CacheConstants.POPULAR_QUESTIONS_HOUR_KEY + time.format(HOUR_FORMATTER);
+    }
+
+    /**
+     * 热门范围对应的有序集合key
+     *
+     * @param range today / week / all
+     * @return 有序集合key
+     */
+    public String rankingKey(String range) {
+        return switch (range == null ? RANGE_ALL : range.toLowerCase()) {
+            case RANGE_TODAY -> CacheConstants.POPULAR_QUESTIONS_TODAY_KEY;
+            case RANGE_WEEK -> CacheConstants.POPULAR_QUESTIONS_WEEK_KEY;
+            case RANGE_ALL -> CacheConstants.POPULAR_QUESTIONS_KEY;
+            default -> throw new RuntimeException("不支持的热门题目范围：%s，可选值：today week all".formatted(range));
+        };
+    }
+
+    /**
+     * 刷新今日 本周热门，裁剪总榜
+     * 多个节点同一个刷新间隔内只有一个节点执行
+     */
+    public void refresh() {
+        long intervalMs = questionViewProperties.getTrendingRefreshIntervalMs();
+        Boolean acquired = redisTemplate.opsForValue().setIfAbsent(CacheConstants.POPULAR_QUESTIONS_REFRESH_LOCK_KEY, "1",
+            Duration.ofMillis(Math.max(1000L, intervalMs * 9 / 10)));
+        if (!Boolean.TRUE.equals(acquired)) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        int keepSize = questionViewProperties.getTrendingKeepSize();
+        rebuild(CacheConstants.POPULAR_QUESTIONS_TODAY_KEY, now, TODAY_HOURS, questionViewProperties.getTodayHalfLifeHours(), keepSize);
+        rebuild(CacheConstants.POPULAR_QUESTIONS_WEEK_KEY, now, WEEK_HOURS, questionViewProperties.getWeekHalfLifeHours(), keepSize);
+        //总榜只保留访问次数最多的题目
+        Long removed = redisTemplate.opsForZSet().removeRange(CacheConstants.POPULAR_QUESTIONS_KEY, 0,
+            -(questionViewProperties.getAllTimeKeepSize() + 1L));
+        log.debug("热门题目刷新完成，总榜移除{}道题目", removed);
+    }
+
+    // ============== 私有方法 ==============
+
+    /**
+     * 按时间衰减的权重合并最近几个小时的分桶
+     *
+     * @param destKey 目标有序集合
+     * @param now 当前时间
+     * @param hours 合并的小时数（包含当前小时）
+     * @param halfLifeHours 半衰期（小时）
+     * @param keepSize 保留的题目数量
+     */
+    private void rebuild(String destKey, LocalDateTime now, int hours, double halfLifeHours, int keepSize) {
+        List<String> hourKeys = new ArrayList<>(hours);
+        double[] weights = new double[hours];
+        for (int i = 0; i < hours; i++) {
+            hourKeys.add(hourKey(now.minusHours(i)));
+            weights[i] = Math.pow(0.5, i / halfLifeHours);
+        }
+        String tempKey = destKey + ":rebuilding:" + UUID.randomUUID();
+        Long size = redisTemplate.opsForZSet().unionAndStore(hourKeys.get(0), hourKeys.subList(1, hours), tempKey,
+            Aggregate.SUM, Weights.of(weights));
+        if (size == null || size == 0) {
+            redisTemplate.delete(destKey);
+            return;
+        }
+        if (size > keepSize) {
+            redisTemplate.opsForZSet().removeRange(tempKey, 0, size - keepSize - 1);
+        }
+        redisTemplate.rename(tempKey, destKey);
+    }
+}
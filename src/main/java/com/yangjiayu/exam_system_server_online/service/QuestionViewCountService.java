@@ -0,0 +1,189 @@
+package com.yangjiayu.exam_system_server_online.service;
+
+import com.yangjiayu.exam_system_server_online.common.CacheConstants;
+import com.yangjiayu.exam_system_server_online.config.properties.QuestionViewProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 题目访问计数服务（热门题目排行）
+ *
+ * 原来每次查看题目详情都 new Thread 调用一次 zIncrementScore，访问量大时产生大量短命线程，每次访问一次redis往返；
+ * 这里访问只在本地累加（题目id -> LongAdder，高并发下累加不竞争），由定时任务按间隔把累加值
+ * 一次pipeline批量 ZINCRBY 写入redis（总榜和当前小时的分桶，见 QuestionTrendingService），写入在单线程的专用线程池中执行
+ *
+ * 核心功能:
+ * 1. record：O(1) 本地累加，不创建线程，不访问redis
+ * 2. flush：取出并清零所有累加值，一次pipeline写入；redis不可用时累加值放回本地，下一次重试
+ * 3. 背压：写入线程池只有一个线程，上一次写入还没完成时本次跳过（累加值留在本地）；
+ *    本地累加的题目数量有上限，超过后新题目的访问直接丢弃
+ * 4. 指标：question.view.recorded / dropped / flushed / flush.failed / flush.skipped 计数，question.view.pending 当前累加的题目数
+ * 5. 应用关闭时写入剩余的累加值
+ *
+ * 累加值取出清零和清除空闲题目之间存在极小的竞争窗口，可能丢失个别访问计数，热门排行可以接受
+ *
+ * @author Yangjiayu
+ * @description 题目访问计数的本地累加和批量写入
+ */
+@Service
+@Slf4j
+public class QuestionViewCountService {
+
+    private final ConcurrentHashMap<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    /**
+     * 同一时间只有一次写入
+     */
+    private final AtomicBoolean flushing = new AtomicBoolean(false);
+
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final QuestionViewProperties questionViewProperties;
+    private final ThreadPoolTaskExecutor viewCountExecutor;
+
+    private final Counter recordedCounter;
+    private final Counter droppedCounter;
+    private final Counter flushedCounter;
+    private final Counter flushFailedCounter;
+    private final Counter flushSkippedCounter;
+
+    public QuestionViewCountService(RedisTemplate<String, Object> redisTemplate,
+                                    QuestionViewProperties questionViewProperties,
+                                    @Qualifier("viewCountExecutor") ThreadPoolTaskExecutor viewCountExecutor,
+                                    MeterRegistry meterRegistry) {
+        this.redisTemplate = redisTemplate;
+        this.questionViewProperties = questionViewProperties;
+        this.viewCountExecutor = viewCountExecutor;
+        this.recordedCounter = meterRegistry.counter("question.view.recorded");
+        this.droppedCounter = meterRegistry.counter("question.view.dropped");
+        this.flushedCounter = meterRegistry.counter("question.view.flushed");
+        this.flushFailedCounter = meterRegistry.counter("question.view.flush.failed");
+        this.flushSkippedCounter = meterRegistry.counter("question.view.flush.skipped");
+        meterRegistry.gaugeMapSize("question.view.pending", Tags.empty(), pending);
+    }
+
+    // ============== 核心方法 ==============
+
+    /**
+     * 记录一次题目访问（本地累加）
+     *
+     * @param questionId 题目id
+     */
+    public void record(Long questionId) {
+        if (questionId == null) {
+            return;
+        }
+        LongAdder adder = pending.get(questionId);
+        if (adder == null) {
+            //新题目：本地累加的题目数量达到上限直接丢弃
+            if (pending.size() >= questionViewProperties.getMaxPendingKeys()) {
+                droppedCounter.increment();
+                return;
+            }
+            adder = pending.computeIfAbsent(questionId, id -> new LongAdder());
+        }
+        adder.increment();
+        recordedCounter.increment();
+    }
+
+    /**
+     * 提交一次写入任务（定时任务调用），上一次写入还没完成时跳过
+     */
+    public void scheduleFlush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            viewCountExecutor.execute(this::flush);
+        } catch (TaskRejectedException e) {
+            flushSkippedCounter.increment();
+            log.debug("题目访问计数上一次写入还没有完成，本次跳过");
+        }
+    }
+
+    /**
+     * 应用关闭时写入剩余的累加值
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    // ============== 私有方法 ==============
+
+    /**
+     * 取出并清零所有累加值，一次pipeline批量 ZINCRBY 写入redis
+     */
+    private void flush() {
+        if (!flushing.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            Map<Long, Long> increments = drain();
+            if (increments.isEmpty()) {
+                return;
+            }
+            //累计访问次数（总榜） + 当前小时的分桶（今日 本周热门）
+            String hourKey = QuestionTrendingService.hourKey(LocalDateTime.now());
+            try {
+                redisTemplate.executePipelined(new SessionCallback<Object>() {
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public <K, V> Object execute(RedisOperations<K, V> operations) throws DataAccessException {
+                        RedisOperations<String, Object> redisOperations = (RedisOperations<String, Object>) operations;
+                        increments.forEach((questionId, count) -> {
+                            redisOperations.opsForZSet().incrementScore(CacheConstants.POPULAR_QUESTIONS_KEY, questionId, count);
+                            redisOperations.opsForZSet().incrementScore(hourKey, questionId, count);
+                        });
+                        redisOperations.expire(hourKey, CacheConstants.POPULAR_QUESTIONS_HOUR_EXPIRE_SECONDS, TimeUnit.SECONDS);
+                        return null;
+                    }
+                });
+                long total = increments.values().stream().mapToLong(Long::longValue).sum();
+                flushedCounter.increment(total);
+                log.debug("写入{}道题目的访问计数，共{}次访问", increments.size(), total);
+            } catch (Exception e) {
+                //写入失败放回本地，下一次重试
+                flushFailedCounter.increment();
+                increments.forEach((questionId, count) -> pending.computeIfAbsent(questionId, id -> new LongAdder()).add(count));
+                log.warn("写入题目访问计数失败，{}道题目的访问计数留到下一次写入！原因：{}", increments.size(), e.getMessage());
+            }
+        } finally {
+            flushing.set(false);
+        }
+    }
+
+    /**
+     * 取出并清零累加值，上一个间隔没有访问的题目从本地移除
+     */
+    private Map<Long, Long> drain() {
+        Map<Long, Long> increments = new HashMap<>();
+        pending.forEach((questionId, adder) -> {
+            long count = adder.sumThenReset();
+            if (count > 0) {
+                increments.put(questionId, count);
+            } else {
+                pending.remove(questionId, adder);
+            }
+        });
+        return increments;
+    }
+}
@@ -0,0 +1,414 @@
+package com.yangjiayu.exam_system_server_online.service.impl;
+
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import com.yangjiayu.exam_system_server_online.config.properties.GradingProperties;
+import com.yangjiayu.exam_system_server_online.entity.AnswerRecord;
+import com.yangjiayu.exam_system_server_online.entity.Question;
+import com.yangjiayu.exam_system_server_online.service.AiGradingService;
+import com.yangjiayu.exam_system_server_online.service.GradingCacheService;
+import com.yangjiayu.exam_system_server_online.service.KimiAiService;
+import com.yangjiayu.exam_system_server_online.vo.GradingResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.util.ObjectUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Classname AiGradingServiceImpl
+ * @Description 简答题AI判卷实现类
+ * 一份答卷中的简答题同时发起判卷请求（单份答卷并发上限），
+ * 所有答卷共享一个全局的在途请求上限，避免多份答卷同时判卷时把ai接口打满
+ * 相同题目相同答案优先复用缓存的判卷结果
+ * 同一道题的多份答案合并成一个ai请求（批量判卷），合并结果解析失败时退回逐份判卷
+ * @Date 2025/11/03 19:35
+ * @Created by YangJiaYu
+ */
+@Slf4j
+@Service
+public class AiGradingServiceImpl implements AiGradingService {
+
+    /**
+     * 批量判卷token估算：提示词中固定部分（判卷要求 返回格式）的长度
+     */
+    private static final int BATCH_PROMPT_BASE_TOKENS = 400;
+
+    /**
+     * 批量判卷token估算：每份答案的评语和扣分原因的长度
+     */
+    private static final int BATCH_RESULT_TOKENS_PER_ANSWER = 100;
+
+    private final KimiAiService kimiAiService;
+
+    private final GradingProperties gradingProperties;
+
+    private final GradingCacheService gradingCacheService;
+
+    /**
+     * 本节点全局的ai判卷在途请求数
+     */
+    private final Semaphore inFlightPermits;
+
+    /**
+     * 本节点正在判简答题的答卷数，只有一份答卷时不等待合并窗口
+     */
+    private final AtomicInteger gradingExams = new AtomicInteger();
+
+    /**
+     * 合并窗口内等待合并判卷的答案：题目id:答案版本:满分 -> 待判卷的答案
+     */
+    private final Map<String, PendingBatch> pendingBatches = new ConcurrentHashMap<>();
+
+    public AiGradingServiceImpl(KimiAiService kimiAiService, GradingProperties gradingProperties,
+                                GradingCacheService gradingCacheService) {
+        this.kimiAiService = kimiAiService;
+        this.gradingProperties = gradingProperties;
+        this.gradingCacheService = gradingCacheService;
+        this.inFlightPermits = new Semaphore(gradingProperties.getAiMaxInFlight());
+    }
+
+    @Override
+    public Mono<GradingResult> gradeTextAnswer(Question question, String userAnswer, Integer maxScore) {
+        //相同题目相同答案先查判卷结果缓存，命中就不用调用ai（缓存查询会访问redis，放到弹性线程上）
+        String cacheKey = gradingCacheService.buildKey(question, userAnswer, maxScore);
+        return Mono.fromCallable(() -> gradingCacheService.get(cacheKey))
+            .subscribeOn(Schedulers.boundedElastic())
+            .doOnNext(result -> log.debug("id={}的题目命中判卷结果缓存，key：{}", question.getId(), cacheKey))
+            .switchIfEmpty(Mono.defer(() -> callAiGrading(question, userAnswer, maxScore)
+                .flatMap(result -> Mono.fromRunnable(() -> gradingCacheService.put(cacheKey, result))
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .thenReturn(result))));
+    }
+
+    @Override
+    public Mono<List<GradingResult>> gradeTextAnswers(Question question, List<String> userAnswers, Integer maxScore) {
+        if (ObjectUtils.isEmpty(userAnswers)) {
+            return Mono.just(new ArrayList<>());
+        }
+        //1.每份答案生成缓存key，查询缓存（会访问redis，放到弹性线程上）
+        List<String> cacheKeys = new ArrayList<>(userAnswers.size());
+        for (String userAnswer : userAnswers) {
+            cacheKeys.add(gradingCacheService.buildKey(question, userAnswer, maxScore));
+        }
+        return Mono.fromCallable(() -> {
+                Map<String, GradingResult> resolved = new HashMap<>();
+                //没有命中的答案，相同的答案只判一次
+                Map<String, String> missing = new LinkedHashMap<>();
+                for (int i = 0; i < userAnswers.size(); i++) {
+                    String cacheKey = cacheKeys.get(i);
+                    if (resolved.containsKey(cacheKey) || missing.containsKey(cacheKey)) {
+                        continue;
+                    }
+                    GradingResult cached = gradingCacheService.get(cacheKey);
+                    if (cached != null) {
+                        resolved.put(cacheKey, cached);
+                    } else {
+                        missing.put(cacheKey, userAnswers.get(i));
+                    }
+                }
+                log.debug("id={}的题目批量判卷，答案{}份，命中缓存{}份，需要ai判卷{}份",
+                    question.getId(), userAnswers.size(), resolved.size(), missing.size());
+                return new CacheLookup(resolved, missing);
+            })
+            .subscribeOn(Schedulers.boundedElastic())
+            //2.没有命中的答案按token预算拆分成多个批次，批次之间并发判卷
+            .flatMap(lookup -> Flux.fromIterable(splitBatches(question, lookup.missing))
+                .flatMap(batch -> gradeBatch(question, batch, maxScore), gradingProperties.getAiConcurrencyPerExam())
+                .doOnNext(lookup.resolved::putAll)
+                .then(Mono.fromCallable(() -> {
+                    //3.按原始顺序组装结果，判卷失败的答案为null
+                    List<GradingResult> results = new ArrayList<>(userAnswers.size());
+                    for (String cacheKey : cacheKeys) {
+                        results.add(lookup.resolved.get(cacheKey));
+                    }
+                    return results;
+                })));
+    }
+
+    @Override
+    public Mono<Void> gradeTextRecords(List<AnswerRecord> textRecords, Map<Long, Question> questionMap) {
+        if (ObjectUtils.isEmpty(textRecords)) {
+            return Mono.empty();
+        }
+        return Flux.defer(() -> {
+                gradingExams.incrementAndGet();
+                return Flux.fromIterable(textRecords);
+            })
+            .flatMap(answerRecord -> {
+                Question question = questionMap.get(answerRecord.getQuestionId().longValue());
+                int maxScore = question.getPaperScore().intValue();
+                return gradeTextAnswerCoalesced(question, answerRecord.getUserAnswer(), maxScore)
+                    .doOnNext(result -> applyGradingResult(answerRecord, result, maxScore))
+                    .then()
+                    .onErrorResume(e -> {
+                        //判断题目错了 给0分
+                        log.error("id={}的答题记录ai判卷失败！原因：{}", answerRecord.getId(), e.getMessage());
+                        answerRecord.setScore(0);
+                        answerRecord.setIsCorrect(0);
+                        answerRecord.setAiCorrection("判断过程中报错，直接0分");
+                        return Mono.empty();
+                    });
+            }, gradingProperties.getAiConcurrencyPerExam())
+            .doFinally(signal -> gradingExams.decrementAndGet())
+            .then();
+    }
+
+    @Override
+    public void applyGradingResult(AnswerRecord answerRecord, GradingResult result, int maxScore) {
+        Integer aiScore = result.getScore();
+        if (aiScore >= maxScore) {
+            //题完全正确
+            answerRecord.setScore(maxScore);
+            answerRecord.setIsCorrect(1);
+        } else if (aiScore <= 0) {
+            //证明完全错误
+            answerRecord.setScore(0);
+            answerRecord.setIsCorrect(0);
+        } else {
+            //部分正确
+            answerRecord.setScore(aiScore);
+            answerRecord.setIsCorrect(2);
+        }
+        answerRecord.setAiCorrection(result.getFeedback());
+    }
+
+    // ============== 合并判卷 ==============
+
+    /**
+     * 同时判卷的多份答卷中，同一道题（并且答案版本相同）的答案在合并窗口内攒成一批，一次ai请求判完
+     * 窗口到期或者攒满一批立即发起判卷；只有一份答卷在判卷时没有可以合并的答案，直接判卷不等待窗口
+     */
+    private Mono<GradingResult> gradeTextAnswerCoalesced(Question question, String userAnswer, Integer maxScore) {
+        if (gradingProperties.getBatchWindowMs() <= 0 || gradingProperties.getBatchMaxSize() <= 1
+            || gradingExams.get() <= 1) {
+            return gradeTextAnswer(question, userAnswer, maxScore);
+        }
+        return Mono.defer(() -> {
+            Sinks.One<GradingResult> sink = Sinks.one();
+            //标准答案修改前后的答案不能合并成一批，否则先到的题目快照决定了整批的标准答案
+            String batchKey = question.getId() + ":" + gradingCacheService.answerVersion(question) + ":" + maxScore;
+            PendingBatch[] full = new PendingBatch[1];
+            pendingBatches.compute(batchKey, (key, batch) -> {
+                if (batch == null) {
+                    batch = new PendingBatch(question, maxScore);
+                    PendingBatch created = batch;
+                    //窗口到期还没有攒满，有多少判多少
+                    Mono.delay(Duration.ofMillis(gradingProperties.getBatchWindowMs()))
+                        .subscribe(t -> {
+                            if (pendingBatches.remove(key, created)) {
+                                flush(created);
+                            }
+                        });
+                }
+                batch.userAnswers.add(userAnswer);
+                batch.sinks.add(sink);
+                if (batch.userAnswers.size() >= gradingProperties.getBatchMaxSize()) {
+                    //攒满了，从等待中移除，立即判卷
+                    full[0] = batch;
+                    return null;
+                }
+                return batch;
+            });
+            if (full[0] != null) {
+                flush(full[0]);
+            }
+            return sink.asMono();
+        });
+    }
+
+    /**
+     * 一批答案发起判卷，结果分发给每一个等待者
+     */
+    private void flush(PendingBatch batch) {
+        gradeTextAnswers(batch.question, batch.userAnswers, batch.maxScore)
+            .subscribe(results -> {
+                for (int i = 0; i < batch.sinks.size(); i++) {
+                    GradingResult result = results.get(i);
+                    if (result != null) {
+                        batch.sinks.get(i).tryEmitValue(result);
+                    } else {
+                        batch.sinks.get(i).tryEmitError(new RuntimeException("ai判卷没有返回结果"));
+                    }
+                }
+            }, e -> batch.sinks.forEach(sink -> sink.tryEmitError(e)));
+    }
+
+    // ============== 批量判卷 ==============
+
+    /**
+     * 按token预算和最大答案数把答案拆分成多个批次
+     * 单份答案超过预算也单独成一批
+     */
+    private List<List<Map.Entry<String, String>>> splitBatches(Question question, Map<String, String> missing) {
+        int baseTokens = BATCH_PROMPT_BASE_TOKENS + question.getTitle().length()
+            + (question.getAnswer() == null || question.getAnswer().getAnswer() == null ? 0 : question.getAnswer().getAnswer().length());
+        List<List<Map.Entry<String, String>>> batches = new ArrayList<>();
+        List<Map.Entry<String, String>> current = new ArrayList<>();
+        int currentTokens = baseTokens;
+        for (Map.Entry<String, String> entry : missing.entrySet()) {
+            int answerTokens = (entry.getValue() == null ? 0 : entry.getValue().length()) + BATCH_RESULT_TOKENS_PER_ANSWER;
+            if (!current.isEmpty() && (current.size() >= gradingProperties.getBatchMaxSize()
+                || currentTokens + answerTokens > gradingProperties.getBatchTokenBudget())) {
+                batches.add(current);
+                current = new ArrayList<>();
+                currentTokens = baseTokens;
+            }
+            current.add(entry);
+            currentTokens += answerTokens;
+        }
+        if (!current.isEmpty()) {
+            batches.add(current);
+        }
+        return batches;
+    }
+
+    /**
+     * 一个批次判卷，返回 缓存key -> 判卷结果，判卷失败的答案不在结果中
+     * 只有一份答案直接单独判卷；合并判卷失败或者结果缺失的答案退回逐份判卷
+     */
+    private Mono<Map<String, GradingResult>> gradeBatch(Question question, List<Map.Entry<String, String>> batch,
+                                                        Integer maxScore) {
+        Mono<Map<Integer, GradingResult>> batchResults;
+        if (batch.size() == 1) {
+            batchResults = Mono.just(new HashMap<>());
+        } else {
+            List<String> userAnswers = batch.stream().map(Map.Entry::getValue).toList();
+            String prompt = kimiAiService.buildBatchGradingPrompt(question, userAnswers, maxScore);
+            batchResults = withPermit(kimiAiService.callKimiAIReactive(prompt))
+                .map(response -> parseBatchGradingResult(response, batch.size(), maxScore))
+                .onErrorResume(e -> {
+                    log.warn("id={}的题目合并判卷失败，退回逐份判卷！原因：{}", question.getId(), e.getMessage());
+                    return Mono.just(new HashMap<>());
+                });
+        }
+        return batchResults.flatMap(indexResults -> Flux.range(0, batch.size())
+            .flatMap(i -> {
+                Map.Entry<String, String> entry = batch.get(i);
+                GradingResult result = indexResults.get(i + 1);
+                Mono<GradingResult> resultMono = result != null ? Mono.just(result)
+                    : callAiGrading(question, entry.getValue(), maxScore)
+                        .onErrorResume(e -> {
+                            log.error("id={}的题目逐份判卷失败！原因：{}", question.getId(), e.getMessage());
+                            return Mono.empty();
+                        });
+                return resultMono.map(r -> Map.entry(entry.getKey(), r));
+            }, gradingProperties.getAiConcurrencyPerExam())
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue))
+            //判卷结果写入缓存
+            .flatMap(graded -> Mono.fromRunnable(() -> graded.forEach(gradingCacheService::put))
+                .subscribeOn(Schedulers.boundedElastic())
+                .thenReturn(graded));
+    }
+
+    /**
+     * ai返回的json数组转成 答案编号 -> 判卷结果
+     * [{"index":1,"score":8,"feedback":"...","reason":"..."}]
+     * 编号越界 没有分数或者分数为负数的元素忽略，对应的答案会退回逐份判卷；超过满分的按满分计
+     */
+    private Map<Integer, GradingResult> parseBatchGradingResult(String response, int size, Integer maxScore) {
+        int startIndex = response.indexOf('[');
+        int endIndex = response.lastIndexOf(']');
+        if (startIndex == -1 || endIndex == -1 || startIndex > endIndex) {
+            throw new RuntimeException("合并判卷的结果结构错误，无法进行解析！具体数据为：%s".formatted(response));
+        }
+        JSONArray array = JSONArray.parseArray(response.substring(startIndex, endIndex + 1));
+        Map<Integer, GradingResult> results = new HashMap<>();
+        for (int i = 0; i < array.size(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            Integer index = item.getInteger("index");
+            Integer score = item.getInteger("score");
+            if (index == null || index < 1 || index > size || !isValidScore(score)) {
+                continue;
+            }
+            results.put(index, new GradingResult(Math.min(score, maxScore), item.getString("feedback"), item.getString("reason")));
+        }
+        return results;
+    }
+
+    // ============== 单份判卷 ==============
+
+    /**
+     * 调用ai判卷
+     */
+    private Mono<GradingResult> callAiGrading(Question question, String userAnswer, Integer maxScore) {
+        String prompt = kimiAiService.buildGradingPrompt(question, userAnswer == null ? "" : userAnswer, maxScore);
+        return withPermit(kimiAiService.callKimiAIReactive(prompt)).map(response -> parseGradingResult(response, maxScore));
+    }
+
+    /**
+     * 拿到全局许可之后才发起调用，调用结束（成功 失败 取消）归还许可
+     * 只有等待许可在弹性线程上，ai调用本身是非阻塞的
+     */
+    private Mono<String> withPermit(Mono<String> call) {
+        return Mono.usingWhen(
+            Mono.fromCallable(this::acquirePermit).subscribeOn(Schedulers.boundedElastic()),
+            permit -> call,
+            permit -> Mono.fromRunnable(inFlightPermits::release));
+    }
+
+    /**
+     * ai返回的json转成判卷结果 {"score":8,"feedback":"...","reason":"..."}
+     * 没有分数或者分数为负数直接抛出异常（调用方退回逐份判卷或者按判卷失败处理），不合法的结果不会写入判卷结果缓存；
+     * 超过满分（比如满分10分返回11分）按满分计，写入缓存的也是满分
+     */
+    private GradingResult parseGradingResult(String result, Integer maxScore) {
+        JSONObject jsonObject = JSONObject.parseObject(result);
+        Integer score = jsonObject.getInteger("score");
+        if (!isValidScore(score)) {
+            throw new RuntimeException("ai判卷返回的分数不合法！具体数据为：%s".formatted(result));
+        }
+        return new GradingResult(Math.min(score, maxScore), jsonObject.getString("feedback"), jsonObject.getString("reason"));
+    }
+
+    private static boolean isValidScore(Integer score) {
+        return score != null && score >= 0;
+    }
+
+    private boolean acquirePermit() {
+        try {
+            inFlightPermits.acquire();
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("等待ai判卷许可时被中断！");
+        }
+    }
+
+    /**
+     * 缓存查询结果：命中的结果 + 没有命中的答案（缓存key -> 答案）
+     */
+    private record CacheLookup(Map<String, GradingResult> resolved, Map<String, String> missing) {
+    }
+
+    /**
+     * 合并窗口内等待判卷的同一道题的答案
+     */
+    private static class PendingBatch {
+
+        private final Question question;
+
+        private final Integer maxScore;
+
+        private final List<String> userAnswers = new ArrayList<>();
+
+        private final List<Sinks.One<GradingResult>> sinks = new ArrayList<>();
+
+        private PendingBatch(Question question, Integer maxScore) {
+            this.question = question;
+            this.maxScore = maxScore;
+        }
+    }
+}
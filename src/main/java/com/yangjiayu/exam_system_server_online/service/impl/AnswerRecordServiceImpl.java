@@ -8,6 +8,9 @@ import lombok.extern.slf4j.Slf4j;
 import com.yangjiayu.exam_system_server_online.service.AnswerRecordService;
 import org.springframework.stereotype.Service;
 
+import java.util.List;
+import java.util.stream.Collectors;
+
 /**
  * 服务接口实现
  *
@@ -19,4 +22,19 @@ import org.springframework.stereotype.Service;
 @Service
 public class AnswerRecordServiceImpl extends ServiceImpl<AnswerRecordMapper, AnswerRecord> implements AnswerRecordService {
 
+    /**
+     * 一条update语句最多更新的记录数，避免语句过长
+     */
+    private static final int GRADING_UPDATE_CHUNK_SIZE = 500;
+
+    @Override
+    public void customUpdateGradingResults(List<AnswerRecord> answerRecords) {
+        List<AnswerRecord> gradedRecords = answerRecords.stream()
+            .filter(answerRecord -> answerRecord.getId() != null && answerRecord.getScore() != null)
+            .collect(Collectors.toList());
+        for (int from = 0; from < gradedRecords.size(); from += GRADING_UPDATE_CHUNK_SIZE) {
+            List<AnswerRecord> chunk = gradedRecords.subList(from, Math.min(from + GRADING_UPDATE_CHUNK_SIZE, gradedRecords.size()));
+            baseMapper.customUpdateGradingBatch(chunk);
+        }
+    }
 }
\ No newline at end of file
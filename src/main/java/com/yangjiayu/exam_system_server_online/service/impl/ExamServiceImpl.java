@@ -1,31 +1,61 @@
 package com.yangjiayu.exam_system_server_online.service.impl;
 
-import com.alibaba.fastjson.JSONObject;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.yangjiayu.exam_system_server_online.common.CacheConstants;
 import com.yangjiayu.exam_system_server_online.entity.AnswerRecord;
 import com.yangjiayu.exam_system_server_online.entity.ExamRecord;
 import com.yangjiayu.exam_system_server_online.entity.Paper;
 import com.yangjiayu.exam_system_server_online.entity.Question;
+import com.yangjiayu.exam_system_server_online.mapper.AnswerRecordMapper;
 import com.yangjiayu.exam_system_server_online.mapper.ExamRecordMapper;
 import com.yangjiayu.exam_system_server_online.mapper.PaperMapper;
+import com.yangjiayu.exam_system_server_online.service.AiGradingService;
+import com.yangjiayu.exam_system_server_online.service.AnswerDraftService;
 import com.yangjiayu.exam_system_server_online.service.AnswerRecordService;
+import com.yangjiayu.exam_system_server_online.service.ExamOutboxService;
 import com.yangjiayu.exam_system_server_online.service.ExamService;
+import com.yangjiayu.exam_system_server_online.service.ExamTimerService;
+import com.yangjiayu.exam_system_server_online.service.GradingTaskService;
 import com.yangjiayu.exam_system_server_online.service.KimiAiService;
-import com.yangjiayu.exam_system_server_online.service.PaperService;
+import com.yangjiayu.exam_system_server_online.service.LeaderboardService;
+import com.yangjiayu.exam_system_server_online.service.PaperSnapshotService;
+import com.yangjiayu.exam_system_server_online.utils.ObjectiveGradingUtils;
+import com.yangjiayu.exam_system_server_online.utils.RedisUtils;
+import com.yangjiayu.exam_system_server_online.vo.CursorPageResult;
+import com.yangjiayu.exam_system_server_online.vo.ExamLifecycleEvent;
 import com.yangjiayu.exam_system_server_online.vo.ExamRankingVO;
+import com.yangjiayu.exam_system_server_online.vo.PaperSnapshot;
 import com.yangjiayu.exam_system_server_online.vo.StartExamVo;
 import com.yangjiayu.exam_system_server_online.vo.SubmitAnswerVo;
 import lombok.extern.slf4j.Slf4j;
+import org.redisson.api.RLock;
+import org.redisson.api.RedissonClient;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.ObjectUtils;
+import org.springframework.util.StringUtils;
+import reactor.core.publisher.Mono;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -41,31 +71,126 @@ public class ExamServiceImpl extends ServiceImpl<ExamRecordMapper,ExamRecord> im
     @Autowired
     private ExamRecordMapper examRecordMapper;
 
-    @Autowired
-    private PaperService paperService;
-
     @Autowired
     private AnswerRecordService answerRecordService;
 
     @Autowired
     private KimiAiService kimiAiService;
 
+    @Autowired
+    private GradingTaskService gradingTaskService;
+
+    @Autowired
+    private AiGradingService aiGradingService;
+
+    @Autowired
+    private PaperSnapshotService paperSnapshotService;
+
+    @Autowired
+    private RedisUtils redisUtils;
+
+    @Autowired
+    private AnswerDraftService answerDraftService;
+
+    @Autowired
+    private AnswerRecordMapper answerRecordMapper;
+
+    @Autowired
+    private ExamTimerService examTimerService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private ExamOutboxService examOutboxService;
+
+    @Lazy
+    @Autowired
+    private RedissonClient redissonClient;
+
+    /**
+     * 开始考试锁：等待时间 和 自动释放时间（秒）
+     */
+    private static final long START_LOCK_WAIT_SECONDS = 3;
+    private static final long START_LOCK_LEASE_SECONDS = 10;
+
+    /**
+     * 游标分页有筛选条件时，总数最多数到多少条
+     */
+    private static final int CURSOR_COUNT_CAP = 10000;
+
     /**
      * 创建和保存考试记录业务（开始考试）
+     * 学生双击或者前端重试时会并发进入，先查后插会产生多条进行中的考试记录，这里保证原子和幂等：
+     * 1. 携带 Idempotency-Key 的重复请求直接返回第一次创建的考试记录
+     * 2. 学生 + 试卷 维度的redisson分布式锁，保证查询和插入之间不会有其他请求插入
+     * 3. 数据库唯一索引兜底（见 ExamRecordMapper.xml），redis不可用时插入冲突后返回已存在的记录
      * @param startExamVo
+     * @param idempotencyKey
      * @return
      */
     @Override
-    public ExamRecord startExam(StartExamVo startExamVo) {
+    public ExamRecord startExam(StartExamVo startExamVo, String idempotencyKey) {
+        //1.幂等key对应的考试记录已经存在，直接返回
+        String idempotencyRedisKey = StringUtils.hasText(idempotencyKey)
+            ? CacheConstants.EXAM_START_IDEMPOTENCY_KEY + startExamVo.getStudentName() + ":" + idempotencyKey : null;
+        ExamRecord replay = getIdempotentExamRecord(idempotencyRedisKey, startExamVo);
+        if (replay != null) {
+            log.debug("考生，{}重复提交开始考试请求（Idempotency-Key={}），直接返回考试记录：{}",startExamVo.getStudentName(),idempotencyKey,replay.getId());
+            return replay;
+        }
+
+        //2.学生 + 试卷 加锁，redis不可用时降级为数据库唯一索引兜底
+        RLock lock = lockStartExam(startExamVo);
+        try {
+            ExamRecord examRecord = createOrGetInProgress(startExamVo);
+            saveIdempotentExamRecord(idempotencyRedisKey, examRecord);
+            return examRecord;
+        } finally {
+            if (lock != null) {
+                try {
+                    lock.unlock();
+                } catch (Exception e) {
+                    log.warn("开始考试释放分布式锁失败！原因：{}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 获取 学生 + 试卷 的开始考试锁
+     * @return 锁，redis不可用时返回null
+     */
+    private RLock lockStartExam(StartExamVo startExamVo) {
+        RLock lock;
+        boolean locked;
+        try {
+            lock = redissonClient.getLock(CacheConstants.EXAM_START_LOCK_KEY + startExamVo.getStudentName() + ":" + startExamVo.getPaperId());
+            locked = lock.tryLock(START_LOCK_WAIT_SECONDS, START_LOCK_LEASE_SECONDS, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("开始考试被中断，请重试！");
+        } catch (Exception e) {
+            log.warn("开始考试获取分布式锁失败，使用数据库唯一索引兜底！原因：{}", e.getMessage());
+            return null;
+        }
+        if (!locked) {
+            throw new RuntimeException("正在开始考试，请勿重复提交！");
+        }
+        return lock;
+    }
+
+    /**
+     * 存在进行中的考试记录直接返回，否则创建
+     */
+    private ExamRecord createOrGetInProgress(StartExamVo startExamVo) {
         //1.检验考生在当前选择的试卷是否存在正在进行中的考试，存在就返回这个对象
-        LambdaQueryWrapper<ExamRecord> queryWrapper = new LambdaQueryWrapper<>();
-        queryWrapper.eq(ExamRecord::getStudentName,startExamVo.getStudentName());
-        // 试卷id
-        queryWrapper.eq(ExamRecord::getExamId,startExamVo.getPaperId());
-        queryWrapper.eq(ExamRecord::getStatus,"进行中");
-        ExamRecord one = getOne(queryWrapper);
+        ExamRecord one = getInProgress(startExamVo);
         if(one!=null){
-            log.debug("考生，{}在paperId={}的试卷中有正在进行的考试记录，直接返回对应的考试记录：{}",startExamVo.getStudentName(),startExamVo.getPaperId(),one.getExamId());
+            log.debug("考生，{}在paperId={}的试卷中有正在进行的考试记录，直接返回对应的考试记录：{}",startExamVo.getStudentName(),startExamVo.getPaperId(),one.getId());
             return one;
         }
 
@@ -77,15 +202,74 @@ public class ExamServiceImpl extends ServiceImpl<ExamRecordMapper,ExamRecord> im
         examRecord.setStartTime(LocalDateTime.now());
         examRecord.setWindowSwitches(0);//没有开发切屏
 
-
-        //3.进行考试记录对象保存
-        save(examRecord);
+        //3.进行考试记录对象保存（同事务写入开始考试事件），唯一索引冲突说明其他请求已经创建，返回已存在的记录
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                save(examRecord);
+                examOutboxService.append(ExamLifecycleEvent.STARTED, examRecord);
+            });
+        } catch (DuplicateKeyException e) {
+            one = getInProgress(startExamVo);
+            if (one == null) {
+                throw e;
+            }
+            log.debug("考生，{}在paperId={}的试卷中并发开始考试，返回已创建的考试记录：{}",startExamVo.getStudentName(),startExamVo.getPaperId(),one.getId());
+            return one;
+        }
+        //登记截止时间，到时自动交卷
+        Paper paper = paperSnapshotService.getPaperDetail(startExamVo.getPaperId().longValue());
+        examTimerService.register(examRecord.getId(), examRecord.getStartTime(), paper.getDuration());
 
         //4.返回对应的考试记录
-
         return examRecord;
     }
 
+    /**
+     * 查询进行中的考试记录
+     * 历史数据中可能已经存在重复记录，取第一条，不抛出 TooManyResultsException
+     */
+    private ExamRecord getInProgress(StartExamVo startExamVo) {
+        LambdaQueryWrapper<ExamRecord> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.eq(ExamRecord::getStudentName,startExamVo.getStudentName());
+        // 试卷id
+        queryWrapper.eq(ExamRecord::getExamId,startExamVo.getPaperId());
+        queryWrapper.eq(ExamRecord::getStatus,"进行中");
+        queryWrapper.orderByAsc(ExamRecord::getId);
+        return getOne(queryWrapper, false);
+    }
+
+    private ExamRecord getIdempotentExamRecord(String idempotencyRedisKey, StartExamVo startExamVo) {
+        if (idempotencyRedisKey == null) {
+            return null;
+        }
+        try {
+            Object examRecordId = redisUtils.get(idempotencyRedisKey);
+            if (examRecordId == null) {
+                return null;
+            }
+            ExamRecord examRecord = getById(((Number) examRecordId).longValue());
+            //同一个key用在了其他试卷上，按新请求处理
+            if (examRecord == null || !startExamVo.getPaperId().equals(examRecord.getExamId())) {
+                return null;
+            }
+            return examRecord;
+        } catch (Exception e) {
+            log.warn("读取开始考试幂等key失败！原因：{}", e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveIdempotentExamRecord(String idempotencyRedisKey, ExamRecord examRecord) {
+        if (idempotencyRedisKey == null) {
+            return;
+        }
+        try {
+            redisUtils.set(idempotencyRedisKey, examRecord.getId(), CacheConstants.EXAM_START_IDEMPOTENCY_EXPIRE_SECONDS);
+        } catch (Exception e) {
+            log.warn("保存开始考试幂等key失败！原因：{}", e.getMessage());
+        }
+    }
+
     @Override
     public ExamRecord customGetExamRecordById(Integer id) {
         //宏观：获取考试记录，考试记录对应的试卷对象，获取考试记录对应的答题记录集合
@@ -95,117 +279,202 @@ public class ExamServiceImpl extends ServiceImpl<ExamRecordMapper,ExamRecord> im
         if (examRecord == null) {
             throw new RuntimeException("开始考试的记录已经被删除！");
         }
-        //2. 获取考试记录对应试卷对象详情 【试卷 题目 选项 和 答案】
-        Paper paper = paperService.customPaperDetailById(examRecord.getExamId().longValue());
-        if (paper == null) {
+        //2. 获取考试记录对应试卷快照 【试卷 题目 选项 和 答案 + 题目位置索引】
+        PaperSnapshot snapshot = getExamPaperSnapshot(examRecord);
+        //3. 答题记录按试卷题目顺序组装
+        assembleExamRecord(examRecord, snapshot);
+        //4. 考试进行中只能看到不含答案的试卷（标准答案 解析 选项对错），交卷之后才返回完整试卷
+        if ("进行中".equals(examRecord.getStatus())) {
+            examRecord.setPaper(paperSnapshotService.withoutAnswers(snapshot.getPaper()));
+        }
+        return examRecord;
+    }
+
+    /**
+     * 获取考试记录对应的试卷快照
+     * 已发布的试卷直接使用缓存的快照，其他状态查询数据库
+     */
+    private PaperSnapshot getExamPaperSnapshot(ExamRecord examRecord) {
+        PaperSnapshot snapshot = paperSnapshotService.getPaperSnapshot(examRecord.getExamId().longValue());
+        if (snapshot.getPaper() == null) {
             throw new RuntimeException("当前考试记录的试卷被删除！获取考试记录详情失败！");
         }
+        return snapshot;
+    }
 
-        //3. 获取考试记录对应的答题记录集合
+    /**
+     * 查询考试记录对应的答题记录，按照试卷中的题目顺序组装到考试记录中
+     */
+    private ExamRecord assembleExamRecord(ExamRecord examRecord, PaperSnapshot snapshot) {
         LambdaQueryWrapper<AnswerRecord> lambdaQueryWrapper = new LambdaQueryWrapper<>();
-        lambdaQueryWrapper.eq(AnswerRecord::getExamRecordId,id);
-
+        lambdaQueryWrapper.eq(AnswerRecord::getExamRecordId, examRecord.getId());
         List<AnswerRecord> answerRecords = answerRecordService.list(lambdaQueryWrapper);
-        if (!ObjectUtils.isEmpty(answerRecords)){
-            //[8,2,1,3,7,4] -> 题目id
-            // 按照试卷中的题目顺序给答题记录排序
-            // 先获取试卷中题目的id集合！【5，2，1，4，3】
-            List<Long> questionIdList = paper.getQuestions().stream().map(Question::getId).collect(Collectors.toList());
-            //[{questionId:1} -> 2 ,{questionId:2} -> 1 ,{questionId:3} -> 3,{questionId:4} ->5,{questionId:7} -> 4,{questionId:8} -> 0]
-
-            // 根据考试记录对应题目在 题目集合中的顺序进行排序  《========这里值得学习一下
-            //【1，2，3，4，5】 => 【2，1，4，3，0】
-
-            answerRecords.sort((o1, o2) -> {
-                // 获取 o1 的题目ID在试卷顺序列表中的索引
-                int x = questionIdList.indexOf(o1.getQuestionId());
-
-                // 获取 o2 的题目ID在试卷顺序列表中的索引
-                int y = questionIdList.indexOf(o2.getQuestionId());
-
-                // 【核心修正】比较的是在试卷中的位置（索引），而不是题目ID本身
-                return Integer.compare(x, y);
-            });
+        //进行中的考试答案还在草稿中，合并未写入数据库的草稿（答题中刷新页面 浏览器崩溃后恢复）
+        if ("进行中".equals(examRecord.getStatus())) {
+            answerRecords = mergeDrafts(examRecord, answerRecords);
+        }
+        if (!ObjectUtils.isEmpty(answerRecords)) {
+            answerRecords = sortByPaperOrder(answerRecords, snapshot);
         }
-        //4. 数据组装即可
-        examRecord.setPaper(paper);
+        examRecord.setPaper(snapshot.getPaper());
         examRecord.setAnswerRecords(answerRecords);
         return examRecord;
     }
-    /*
-    场景：按座位表给学生排队
-假设你是一个老师，现在有一群学生刚下课，乱糟糟地站在一起（这就是 answerRecords，顺序是乱的）。
-
-你的任务是让他们按照教室座位表的顺序排好队。
-
-1. 你的“座位表”
-
-你的座位表（这就是 questionIdList）是这样的：
-[小张, 小李, 小王, 小赵]
-
-2. 乱糟糟的学生
 
-现在学生的顺序是：
-[小王, 小赵, 小张, 小李]
-
-3. 排队开始（这就是 sort 方法做的事情）
-
-计算机的排序算法很“笨”，它一次只拉出两个学生，问：“你们俩谁应该站前面？”
-
-假设它先拉出了 小王 和 小赵。
-
-第一步：查座位表
-它问：“小王，你在座位表第几位？” 小王说：“我第3位。” (索引是2)
-它问：“小赵，你在座位表第几位？” 小赵说：“我第4位。” (索引是3)
-第二步：比较位置
-计算机比较这两个数字：2 和 3。
-规则是：数字小的站前面。
-因为 2 < 3，所以它得出结论：小王应该站在小赵前面。
-于是，它把小王和小赵的顺序换了一下，现在队伍暂时变成了 [小赵, 小王, 小张, 小李]（这只是其中一步，排序算法会继续比较和交换）。
-
-4. 关键点
-
-你发现了吗？在整个过程中，计算机根本不关心小王和小赵谁高谁矮，谁胖谁瘦。它唯一的标准就是：查座位表，看谁的索引数字更小。
-
-回到代码
-现在我们把刚才的例子翻译成代码：
-
-
-
-// 优化后的正确代码
-answerRecords.sort((o1, o2) -> {
-    // o1 就是第一个被拉出来的学生（比如小王）
-    // o2 就是第二个被拉出来的学生（比如小赵）
-
-    // 查座位表，找到小王的“位置”
-    int x = questionOrderMap.get(o1.getQuestionId()); // x = 2
-
-    // 查座位表，找到小赵的“位置”
-    int y = questionOrderMap.get(o2.getQuestionId()); // y = 3
+    /**
+     * 答案草稿合并到答题记录中，草稿是最新的答案
+     */
+    private List<AnswerRecord> mergeDrafts(ExamRecord examRecord, List<AnswerRecord> answerRecords) {
+        Integer examRecordId = examRecord.getId().intValue();
+        Map<Integer, String> drafts = answerDraftService.get(examRecordId);
+        if (drafts.isEmpty()) {
+            return answerRecords;
+        }
+        List<AnswerRecord> merged = new ArrayList<>(answerRecords.size() + drafts.size());
+        Map<Integer, String> remaining = new HashMap<>(drafts);
+        for (AnswerRecord answerRecord : answerRecords) {
+            if (remaining.containsKey(answerRecord.getQuestionId())) {
+                answerRecord.setUserAnswer(remaining.remove(answerRecord.getQuestionId()));
+            }
+            merged.add(answerRecord);
+        }
+        remaining.forEach((questionId, userAnswer) -> merged.add(new AnswerRecord(examRecordId, questionId, userAnswer)));
+        return merged;
+    }
 
-    // 比较位置，数字小的排前面
-    return Integer.compare(x, y); // 2 < 3，所以 o1 (小王) 排在 o2 (小赵) 前面
-});
-Integer.compare(x, y) 这句话，就是计算机在说：“来，看看你们俩在座位表上的位置号，谁的位置号小，谁就站前面！”
+    /**
+     * 按照试卷中的题目顺序给答题记录排序
+     *
+     * 不再用比较器 + indexOf（每次比较都线性扫描题目集合，O(n² log n)），
+     * 而是按题目位置放进对应的格子里（计数排序），一次遍历完成 O(n)：
+     * 1. 快照中的 题目id -> 位置 索引得到每条答题记录的位置（O(1)）
+     * 2. 统计每个位置的记录数，前缀和得到每个位置在结果中的起始下标
+     * 3. 再遍历一次，按起始下标放入结果数组
+     * 题目已经不在试卷中的答题记录排在最前面；同一道题有多条记录时保持查询顺序
      */
+    private List<AnswerRecord> sortByPaperOrder(List<AnswerRecord> answerRecords, PaperSnapshot snapshot) {
+        int questionCount = snapshot.getPaper().getQuestions().size();
+        //格子0：不在试卷中的题目 格子i+1：试卷中的第i道题
+        int[] positions = new int[answerRecords.size()];
+        int[] offsets = new int[questionCount + 2];
+        for (int i = 0; i < answerRecords.size(); i++) {
+            Integer questionId = answerRecords.get(i).getQuestionId();
+            int position = questionId == null ? 0 : snapshot.indexOf(questionId) + 1;
+            positions[i] = position;
+            offsets[position + 1]++;
+        }
+        for (int i = 1; i < offsets.length; i++) {
+            offsets[i] += offsets[i - 1];
+        }
+        AnswerRecord[] ordered = new AnswerRecord[answerRecords.size()];
+        for (int i = 0; i < answerRecords.size(); i++) {
+            ordered[offsets[positions[i]]++] = answerRecords.get(i);
+        }
+        return new ArrayList<>(Arrays.asList(ordered));
+    }
+
+    @Override
+    public byte[] customGetStudentPaper(Integer examRecordId) {
+        ExamRecord examRecord = getById(examRecordId);
+        if (examRecord == null) {
+            throw new RuntimeException("考试记录已经被删除！");
+        }
+        //直接返回试卷快照中预先序列化好的字节
+        return paperSnapshotService.getStudentView(examRecord.getExamId().longValue());
+    }
 
+    @Transactional(rollbackFor = Exception.class)
     @Override
     public void customSubmitAnswer(Integer examRecordId, List<SubmitAnswerVo> answers) {
         //宏观： 提交答案中间表保存  修改考试记录数据（已完成 ，结束时间）  触发开始判卷（examRecordId）
-        //1.中间表保存问题 将集合转成AnswerRecorder集合
-        if (!ObjectUtils.isEmpty(answers)) {
-            List<AnswerRecord> answerRecordList = answers.stream().map(vo -> new AnswerRecord(examRecordId, vo.getQuestionId(), vo.getUserAnswer()))
+        ExamRecord examRecord = getById(examRecordId);
+        if (examRecord == null) {
+            throw new RuntimeException("id为%s的考试记录不存在，交卷失败！".formatted(examRecordId));
+        }
+        //1.进行中 -> 已完成 条件更新（行锁），手动交卷和到时自动交卷并发时只有一个能成功
+        boolean submitted = lambdaUpdate()
+            .set(ExamRecord::getStatus, "已完成")
+            .set(ExamRecord::getEndTime, LocalDateTime.now())
+            .eq(ExamRecord::getId, examRecordId)
+            .eq(ExamRecord::getStatus, "进行中")
+            .update();
+        if (!submitted) {
+            throw new RuntimeException("id为%s的考试记录已经交卷，请勿重复提交！".formatted(examRecordId));
+        }
+        //2.封存答案草稿（之后的自动保存被拒绝），和交卷提交的答案合并，提交的答案优先
+        // 封存写在redis中不随事务回滚：答题记录或者事件写入失败回滚时撤销封存，考试仍然是进行中可以继续作答
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status == STATUS_ROLLED_BACK) {
+                    answerDraftService.unseal(examRecordId);
+                }
+            }
+        });
+        List<SubmitAnswerVo> mergedAnswers = AnswerDraftService.merge(answerDraftService.seal(examRecordId), answers);
+
+        //3.中间表保存问题 将集合转成AnswerRecorder集合，一条多值insert写入
+        if (!ObjectUtils.isEmpty(mergedAnswers)) {
+            List<AnswerRecord> answerRecordList = mergedAnswers.stream().map(vo -> new AnswerRecord(examRecordId, vo.getQuestionId(), vo.getUserAnswer()))
                 .collect(Collectors.toList());
-            answerRecordService.saveBatch(answerRecordList);
+            answerRecordMapper.customInsertBatch(answerRecordList);
         }
-        //2. 暂时修改下考试记录状态（状态 -》 已完成 || 结束时间 - 设置）
-        ExamRecord examRecord = getById(examRecordId);
-        examRecord.setEndTime(LocalDateTime.now());
         examRecord.setStatus("已完成");
-        updateById(examRecord);
+        examOutboxService.append(ExamLifecycleEvent.SUBMITTED, examRecord);
+        //事务提交之后：草稿已经写入数据库可以删除，不再需要到时自动交卷
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                answerDraftService.clear(examRecordId);
+                examTimerService.cancel(examRecordId);
+            }
+        });
 
-        //3.调用判卷的接口
-        gradeExam1(examRecordId);
+        //4.判卷任务进入队列，由判卷线程池异步判卷（ai判卷耗时很长，不能占用请求线程）
+        gradingTaskService.submitGradingTask(examRecordId);
+    }
+
+    @Transactional(rollbackFor = Exception.class)
+    @Override
+    public boolean customAutoSubmit(Integer examRecordId) {
+        ExamRecord examRecord = getById(examRecordId);
+        if (examRecord == null || !"进行中".equals(examRecord.getStatus())) {
+            return false;
+        }
+        customSubmitAnswer(examRecordId, Collections.emptyList());
+        return true;
+    }
+
+    @Override
+    public void customRetryGrading(Integer examRecordId) {
+        ExamRecord examRecord = getById(examRecordId);
+        if (examRecord == null) {
+            throw new RuntimeException("id为%s的考试记录不存在！".formatted(examRecordId));
+        }
+        if (!"已完成".equals(examRecord.getStatus())) {
+            throw new RuntimeException("id为%s的考试记录状态为%s，只有已完成（判卷失败）的考试记录可以重试判卷！"
+                .formatted(examRecordId, examRecord.getStatus()));
+        }
+        gradingTaskService.submitGradingTask(examRecordId);
+    }
+
+    @Override
+    public void customSaveDraftAnswers(Integer examRecordId, List<SubmitAnswerVo> answers) {
+        //只有进行中的考试记录可以保存草稿：不存在的id不会创建草稿key，已交卷标记过期之后也不能再写草稿
+        ExamRecord examRecord = lambdaQuery()
+            .select(ExamRecord::getId, ExamRecord::getStatus)
+            .eq(ExamRecord::getId, examRecordId)
+            .one();
+        if (examRecord == null) {
+            throw new RuntimeException("id为%s的考试记录不存在，无法保存答案！".formatted(examRecordId));
+        }
+        if (!"进行中".equals(examRecord.getStatus())) {
+            throw new RuntimeException("id为%s的考试记录已经交卷，无法保存答案！".formatted(examRecordId));
+        }
+        //已交卷标记在交卷事务中写入，和正在提交的交卷并发时由它拒绝保存
+        if (!answerDraftService.save(examRecordId, answers)) {
+            throw new RuntimeException("id为%s的考试记录已经交卷，无法保存答案！".formatted(examRecordId));
+        }
     }
 
 //    /**
@@ -311,31 +580,6 @@ Integer.compare(x, y) 这句话，就是计算机在说：“来，看看你们
 //        return examRecord;
 //    }
 
-    /**
-     * 标准化判断题答案，将T/F转换为TRUE/FALSE
-     * @param answer 原始答案
-     * @return 标准化后的答案
-     */
-    private String normalizeJudgeAnswer(String answer) {
-        if (answer == null || answer.trim().isEmpty()) {
-            return "";
-        }
-
-        String normalized = answer.trim().toUpperCase();
-        switch (normalized) {
-            case "T":
-            case "TRUE":
-            case "正确":
-                return "TRUE";
-            case "F":
-            case "FALSE":
-            case "错":
-                return "FALSE";
-            default:
-                return normalized;
-        }
-    }
-
     /**
      * 获取考试排行榜 - 优化版本
      * 使用SQL关联查询，一次性获取所有需要的数据，避免N+1查询问题
@@ -345,9 +589,59 @@ Integer.compare(x, y) 这句话，就是计算机在说：“来，看看你们
      */
     @Override
     public List<ExamRankingVO> customGetRanking(Integer paperId, Integer limit) {
-        return examRecordMapper.customQueryRanking(paperId,limit);
+        //redis有序集合中物化的排行榜，没有构建时降级为数据库查询
+        return leaderboardService.top(paperId,limit);
+    }
+
+    @Override
+    public CursorPageResult<ExamRecord> customQueryByCursor(String cursor, Integer size, String studentName, String status,
+                                                            String startDate, String endDate, boolean withTotal) {
+        //1.解析游标：上一页最后一条记录的 开始时间|id
+        LocalDateTime cursorStartTime = null;
+        Long cursorId = null;
+        if (StringUtils.hasText(cursor)) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+                cursorStartTime = LocalDateTime.parse(parts[0]);
+                cursorId = Long.valueOf(parts[1]);
+            } catch (Exception e) {
+                throw new RuntimeException("游标格式错误：%s".formatted(cursor));
+            }
+        }
+        //2.多查一条判断是否还有下一页
+        List<ExamRecord> records = examRecordMapper.customQueryByCursor(studentName, status, startDate, endDate,
+            cursorStartTime, cursorId, size + 1);
+        String nextCursor = null;
+        if (records.size() > size) {
+            records = new ArrayList<>(records.subList(0, size));
+            ExamRecord last = records.get(records.size() - 1);
+            nextCursor = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((last.getStartTime() + "|" + last.getId()).getBytes(StandardCharsets.UTF_8));
+        }
+        //3.试卷基本信息从缓存中批量获取
+        Map<Long, Paper> paperMap = paperSnapshotService.getPaperSummaries(
+            records.stream().map(examRecord -> examRecord.getExamId().longValue()).collect(Collectors.toSet()));
+        records.forEach(examRecord -> examRecord.setPaper(paperMap.get(examRecord.getExamId().longValue())));
+
+        CursorPageResult<ExamRecord> result = new CursorPageResult<>(records, nextCursor);
+        //4.总数：没有筛选条件用表的统计信息估算，有筛选条件最多数到上限
+        if (withTotal) {
+            boolean filtered = StringUtils.hasText(studentName) || StringUtils.hasText(status)
+                || StringUtils.hasText(startDate) || StringUtils.hasText(endDate);
+            if (filtered) {
+                long total = examRecordMapper.customCountCapped(studentName, status, startDate, endDate, CURSOR_COUNT_CAP);
+                result.setTotal(total);
+                result.setTotalApproximate(total >= CURSOR_COUNT_CAP);
+            } else {
+                Long estimate = examRecordMapper.customEstimateRows();
+                result.setTotal(estimate == null ? 0L : estimate);
+                result.setTotalApproximate(true);
+            }
+        }
+        return result;
     }
 
+    @Transactional(rollbackFor = Exception.class)
     @Override
     public void customRemoveById(Integer id) {
         //重要的关联数据校验，有删除失败！
@@ -359,13 +653,27 @@ Integer.compare(x, y) 这句话，就是计算机在说：“来，看看你们
         //删除自身数据，同时删除答题记录
         removeById(id);
         answerRecordService.remove(new LambdaQueryWrapper<AnswerRecord>().eq(AnswerRecord::getExamRecordId,id));
+        //同事务写入删除事件，由事件消费者移除排行榜 清除成绩统计
+        examOutboxService.append(ExamLifecycleEvent.DELETED, examRecord);
     }
 
     @Override
     public ExamRecord gradeExam1(Integer examRecordId) {
 
         //1.获取考生的考试信息（考试记录对象，对应考试试卷（正确答案），答题记录集合（学生答案））
-        ExamRecord examRecord = customGetExamRecordById(examRecordId);
+        // 答题记录已经按试卷题目顺序组装好，判卷直接通过快照的位置索引定位题目
+        ExamRecord examRecord = getById(examRecordId);
+        if (examRecord == null) {
+            throw new RuntimeException("开始考试的记录已经被删除！");
+        }
+        //只判已完成的考试记录：判卷任务可能被重复执行（超时找回 重复入队），已经批阅的直接跳过不再重复调用ai；
+        // 进行中的还没有交卷，判了也无法写入结果
+        if (!"已完成".equals(examRecord.getStatus())) {
+            log.info("id={}的考试记录状态为{}，不是已完成，跳过判卷", examRecordId, examRecord.getStatus());
+            return examRecord;
+        }
+        PaperSnapshot snapshot = getExamPaperSnapshot(examRecord);
+        assembleExamRecord(examRecord, snapshot);
         //2.校验考试记录对应的试卷是否被删除（正确答案）【已经被删除，抛出异常！已批阅 点评 对应试卷被删除无法判卷】
         Paper paper = examRecord.getPaper();
         if(paper == null){
@@ -373,7 +681,7 @@ Integer.compare(x, y) 这句话，就是计算机在说：“来，看看你们
             examRecord.setStatus("已批阅");
             examRecord.setScore(0);
             examRecord.setAnswers("考试对应试卷已经被删除，无法判卷！");//ai 评价
-            updateById(examRecord);
+            markGraded(examRecord);
             log.warn("考试没有正常判定，原因id={}的考试记录对应的试卷已经被删除！！",examRecord);
             return examRecord;
         }
@@ -383,7 +691,11 @@ Integer.compare(x, y) 这句话，就是计算机在说：“来，看看你们
             examRecord.setStatus("已批阅");
             examRecord.setScore(0);
             examRecord.setAnswers("学生没有提交考试记录，直接判0！");//ai 评价
-            updateById(examRecord);
+            transactionTemplate.executeWithoutResult(status -> {
+                if (markGraded(examRecord)) {
+                    examOutboxService.append(ExamLifecycleEvent.GRADED, examRecord);
+                }
+            });
             log.warn("id={}的考试记录学生没有提交考试记录直接判0！！",examRecord);
             return examRecord;
         }
@@ -392,105 +704,96 @@ Integer.compare(x, y) 这句话，就是计算机在说：“来，看看你们
         int correctCount = 0;//正确的数量
         int totalScore = 0;//总分
 
-        //5.将试卷中question题目集合 转成 map(qiestionId,question)为了方便根据答题记录中的questionId快速获取题目对象
-        Map<Long, Question> questionMap = paper.getQuestions().stream().collect(Collectors.toMap(Question::getId, q -> q));
-        
-        //6.循环学生的答题记录，在内部进行逐一判题，同时进行正确数量和题目分数的累加
+        //5.通过快照中的 题目id -> 位置 索引定位每条答题记录对应的题目（答题记录已经是试卷顺序，无需再转map）
+        List<Question> questions = paper.getQuestions();
+        Question[] recordQuestions = new Question[answerRecords.size()];
+        for (int i = 0; i < answerRecords.size(); i++) {
+            Integer questionId = answerRecords.get(i).getQuestionId();
+            int index = questionId == null ? -1 : snapshot.indexOf(questionId);
+            recordQuestions[i] = index < 0 ? null : questions.get(index);
+        }
+
+        //6.简答题先交给ai并发判卷（单份答卷并发上限 + 全局在途上限），ai请求在途时本地判客观题
         // 建议：容错处理！单个题错了，咱们就是这个题0分 不耽误其他题目判断
-        for (AnswerRecord answerRecord : answerRecords) {
+        List<AnswerRecord> textRecords = new ArrayList<>();
+        Map<Long, Question> textQuestionMap = new HashMap<>();
+        for (int i = 0; i < answerRecords.size(); i++) {
+            Question question = recordQuestions[i];
+            if (question != null && "TEXT".equalsIgnoreCase(question.getType())) {
+                textRecords.add(answerRecords.get(i));
+                textQuestionMap.put(question.getId(), question);
+            }
+        }
+        CompletableFuture<Void> aiGrading = aiGradingService.gradeTextRecords(textRecords, textQuestionMap).toFuture();
+
+        for (int i = 0; i < answerRecords.size(); i++) {
             //6.1获取答题记录对应的正确题目
-            Question question = questionMap.get(answerRecord.getQuestionId().longValue());
-            // 答题记录对应的题目被删除了 ，判断下一题
-            if(question == null){
+            Question question = recordQuestions[i];
+            // 答题记录对应的题目被删除了 ，判断下一题；简答题由ai判卷
+            if(question == null || "TEXT".equalsIgnoreCase(question.getType())){
                 continue;
             }
-            //6.2 获取正确的答案和学生的答案
-            String systemAnswer = question.getAnswer().getAnswer();//正确答案
-            String userAnswer = answerRecord.getUserAnswer();
-            // 如果是判断题，用户提交的答案T F -》TRUE 和 FALSE
-            if("JUDGE".equalsIgnoreCase(question.getType())){
-                userAnswer = normalizeJudgeAnswer(userAnswer);
-            }
-
-            try{
-                //1.非简答题
-                if(!"TEXT".equalsIgnoreCase(question.getType())){
-                    //判断题 用户答案TRUE FALSE 【字符串比较】
-
-                    //选择题：用户答案 A A,B  正确答案A A,B
-                    if(userAnswer.equalsIgnoreCase(systemAnswer)){
-                        //正确
-                        answerRecord.setIsCorrect(1);
-                        answerRecord.setScore(question.getPaperScore().intValue());
-                    }else{
-                        answerRecord.setIsCorrect(0);
-                        answerRecord.setScore(0);
-                    }
-                }else{
-                    //2.简答题（ai）
-                    String prompt = kimiAiService.buildGradingPrompt(question, userAnswer,
-                        question.getPaperScore().intValue());
-                    String result = kimiAiService.callKimiAI(prompt);
-                    JSONObject jsonObject = JSONObject.parseObject(result);
-                    //ai给的分数
-                    Integer aiScore = jsonObject.getInteger("score");
-                    if(aiScore >= question.getPaperScore().intValue()){
-                        //题完全正确
-                        answerRecord.setScore(question.getPaperScore().intValue());
-                        answerRecord.setIsCorrect(1);//完全正确
-                        answerRecord.setAiCorrection(jsonObject.getString("feedback"));
-
-                    }else if(aiScore <= 0){
-                        //证明完全错误
-                        answerRecord.setIsCorrect(0);
-                        answerRecord.setScore(0);
-                        answerRecord.setAiCorrection(jsonObject.getString("feedback"));
-
-                    }else{
-                        //部分正确
-                        answerRecord.setIsCorrect(2);
-                        answerRecord.setScore(aiScore);
-                        answerRecord.setAiCorrection(jsonObject.getString("feedback"));
-
-                    }
+            ObjectiveGradingUtils.grade(answerRecords.get(i), question);
+        }
+        //等待简答题全部判完（单题失败已经在内部处理为0分）
+        aiGrading.join();
 
-                }
-            }catch (Exception e){
-                //判断题目错了 给0分
-                answerRecord.setScore(0);
-                answerRecord.setIsCorrect(0);
-                answerRecord.setAiCorrection("判断过程中报错，直接0分");
+        //6.2 答题记录本身就是试卷中的题目顺序，判完之后按顺序进行正确数量和题目分数的累加
+        for (AnswerRecord answerRecord : answerRecords) {
+            // 题目被删除的答题记录没有判分
+            if (answerRecord.getScore() == null) {
+                continue;
             }
-
-            //进行题目数量的累加和得分累加
             totalScore += answerRecord.getScore();
             if (answerRecord.getIsCorrect() == 1){
                 correctCount++;
             }
         }
         
-        //7.修改每一条学生答题记录（分数，是否正确，简答题的ai评价）
-        answerRecordService.updateBatchById(answerRecords);//答题记录的批量更新
-
-        //8.调用kimi的模型，生成对应的ai调用设置给考试记录对象
+        //7.调用kimi的模型，生成对应的ai调用设置给考试记录对象（耗时的ai调用放在事务外面，不占用数据库连接）
 //        String summary = "暂时不调用ai进行考试记录评价";
         String summaryPrompt = kimiAiService.buildSummaryPrompt(totalScore, paper.getTotalScore().intValue(),
             paper.getQuestionCount(), correctCount);
-        String summary = null;
-        try {
-            summary = kimiAiService.callKimiAI(summaryPrompt);
-        } catch (InterruptedException e) {
-            throw new RuntimeException("调用失败"+e);
-        }
-
-        //9.更新考试记录对象即可
+        // 总评只是展示用的评价，调用失败不能让已经判完的整份答卷重新判卷，使用固定的总评
+        String summary = kimiAiService.callKimiAIReactive(summaryPrompt)
+            .onErrorResume(e -> {
+                log.error("id={}的考试记录ai生成总评失败，使用默认总评！原因：{}", examRecordId, e.getMessage());
+                return Mono.empty();
+            })
+            .defaultIfEmpty("本次考试得分%s/%s分，答对%s题。ai总评生成失败，请参考各题的批改意见查漏补缺。"
+                .formatted(totalScore, paper.getTotalScore().intValue(), correctCount))
+            .block();
+
+        //8.一个事务中保存判卷结果：答题记录（一条case更新语句） + 考试记录状态 + 判卷完成事件（排行榜 成绩统计由事件消费者更新）
         examRecord.setScore(totalScore);
         examRecord.setAnswers(summary);
         examRecord.setStatus("已批阅");
-        updateById(examRecord);
+        // 已完成 -> 已批阅 条件更新，同一份答卷被并发判卷时只有先完成的一次写入，后完成的整体放弃
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!markGraded(examRecord)) {
+                log.warn("id={}的考试记录已经被其他判卷任务批阅，放弃本次判卷结果", examRecordId);
+                return;
+            }
+            answerRecordService.customUpdateGradingResults(answerRecords);
+            examOutboxService.append(ExamLifecycleEvent.GRADED, examRecord);
+        });
 
-        //10.返回考试记录对象即可
+        //9.返回考试记录对象即可
         return examRecord;
     }
 
+    /**
+     * 已完成 -> 已批阅 条件更新判卷结果
+     * @return 是否更新成功，考试记录已经不是已完成状态（被其他判卷任务批阅）时返回false
+     */
+    private boolean markGraded(ExamRecord examRecord) {
+        return lambdaUpdate()
+            .set(ExamRecord::getScore, examRecord.getScore())
+            .set(ExamRecord::getAnswers, examRecord.getAnswers())
+            .set(ExamRecord::getStatus, "已批阅")
+            .eq(ExamRecord::getId, examRecord.getId())
+            .eq(ExamRecord::getStatus, "已完成")
+            .update();
+    }
+
 }
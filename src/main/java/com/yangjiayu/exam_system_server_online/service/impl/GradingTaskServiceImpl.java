@@ -0,0 +1,207 @@
+package com.yangjiayu.exam_system_server_online.service.impl;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.yangjiayu.exam_system_server_online.common.CacheConstants;
+import com.yangjiayu.exam_system_server_online.config.properties.GradingProperties;
+import com.yangjiayu.exam_system_server_online.entity.ExamRecord;
+import com.yangjiayu.exam_system_server_online.mapper.ExamRecordMapper;
+import com.yangjiayu.exam_system_server_online.service.GradingTaskService;
+import com.yangjiayu.exam_system_server_online.utils.RedisUtils;
+import com.yangjiayu.exam_system_server_online.vo.GradingStatusVo;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.ObjectUtils;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @Classname GradingTaskServiceImpl
+ * @Description 异步判卷任务队列实现类
+ * 队列结构：
+ *   exam_record:grading:queue       待判卷（list，左进右出）
+ *   exam_record:grading:processing  判卷中（list，RPOPLPUSH原子移入，完成后删除）
+ *   exam_record:grading:status:{id} 任务状态（hash，status attempts message updateTime）
+ * @Date 2025/11/02 10:25
+ * @Created by YangJiaYu
+ */
+@Slf4j
+@Service
+@AllArgsConstructor
+public class GradingTaskServiceImpl implements GradingTaskService {
+
+    public static final String STATUS_PENDING = "PENDING";
+    public static final String STATUS_GRADING = "GRADING";
+    public static final String STATUS_RETRYING = "RETRYING";
+    public static final String STATUS_SUCCESS = "SUCCESS";
+    public static final String STATUS_FAILED = "FAILED";
+
+    /**
+     * 处于这些状态的任务已经在队列中，不需要重复入队
+     */
+    private static final Set<String> QUEUED_STATUS = Set.of(STATUS_PENDING, STATUS_GRADING, STATUS_RETRYING);
+
+    private RedisUtils redisUtils;
+
+    private ExamRecordMapper examRecordMapper;
+
+    private GradingProperties gradingProperties;
+
+    @Override
+    public void submitGradingTask(Integer examRecordId) {
+        //事务中交卷：必须等答题记录真正提交之后再入队，否则判卷线程可能读不到答题记录
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(examRecordId);
+                }
+            });
+            return;
+        }
+        enqueue(examRecordId);
+    }
+
+    private void enqueue(Integer examRecordId) {
+        String status = getStatusField(examRecordId, "status");
+        if (status != null && QUEUED_STATUS.contains(status)) {
+            log.debug("id={}的考试记录已经在判卷队列中，状态为：{}，不重复入队", examRecordId, status);
+            return;
+        }
+        saveStatus(examRecordId, STATUS_PENDING, 0, null);
+        redisUtils.lLeftPush(CacheConstants.GRADING_QUEUE_KEY, examRecordId);
+        log.info("id={}的考试记录进入判卷队列", examRecordId);
+    }
+
+    @Override
+    public Integer pollGradingTask() {
+        Object value = redisUtils.lRightPopAndLeftPush(CacheConstants.GRADING_QUEUE_KEY, CacheConstants.GRADING_PROCESSING_KEY);
+        if (value == null) {
+            return null;
+        }
+        Integer examRecordId = Integer.valueOf(value.toString());
+        saveStatus(examRecordId, STATUS_GRADING, getAttempts(examRecordId), null);
+        return examRecordId;
+    }
+
+    @Override
+    public void heartbeat(Integer examRecordId) {
+        redisUtils.hSet(CacheConstants.GRADING_STATUS_KEY + examRecordId, "updateTime", System.currentTimeMillis());
+    }
+
+    @Override
+    public void completeGradingTask(Integer examRecordId) {
+        redisUtils.lRemove(CacheConstants.GRADING_PROCESSING_KEY, 1, examRecordId);
+        saveStatus(examRecordId, STATUS_SUCCESS, getAttempts(examRecordId) + 1, null);
+    }
+
+    @Override
+    public void failGradingTask(Integer examRecordId, Exception e) {
+        int attempts = getAttempts(examRecordId) + 1;
+        redisUtils.lRemove(CacheConstants.GRADING_PROCESSING_KEY, 1, examRecordId);
+        if (attempts < gradingProperties.getMaxAttempts()) {
+            saveStatus(examRecordId, STATUS_RETRYING, attempts, e.getMessage());
+            redisUtils.lLeftPush(CacheConstants.GRADING_QUEUE_KEY, examRecordId);
+            log.warn("id={}的考试记录第{}次判卷失败，重新进入判卷队列！原因：{}", examRecordId, attempts, e.getMessage());
+            return;
+        }
+        saveStatus(examRecordId, STATUS_FAILED, attempts, e.getMessage());
+        log.error("id={}的考试记录已经判卷{}次仍然失败，停止重试！原因：{}", examRecordId, attempts, e.getMessage());
+    }
+
+    @Override
+    public GradingStatusVo getGradingStatus(Integer examRecordId) {
+        ExamRecord examRecord = examRecordMapper.selectById(examRecordId);
+        if (examRecord == null) {
+            throw new RuntimeException("id为%s的考试记录不存在！".formatted(examRecordId));
+        }
+        Map<Object, Object> statusMap = redisUtils.hGetAll(CacheConstants.GRADING_STATUS_KEY + examRecordId);
+
+        GradingStatusVo gradingStatusVo = new GradingStatusVo();
+        gradingStatusVo.setExamRecordId(examRecordId);
+        gradingStatusVo.setExamStatus(examRecord.getStatus());
+        gradingStatusVo.setScore(examRecord.getScore());
+        if (ObjectUtils.isEmpty(statusMap)) {
+            //没有任务状态：已批阅的老数据直接认为成功，其余就是还没有进入队列
+            gradingStatusVo.setStatus("已批阅".equals(examRecord.getStatus()) ? STATUS_SUCCESS : STATUS_PENDING);
+            gradingStatusVo.setAttempts(0);
+            return gradingStatusVo;
+        }
+        gradingStatusVo.setStatus((String) statusMap.get("status"));
+        gradingStatusVo.setAttempts(toInt(statusMap.get("attempts")));
+        gradingStatusVo.setMessage((String) statusMap.get("message"));
+        return gradingStatusVo;
+    }
+
+    @Override
+    public void recoverStaleTasks() {
+        List<Object> processing = redisUtils.lRange(CacheConstants.GRADING_PROCESSING_KEY, 0, -1);
+        if (ObjectUtils.isEmpty(processing)) {
+            return;
+        }
+        long deadline = System.currentTimeMillis() - gradingProperties.getTaskTimeoutSeconds() * 1000;
+        for (Object value : processing) {
+            Integer examRecordId = Integer.valueOf(value.toString());
+            //判卷线程每隔一段时间刷新更新时间（心跳），只有节点宕机 线程卡死的任务才会超时
+            Object updateTime = redisUtils.hGet(CacheConstants.GRADING_STATUS_KEY + examRecordId, "updateTime");
+            if (updateTime != null && Long.parseLong(updateTime.toString()) > deadline) {
+                continue;
+            }
+            //只有成功从处理中队列删除的节点才能重新入队，避免多个节点重复找回
+            Long removed = redisUtils.lRemove(CacheConstants.GRADING_PROCESSING_KEY, 1, value);
+            if (removed != null && removed > 0) {
+                saveStatus(examRecordId, STATUS_RETRYING, getAttempts(examRecordId), "判卷超时，重新入队");
+                redisUtils.lLeftPush(CacheConstants.GRADING_QUEUE_KEY, examRecordId);
+                log.warn("id={}的考试记录判卷超时，重新放回判卷队列", examRecordId);
+            }
+        }
+    }
+
+    @Override
+    public void requeueStaleRecords() {
+        LambdaQueryWrapper<ExamRecord> queryWrapper = new LambdaQueryWrapper<>();
+        queryWrapper.select(ExamRecord::getId);
+        queryWrapper.eq(ExamRecord::getStatus, "已完成");
+        queryWrapper.lt(ExamRecord::getEndTime, LocalDateTime.now().minusMinutes(gradingProperties.getStaleMinutes()));
+        queryWrapper.last("limit 100");
+        List<ExamRecord> staleRecords = examRecordMapper.selectList(queryWrapper);
+        for (ExamRecord staleRecord : staleRecords) {
+            Integer examRecordId = staleRecord.getId().intValue();
+            //有状态说明任务还在队列里或者已经失败（失败需要人工重新判卷），只处理redis中丢失的任务
+            if (!redisUtils.hasKey(CacheConstants.GRADING_STATUS_KEY + examRecordId)) {
+                log.warn("id={}的考试记录长时间未批阅且没有判卷任务，重新入队", examRecordId);
+                enqueue(examRecordId);
+            }
+        }
+    }
+
+    private void saveStatus(Integer examRecordId, String status, int attempts, String message) {
+        String key = CacheConstants.GRADING_STATUS_KEY + examRecordId;
+        Map<String, Object> statusMap = new HashMap<>();
+        statusMap.put("status", status);
+        statusMap.put("attempts", attempts);
+        statusMap.put("message", message == null ? "" : message);
+        statusMap.put("updateTime", System.currentTimeMillis());
+        redisUtils.hSetAll(key, statusMap);
+        redisUtils.expire(key, CacheConstants.GRADING_STATUS_EXPIRE_SECONDS);
+    }
+
+    private String getStatusField(Integer examRecordId, String field) {
+        Object value = redisUtils.hGet(CacheConstants.GRADING_STATUS_KEY + examRecordId, field);
+        return value == null ? null : value.toString();
+    }
+
+    private int getAttempts(Integer examRecordId) {
+        return toInt(redisUtils.hGet(CacheConstants.GRADING_STATUS_KEY + examRecordId, "attempts"));
+    }
+
+    private int toInt(Object value) {
+        return value == null ? 0 : Integer.parseInt(value.toString());
+    }
+}
@@ -5,15 +5,30 @@ import com.alibaba.fastjson.JSONObject;
 import com.yangjiayu.exam_system_server_online.config.properties.KimiProperties;
 import com.yangjiayu.exam_system_server_online.entity.Question;
 import com.yangjiayu.exam_system_server_online.service.KimiAiService;
+import com.yangjiayu.exam_system_server_online.service.KimiRateLimitService;
+import com.yangjiayu.exam_system_server_online.utils.JsonArrayStreamParser;
+import com.yangjiayu.exam_system_server_online.utils.TextSimilarityUtils;
 import com.yangjiayu.exam_system_server_online.vo.AiGenerateRequestVo;
+import com.yangjiayu.exam_system_server_online.vo.ChatMessage;
+import com.yangjiayu.exam_system_server_online.vo.ChatRequest;
 import com.yangjiayu.exam_system_server_online.vo.QuestionImportVo;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
 import org.springframework.util.ObjectUtils;
 import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.time.Duration;
 import java.util.*;
+import java.util.function.Predicate;
 
 /**
  * Kimi AI生成服务实现类
@@ -25,6 +40,7 @@ public class KimiAiServiceImpl implements KimiAiService {
 
     private final WebClient webClient;
     private final KimiProperties kimiProperties;
+    private final KimiRateLimitService kimiRateLimitService;
 
 
     /**
@@ -130,124 +146,305 @@ public class KimiAiServiceImpl implements KimiAiService {
         return prompt.toString();
     }
 
-    // 进行kimi调用的时候，失败了有3次机会，三次机会都失败了就彻底失败
+    // 进行kimi调用的时候，失败了会按指数退避重试，重试次数用完就彻底失败
     @Override
     public String callKimiAI(String prompt) throws InterruptedException {
-        // 1.构建重试代码结构
-        int maxTry = 3;//最多三次
-
-        for(int i = 1; i <= maxTry; i++) {
-
-            try{
-               //2.webClient进行kimi调用
-                Map<String,Object> requestBody = new HashMap<>();
-                requestBody.put("model",kimiProperties.getModel());
-                requestBody.put("temperature",kimiProperties.getTemperature());
-                requestBody.put("max_tokens",4096);//设置相应数据tokens最大值
+        //同步调用方（导入 判卷线程）直接等待响应式调用的结果
+        return callKimiAIReactive(prompt).block();
+    }
 
-                List<Map<String,Object>> messages = new ArrayList<>();
+    @Override
+    public Mono<String> callKimiAIReactive(String prompt) {
+        //1.构建请求体
+        ChatRequest chatRequest = buildChatRequest(prompt, false);
+
+        //2.先拿到限流许可（排队等待），再利用webClient发起网络请求，请求结束归还许可
+        //defer保证每次重试都重新排队、重新发送请求，429之后的重试也受限流控制
+        int estimatedTokens = kimiRateLimitService.estimateTokens(prompt);
+        return Mono.defer(() -> Mono.usingWhen(
+                kimiRateLimitService.acquire(estimatedTokens),
+                permit -> webClient.post() //确定网络请求方式
+                    .bodyValue(chatRequest) //请求体的内容 会转化为json
+                    .retrieve()//请求准备好了可以发送了！
+                    .bodyToMono(String.class),//返回结果的类型为String
+                kimiRateLimitService::release))
+            //3.结果进行解析和处理（成功|失败）
+            .map(this::parseContent)
+            //4.失败重试：1s 2s 4s...指数退避，参数错误 key错误这类请求不用重试
+            .retryWhen(Retry.backoff(kimiProperties.getMaxRetries(), Duration.ofMillis(kimiProperties.getRetryBackoff()))
+                .maxBackoff(Duration.ofMillis(kimiProperties.getRetryMaxBackoff()))
+                .filter(this::isRetryable)
+                .doBeforeRetry(signal -> log.error("第{}次尝试调用kimi模型失败！失败的错误信息为：{}",
+                    signal.totalRetries() + 1, signal.failure().getMessage()))
+                .onRetryExhaustedThrow((spec, signal) -> new RuntimeException(
+                    "已经重试了%s次调用kimi的模型，但是依然没有正确的返回结果！".formatted(signal.totalRetries()),
+                    signal.failure())));
+    }
 
-                Map<String,Object>userMessage = new HashMap<>();
-                userMessage.put("role","user");
-                userMessage.put("content",prompt);
-                messages.add(userMessage);
+    @Override
+    public Flux<String> callKimiAIStream(String prompt) {
+        ChatRequest chatRequest = buildChatRequest(prompt, true);
+        int estimatedTokens = kimiRateLimitService.estimateTokens(prompt);
+        //流式返回：每一行 data: {...choices[0].delta.content...}，最后一行 data: [DONE]
+        //已经返回了部分内容再重试会重复，所以流式调用不重试
+        return Flux.usingWhen(
+            kimiRateLimitService.acquire(estimatedTokens),
+            permit -> webClient.post()
+                .accept(MediaType.TEXT_EVENT_STREAM)
+                .bodyValue(chatRequest)
+                .retrieve()
+                .bodyToFlux(new ParameterizedTypeReference<ServerSentEvent<String>>() {}),
+            kimiRateLimitService::release)
+            .mapNotNull(ServerSentEvent::data)
+            .takeWhile(data -> !"[DONE]".equals(data.trim()))
+            .map(this::parseStreamContent)
+            .filter(content -> !content.isEmpty());
+    }
 
-                requestBody.put("messages",messages);
+    /**
+     * 构建请求体
+     */
+    private ChatRequest buildChatRequest(String prompt, boolean stream) {
+        return ChatRequest.builder()
+            .model(kimiProperties.getModel())
+            .temperature(kimiProperties.getTemperature())
+            .maxTokens(kimiProperties.getMaxTokens())//设置相应数据tokens最大值
+            .stream(stream)
+            .messages(List.of(new ChatMessage("user", prompt)))
+            .build();
+    }
 
+    /**
+     * 解析流式返回的一行数据，取出本次新增的内容
+     */
+    private String parseStreamContent(String data) {
+        JSONObject resultObject = JSONObject.parseObject(data);
+        if (resultObject.containsKey("error")) {
+            throw new RuntimeException(resultObject.getJSONObject("error").getString("message"));
+        }
+        JSONArray choices = resultObject.getJSONArray("choices");
+        if (ObjectUtils.isEmpty(choices)) {
+            return "";
+        }
+        JSONObject delta = choices.getJSONObject(0).getJSONObject("delta");
+        String content = delta == null ? null : delta.getString("content");
+        return content == null ? "" : content;
+    }
 
-                //2.利用webClient发起网络请求并且获取结果即可
-                String response = webClient.post() //确定网络请求方式
-                    .bodyValue(requestBody) //请求体的内容 会转化为json
-                    .retrieve()//请求准备好了可以发送了！
-                    .bodyToMono(String.class)//返回结果的类型为String
-//            .subscribe(p-> System.out.println()) //异步 继续向下执行
-                    .block();//同步获取结果
-
-               //3.结果进行解析和处理（成功|失败）
-                //成功还是失败，返回的都是jsonObject对象！
-                //1.转成JSONObject 2.判断里面有没有error的key 3.有=》失败 4.没有 =》成功
-                //jackson => objectMapper
-                //fastJson => json工具包 => jsonObject => 字符串
-                JSONObject resultObject = JSONObject.parseObject(response);
-
-                if(resultObject.containsKey("error")){
-                    //证明这一次请求就失败了
-                    // 抛出异常=》catch=>统一进行失败次数检查和是否尝试的处理
-                    String errorMessage = resultObject.getJSONObject("error").getString("message");
-                    throw new RuntimeException(errorMessage);
-                }
-                //失败【限速 参数 key没有钱了】
-                /*
-                {
-                    "error": {
-                        "type": "content_filter",
-                        "message": "The request was rejected because it was considered high risk"
-                    }
-                }
-                 */
+    /**
+     * 解析kimi的返回结果
+     * 成功还是失败，返回的都是jsonObject对象！
+     * 1.转成JSONObject 2.判断里面有没有error的key 3.有=》失败 4.没有 =》成功
+     */
+    private String parseContent(String response) {
+        JSONObject resultObject = JSONObject.parseObject(response);
+
+        if(resultObject.containsKey("error")){
+            //证明这一次请求就失败了
+            // 抛出异常=》retryWhen统一进行失败次数检查和是否尝试的处理
+            String errorMessage = resultObject.getJSONObject("error").getString("message");
+            throw new RuntimeException(errorMessage);
+        }
+        //失败【限速 参数 key没有钱了】
+        /*
+        {
+            "error": {
+                "type": "content_filter",
+                "message": "The request was rejected because it was considered high risk"
+            }
+        }
+         */
 
-                //成功
-                /*
+        //成功
+        /*
+        {
+            "id": "cmpl-04ea926191a14749b7f2c7a48a68abc6",
+            "object": "chat.completion",
+            "created": 1698999496,
+            "model": "kimi-k2-0905-preview",
+            "choices": [
                 {
-                    "id": "cmpl-04ea926191a14749b7f2c7a48a68abc6",
-                    "object": "chat.completion",
-                    "created": 1698999496,
-                    "model": "kimi-k2-0905-preview",
-                    "choices": [
-                        {
-                            "index": 0,
-                            "message": {
-                                "role": "assistant",
-                                "content": " 你好，李雷！1+1等于2。如果你有其他问题，请随时提问！"
-                            },
-                            "finish_reason": "stop"
-                        }
-                    ],
-                    "usage": {
-                        "prompt_tokens": 19,
-                        "completion_tokens": 21,
-                        "total_tokens": 40
-                    }
+                    "index": 0,
+                    "message": {
+                        "role": "assistant",
+                        "content": " 你好，李雷！1+1等于2。如果你有其他问题，请随时提问！"
+                    },
+                    "finish_reason": "stop"
                 }
-                 */
-                String content = resultObject.getJSONArray("choices")
-                    .getJSONObject(0)
-                    .getJSONObject("message")
-                    .getString("content");
-                if(ObjectUtils.isEmpty(content)){
-                    throw new RuntimeException("返回结果结构正确，但是返回数据为空！再次尝试！");
-                }
-                return content;
-            }catch (Exception e){
-                // 失败
-                log.error("第{}次尝试调用kimi模型失败！失败的错误信息为：{}",i,e.getMessage());
-                //0.i==maxTry 最后一次重试机会
-                if(i==maxTry){
-                    throw new RuntimeException("已经重试了%s次调用kimi的模型，但是依然没有正确的返回结果！".formatted(maxTry));
-                }
-                //1.第几次重试失败了
-                //2.建议线程休眠1s(限速)
-                Thread.sleep(1000);
+            ],
+            "usage": {
+                "prompt_tokens": 19,
+                "completion_tokens": 21,
+                "total_tokens": 40
             }
         }
-        // 循环中 没有正确的结果返回 都是失败！
-        throw new RuntimeException("已经重试了%s次调用kimi的模型，但是依然没有正确的返回结果！".formatted(maxTry));
+         */
+        String content = resultObject.getJSONArray("choices")
+            .getJSONObject(0)
+            .getJSONObject("message")
+            .getString("content");
+        if(ObjectUtils.isEmpty(content)){
+            throw new RuntimeException("返回结果结构正确，但是返回数据为空！再次尝试！");
+        }
+        return content;
+    }
 
-        //2.webClient进行kimi调用
+    /**
+     * 是否需要重试：限速(429)和服务端错误(5xx)重试，其余4xx（参数 key错误）重试也没用
+     * 连接失败 超时 返回结构错误都重试；限流器排队超时不重试（重试只会再排一次队，继续加重拥堵）
+     */
+    private boolean isRetryable(Throwable e) {
+        if (e instanceof KimiRateLimitService.RateLimitTimeoutException) {
+            return false;
+        }
+        if (e instanceof WebClientResponseException responseException) {
+            HttpStatusCode statusCode = responseException.getStatusCode();
+            return statusCode.value() == 429 || statusCode.is5xxServerError();
+        }
+        return true;
     }
 
 
     @Override
     public List<QuestionImportVo> aiGenerateQuestions(AiGenerateRequestVo request) throws InterruptedException {
+        return aiGenerateQuestionsReactive(request).block();
+    }
+
+    @Override
+    public Mono<List<QuestionImportVo>> aiGenerateQuestionsReactive(AiGenerateRequestVo request) {
+        //题目数量多的时候拆分成多个请求并发生成，避免一次生成太多被max_tokens截断
+        List<AiGenerateRequestVo> chunks = splitGenerateRequest(request);
+        if (chunks.size() == 1) {
+            return generateQuestionsChunk(request);
+        }
+        log.info("ai生成{}道题目，拆分成{}个请求并发生成", request.getCount(), chunks.size());
+        return Flux.fromIterable(chunks)
+            //某一批失败不影响其他批次，保持批次顺序合并
+            .flatMapSequential(chunk -> generateQuestionsChunk(chunk)
+                .onErrorResume(e -> {
+                    log.warn("ai生成题目的其中一批（{} {}道）失败！原因：{}", chunk.getTypes(), chunk.getCount(), e.getMessage());
+                    return Mono.just(new ArrayList<>());
+                }), kimiProperties.getGenerateConcurrency())
+            .concatMapIterable(questions -> questions)
+            .filter(newTitleFilter())
+            .collectList()
+            .map(questions -> {
+                if (questions.isEmpty()) {
+                    throw new RuntimeException("ai生成题目的%s个请求全部失败！".formatted(chunks.size()));
+                }
+                return questions;
+            });
+    }
+
+    /**
+     * 一个请求生成一批题目
+     */
+    private Mono<List<QuestionImportVo>> generateQuestionsChunk(AiGenerateRequestVo request) {
 
         //1.生成对应的提示词
         String prompt = buildPrompt(request);
         log.debug("ai出题额条件是：{}，生成对应的提示词为：{}",request,prompt);
 
-        //2.调用ai模型获取结果
-        String response = callKimiAI(prompt);
+        //2.调用ai模型获取结果 3.继续结果的解析即可
+        return callKimiAIReactive(prompt)
+            .map(response -> parseGeneratedQuestions(response, request));
+    }
 
-        //3.继续结果的解析即可
+    @Override
+    public Flux<QuestionImportVo> aiGenerateQuestionsStream(AiGenerateRequestVo request) {
+        List<AiGenerateRequestVo> chunks = splitGenerateRequest(request);
+        //多个批次同时流式生成，哪一批的题目先完整就先推送哪一道
+        return Flux.defer(() -> Flux.fromIterable(chunks)
+            .flatMap(chunk -> streamQuestionsChunk(chunk)
+                .onErrorResume(e -> {
+                    if (chunks.size() == 1) {
+                        return Flux.error(e);
+                    }
+                    log.warn("ai流式生成题目的其中一批（{} {}道）失败！原因：{}", chunk.getTypes(), chunk.getCount(), e.getMessage());
+                    return Flux.empty();
+                }), kimiProperties.getGenerateConcurrency())
+            .filter(newTitleFilter()));
+    }
+
+    /**
+     * 一个请求流式生成一批题目
+     */
+    private Flux<QuestionImportVo> streamQuestionsChunk(AiGenerateRequestVo request) {
+        String prompt = buildPrompt(request);
+        log.debug("ai流式出题的条件是：{}，生成对应的提示词为：{}",request,prompt);
+        //每次订阅使用新的解析器，收到一段内容就解析一次，题目一完整就返回
+        return Flux.defer(() -> {
+            JsonArrayStreamParser parser = new JsonArrayStreamParser();
+            return callKimiAIStream(prompt)
+                .concatMapIterable(parser::feed)
+                .map(itemJson -> toQuestionImportVo(JSONObject.parseObject(itemJson), request));
+        });
+    }
+
+    /**
+     * 拆分出题请求：先按题型平均分配题目数量，每种题型再按每批最多generateChunkSize道拆分
+     * 每一批保留原来的主题 难度 分类 额外要求
+     */
+    private List<AiGenerateRequestVo> splitGenerateRequest(AiGenerateRequestVo request) {
+        int chunkSize = kimiProperties.getGenerateChunkSize();
+        if (request.getCount() <= chunkSize) {
+            return List.of(request);
+        }
+        //没有指定题型，只按数量拆分
+        List<String> types = ObjectUtils.isEmpty(request.getTypes()) ? Collections.singletonList(null)
+            : Arrays.stream(request.getTypes().split(",")).map(String::trim).filter(type -> !type.isEmpty()).toList();
+
+        List<AiGenerateRequestVo> chunks = new ArrayList<>();
+        for (int i = 0; i < types.size(); i++) {
+            //余数分给前面的题型
+            int typeCount = request.getCount() / types.size() + (i < request.getCount() % types.size() ? 1 : 0);
+            for (int generated = 0; generated < typeCount; generated += chunkSize) {
+                AiGenerateRequestVo chunk = new AiGenerateRequestVo();
+                chunk.setTopic(request.getTopic());
+                chunk.setCount(Math.min(chunkSize, typeCount - generated));
+                chunk.setTypes(types.get(i));
+                chunk.setDifficulty(request.getDifficulty());
+                chunk.setCategoryId(request.getCategoryId());
+                chunk.setIncludeMultiple(request.getIncludeMultiple());
+                chunk.setRequirements(request.getRequirements());
+                chunks.add(chunk);
+            }
+        }
+        //多个批次之间互相看不到对方的题目，提示每一批侧重不同的知识点，减少重复
+        for (int i = 0; i < chunks.size() && chunks.size() > 1; i++) {
+            AiGenerateRequestVo chunk = chunks.get(i);
+            String batchHint = "本次是第%s批（共%s批），请尽量覆盖该主题下不同的知识点，避免出常见的重复题目".formatted(i + 1, chunks.size());
+            chunk.setRequirements(ObjectUtils.isEmpty(chunk.getRequirements()) ? batchHint
+                : chunk.getRequirements() + "；" + batchHint);
+        }
+        return chunks;
+    }
+
+    /**
+     * 标题去重过滤器：和已经保留的题目标题相似度（字符二元组jaccard）达到阈值的题目丢弃
+     * 过滤器有状态，每次生成使用一个新的
+     */
+    private Predicate<QuestionImportVo> newTitleFilter() {
+        List<Set<String>> keptTitles = new ArrayList<>();
+        return question -> {
+            Set<String> bigrams = TextSimilarityUtils.bigrams(question.getTitle());
+            synchronized (keptTitles) {
+                for (Set<String> kept : keptTitles) {
+                    if (TextSimilarityUtils.jaccard(kept, bigrams) >= kimiProperties.getTitleSimilarityThreshold()) {
+                        log.debug("ai生成的题目：{} 与已生成的题目重复，丢弃", question.getTitle());
+                        return false;
+                    }
+                }
+                keptTitles.add(bigrams);
+                return true;
+            }
+        };
+    }
+
+    /**
+     * 解析ai出题的结果
+     */
+    private List<QuestionImportVo> parseGeneratedQuestions(String response, AiGenerateRequestVo request) {
         /*
         ```json
             {
@@ -276,39 +473,45 @@ public class KimiAiServiceImpl implements KimiAiService {
             List<QuestionImportVo> questionImportVoList = new ArrayList<>();
             for (int i = 0; i < questions.size(); i++) {
                 //循环解析内容{}=》QuestionImportVo
-                JSONObject itemObject = questions.getJSONObject(i);
-                QuestionImportVo questionImportVo = new QuestionImportVo();
-                questionImportVo.setTitle(itemObject.getString("title"));
-                questionImportVo.setType(itemObject.getString("type"));
-                questionImportVo.setMulti(itemObject.getBoolean("multi"));
-                questionImportVo.setCategoryId(request.getCategoryId());
-                questionImportVo.setDifficulty(itemObject.getString("difficulty"));
-                questionImportVo.setScore(itemObject.getInteger("score"));
-                questionImportVo.setAnalysis(itemObject.getString("analysis"));
-                questionImportVo.setAnswer(itemObject.getString("answer"));
-                // 选择题 选项
-                if("CHOICE".equals(questionImportVo.getType())){
-                    //获取选项的JSONArray
-                    JSONArray choices = itemObject.getJSONArray("choices");
-                    List<QuestionImportVo.ChoiceImportDto>choiceImportDtoList = new ArrayList<>();
-                    for (int j = 0; j < choices.size(); j++) {
-                        JSONObject choiceObject = choices.getJSONObject(j);
-                        QuestionImportVo.ChoiceImportDto choiceImportDto = new QuestionImportVo.ChoiceImportDto();
-                        choiceImportDto.setContent(choiceObject.getString("content"));
-                        choiceImportDto.setIsCorrect(choiceObject.getBoolean("isCorrect"));  // 从 choiceObject 获取，不是 itemObject
-                        choiceImportDto.setSort(choiceObject.getInteger("sort"));
-                        choiceImportDtoList.add(choiceImportDto);  // 添加到列表中！
-                    }
-                    questionImportVo.setChoices(choiceImportDtoList);
-
-                }
-                questionImportVoList.add(questionImportVo);
+                questionImportVoList.add(toQuestionImportVo(questions.getJSONObject(i), request));
             }
             return questionImportVoList;
         }
         throw new RuntimeException("ai生成题目的结果结构错误，无法进行解析！具体数据为：%s".formatted(response));
     }
 
+    /**
+     * 单道题目的json转成QuestionImportVo
+     */
+    private QuestionImportVo toQuestionImportVo(JSONObject itemObject, AiGenerateRequestVo request) {
+        QuestionImportVo questionImportVo = new QuestionImportVo();
+        questionImportVo.setTitle(itemObject.getString("title"));
+        questionImportVo.setType(itemObject.getString("type"));
+        questionImportVo.setMulti(itemObject.getBoolean("multi"));
+        questionImportVo.setCategoryId(request.getCategoryId());
+        questionImportVo.setDifficulty(itemObject.getString("difficulty"));
+        questionImportVo.setScore(itemObject.getInteger("score"));
+        questionImportVo.setAnalysis(itemObject.getString("analysis"));
+        questionImportVo.setAnswer(itemObject.getString("answer"));
+        // 选择题 选项
+        if("CHOICE".equals(questionImportVo.getType())){
+            //获取选项的JSONArray
+            JSONArray choices = itemObject.getJSONArray("choices");
+            List<QuestionImportVo.ChoiceImportDto>choiceImportDtoList = new ArrayList<>();
+            for (int j = 0; j < choices.size(); j++) {
+                JSONObject choiceObject = choices.getJSONObject(j);
+                QuestionImportVo.ChoiceImportDto choiceImportDto = new QuestionImportVo.ChoiceImportDto();
+                choiceImportDto.setContent(choiceObject.getString("content"));
+                choiceImportDto.setIsCorrect(choiceObject.getBoolean("isCorrect"));  // 从 choiceObject 获取，不是 itemObject
+                choiceImportDto.setSort(choiceObject.getInteger("sort"));
+                choiceImportDtoList.add(choiceImportDto);  // 添加到列表中！
+            }
+            questionImportVo.setChoices(choiceImportDtoList);
+
+        }
+        return questionImportVo;
+    }
+
 
 
     /**
@@ -349,6 +552,50 @@ public class KimiAiServiceImpl implements KimiAiService {
         return prompt.toString();
     }
 
+    /**
+     * 构建批量判卷提示词：同一道简答题的多份学生答案放在一个提示词中，返回json数组
+     */
+    @Override
+    public String buildBatchGradingPrompt(Question question, List<String> userAnswers, Integer maxScore) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("你是一名专业的考试阅卷老师，请对同一道题目的多份学生答案分别进行判卷：\n\n");
+
+        prompt.append("【题目信息】\n");
+        prompt.append("题型：").append(getQuestionTypeText(question.getType())).append("\n");
+        prompt.append("题目：").append(question.getTitle()).append("\n");
+        prompt.append("标准答案：").append(question.getAnswer().getAnswer()).append("\n");
+        prompt.append("满分：").append(maxScore).append("分\n\n");
+
+        prompt.append("【学生答案】\n");
+        for (int i = 0; i < userAnswers.size(); i++) {
+            String userAnswer = userAnswers.get(i) == null ? "" : userAnswers.get(i).trim();
+            prompt.append("答案").append(i + 1).append("：")
+                .append(userAnswer.isEmpty() ? "（未作答）" : userAnswer).append("\n");
+        }
+        prompt.append("\n");
+
+        prompt.append("【判卷要求】\n");
+        prompt.append("- 每份答案独立评分，互相之间不要比较\n");
+        prompt.append("- 主观题：根据答案的准确性、完整性、逻辑性进行评分\n");
+        prompt.append("- 答案要点正确且完整：80-100%分数\n");
+        prompt.append("- 答案基本正确但不够完整：60-80%分数\n");
+        prompt.append("- 答案部分正确：30-60%分数\n");
+        prompt.append("- 答案完全错误或未作答：0分\n");
+
+        prompt.append("\n请按以下JSON数组格式返回判卷结果，共").append(userAnswers.size())
+            .append("个元素，index与答案编号一一对应，不要包含任何其他文字：\n");
+        prompt.append("[\n");
+        prompt.append("  {\n");
+        prompt.append("    \"index\": 答案编号(整数),\n");
+        prompt.append("    \"score\": 实际得分(整数),\n");
+        prompt.append("    \"feedback\": \"具体的评价反馈(50字以内)\",\n");
+        prompt.append("    \"reason\": \"扣分原因或得分依据(30字以内)\"\n");
+        prompt.append("  }\n");
+        prompt.append("]");
+
+        return prompt.toString();
+    }
+
     /**
      * 获取题目类型文本
      */
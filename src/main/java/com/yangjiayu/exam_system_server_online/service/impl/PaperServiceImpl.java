@@ -12,6 +12,7 @@ import com.yangjiayu.exam_system_server_online.mapper.ExamRecordMapper;
 import com.yangjiayu.exam_system_server_online.mapper.PaperMapper;
 import com.yangjiayu.exam_system_server_online.mapper.QuestionMapper;
 import com.yangjiayu.exam_system_server_online.service.PaperQuestionService;
+import com.yangjiayu.exam_system_server_online.service.PaperSnapshotService;
 import com.yangjiayu.exam_system_server_online.vo.AiPaperVo;
 import com.yangjiayu.exam_system_server_online.vo.PaperVo;
 import com.yangjiayu.exam_system_server_online.vo.RuleVo;
@@ -51,54 +52,21 @@ public class PaperServiceImpl extends ServiceImpl<PaperMapper, Paper> implements
 
     private PaperMapper paperMapper;
 
+    private PaperSnapshotService paperSnapshotService;
+
     /**
      * 根据试卷id试卷详情
      * 试卷对象
      * 题目集合
      * 注意： 题目的选项sort正序
      * 注意： 所有题目根据类型排序
+     * 已发布的试卷直接使用缓存的试卷快照（只读），不再查询数据库
      * @param id 试卷id
      * @return
      */
-    @Transactional
     @Override
     public Paper customPaperDetailById(Long id) {
-        //1. 单表java代码进行paper查询
-        Paper paper = getById(id);
-        //2. 校验paper == null -> 抛异常
-        if (paper == null){
-            throw new RuntimeException("指定id:%s试卷已经被删除，无法查看详情！".formatted(id));
-        }
-        //3. 根据paperid查询题目集合（中间，题目，答案，选项）
-        List<Question> questionList = questionMapper.customQueryQuestionListByPaperId(id);
-        //4. 校验题目集合 == null -> 赋空集合！ log->做好记录
-        if (ObjectUtils.isEmpty(questionList)){
-            paper.setQuestions(new ArrayList<Question>());
-            log.warn("试卷中没有题目！可以进行试卷编辑！但是不能用于考试！！,对应试卷id：{}",id);
-            return paper;
-        }
-        log.debug("题目信息排序前：{}",questionList);
-        //对题目进行排序（选择 -> 判断 -> 简答）
-        questionList.sort((o1, o2) -> Integer.compare(typeToInt(o1.getType()),typeToInt(o2.getType())));
-        //注意：type排序，是字符类型 -》 字符 -》 对应 -》 固定的数字 1 2 3
-        log.debug("题目信息排序后：{}",questionList);
-        //进行paper题目集合赋值
-        paper.setQuestions(questionList);
-        return paper;
-    }
-
-    /**
-     * 获取题目类型的排序顺序
-     * @param type 题目类型
-     * @return 排序序号
-     */
-    private int typeToInt(String type) {
-        switch (type) {
-            case "CHOICE": return 1; // 选择题
-            case "JUDGE": return 2;  // 判断题
-            case "TEXT": return 3;   // 简答题
-            default: return 4;       // 其他类型
-        }
+        return paperSnapshotService.getPaperDetail(id);
     }
 
 
@@ -229,6 +197,9 @@ public class PaperServiceImpl extends ServiceImpl<PaperMapper, Paper> implements
 
         //4. 中间表的批量插入
         paperQuestionService.saveBatch(paperQuestionList);
+
+        //5. 清除试卷快照
+        paperSnapshotService.evict(paper.getId());
         return paper;
     }
 
@@ -248,6 +219,13 @@ public class PaperServiceImpl extends ServiceImpl<PaperMapper, Paper> implements
         updateWrapper.set(Paper::getStatus,status);
         updateWrapper.eq(Paper::getId,id);
         update(updateWrapper);
+
+        //3.发布生成试卷快照，其他状态清除快照
+        if ("PUBLISHED".equals(status)){
+            paperSnapshotService.publish(id.longValue());
+        }else {
+            paperSnapshotService.evict(id.longValue());
+        }
     }
 
 
@@ -269,6 +247,8 @@ public class PaperServiceImpl extends ServiceImpl<PaperMapper, Paper> implements
         removeById(Long.valueOf(id));
         //4.删除中间表
         paperQuestionService.remove(new LambdaQueryWrapper<PaperQuestion>().eq(PaperQuestion::getPaperId,id));
+        //5.清除试卷快照
+        paperSnapshotService.evict(id.longValue());
     }
 
 
@@ -3,6 +3,8 @@ package com.yangjiayu.exam_system_server_online.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.baomidou.mybatisplus.extension.service.impl.ServiceImpl;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import com.yangjiayu.exam_system_server_online.common.CacheConstants;
 import com.yangjiayu.exam_system_server_online.entity.*;
 import com.yangjiayu.exam_system_server_online.entity.VO.QuestionQueryVo;
@@ -11,11 +13,17 @@ import com.yangjiayu.exam_system_server_online.mapper.QuestionAnswerMapper;
 import com.yangjiayu.exam_system_server_online.mapper.QuestionChoiceMapper;
 import com.yangjiayu.exam_system_server_online.mapper.QuestionMapper;
 import com.yangjiayu.exam_system_server_online.utils.ExcelUtil;
+import com.yangjiayu.exam_system_server_online.utils.QuestionSearchIndex;
 import com.yangjiayu.exam_system_server_online.utils.RedisUtils;
 import com.yangjiayu.exam_system_server_online.vo.QuestionImportVo;
 import lombok.AllArgsConstructor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import com.yangjiayu.exam_system_server_online.service.GradingCacheService;
+import com.yangjiayu.exam_system_server_online.service.PaperSnapshotService;
+import com.yangjiayu.exam_system_server_online.service.QuestionSearchService;
+import com.yangjiayu.exam_system_server_online.service.QuestionTrendingService;
+import com.yangjiayu.exam_system_server_online.service.QuestionViewCountService;
 import com.yangjiayu.exam_system_server_online.service.QuestionService;
 import org.springframework.beans.BeanUtils;
 import org.springframework.stereotype.Service;
@@ -25,6 +33,7 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.beans.Transient;
 import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -50,6 +59,30 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
 
     private RedisUtils redisUtils;
 
+    private GradingCacheService gradingCacheService;
+
+    private PaperSnapshotService paperSnapshotService;
+
+    private QuestionViewCountService questionViewCountService;
+
+    private QuestionTrendingService questionTrendingService;
+
+    private QuestionSearchService questionSearchService;
+
+    /**
+     * 热门题目最多查询的数量（同时限制本地缓存的条数）
+     */
+    private static final int POPULAR_QUESTIONS_MAX_SIZE = 50;
+
+    /**
+     * 热门题目本地缓存：热门范围:题目数量 -> 组装好的热门题目列表，30秒过期
+     * 访问计数每秒才写入一次redis，热门排行本身就是近似值，短时间的缓存不影响结果
+     */
+    private final Cache<String, List<Question>> popularQuestionsCache = Caffeine.newBuilder()
+        .maximumSize(3L * POPULAR_QUESTIONS_MAX_SIZE)
+        .expireAfterWrite(Duration.ofSeconds(30))
+        .build();
+
     /**
      * 分页查询题目信息：方案2 进行分步查询
      * @param pageBean
@@ -57,7 +90,12 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
      */
     @Override
     public void customPageService(Page<Question> pageBean, QuestionQueryVo questionQueryVo) {
+        if (searchByIndex(pageBean, questionQueryVo)) {
+            return;
+        }
         questionMapper.selectQuestionPage(pageBean,questionQueryVo);
+        // 当前页所有题目的选项一次in查询（原来resultMap分步查询每道题一次查询）
+        fillQuestionChoices(pageBean.getRecords());
     }
 
     /**
@@ -67,6 +105,10 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
      */
     @Override
     public void queryQuestionListByStream(Page<Question> questionPage, QuestionQueryVo questionQueryVo) {
+        //有关键字时先在检索索引中按相关度查询（索引还没构建或者关键字只有1个字符时走下面的like查询）
+        if (searchByIndex(questionPage, questionQueryVo)) {
+            return;
+        }
         //1.题目单表的分页+动态条件查询（mybatisplus）
         LambdaQueryWrapper<Question> queryWrapper = new LambdaQueryWrapper<>();
         // 单个包装类型直接 判断不为null即可
@@ -87,39 +129,86 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
 
     }
 
+    /**
+     * 使用检索索引分页查询：索引得到当前页的题目id（按相关度排序） -> 一次listByIds -> 按相关度顺序排列 -> 选项和答案赋值
+     * @return 是否使用了检索索引
+     */
+    private boolean searchByIndex(Page<Question> questionPage, QuestionQueryVo questionQueryVo) {
+        if (!questionSearchService.supports(questionQueryVo.getKeyword())) {
+            return false;
+        }
+        QuestionSearchIndex.SearchResult searchResult = questionSearchService.search(questionQueryVo,
+            (questionPage.getCurrent() - 1) * questionPage.getSize(), questionPage.getSize());
+        questionPage.setTotal(searchResult.total());
+        List<Question> questions = new ArrayList<>(searchResult.ids().size());
+        if (!searchResult.ids().isEmpty()) {
+            Map<Long, Question> questionMap = listByIds(searchResult.ids()).stream()
+                .collect(Collectors.toMap(Question::getId, question -> question));
+            for (Long id : searchResult.ids()) {
+                // 索引还没有同步到的删除：题目已经不存在直接跳过
+                Question question = questionMap.get(id);
+                if (question != null) {
+                    questions.add(question);
+                }
+            }
+        }
+        fillQuestionChoicesAndAnswer(questions);
+        questionPage.setRecords(questions);
+        return true;
+    }
+
     private void fillQuestionChoicesAndAnswer(List<Question>questionList) {
+        if (ObjectUtils.isEmpty(questionList)) {
+            return;
+        }
         //2.查询题目对应的所有的选项和所有答案（mybatisplus）
         // 我们不循环题目集合 questionPage.getRecords() 我们一次查询所有的答案和选项，进行java代码处理！
         // todo:避免1+n问题
         // 获取所有的题目ID
         List<Long> questionIds = questionList.stream().map(Question::getId).collect(Collectors.toList());
-        // 查询所有选项
-        LambdaQueryWrapper<QuestionChoice> questionChoiceQueryWrapper = new LambdaQueryWrapper<>();
-        questionChoiceQueryWrapper.in(QuestionChoice::getQuestionId,questionIds);
-        List<QuestionChoice> questionChoices = questionChoiceMapper.selectList(questionChoiceQueryWrapper);
         // 查询所有答案
         LambdaQueryWrapper<QuestionAnswer> questionAnswerQueryWrapper = new LambdaQueryWrapper<>();
         questionAnswerQueryWrapper.in(QuestionAnswer::getQuestionId,questionIds);
         List<QuestionAnswer> questionAnswers = questionAnswerMapper.selectList(questionAnswerQueryWrapper);
 
-        //3.题目的选项和答案集合转为map格式（key=>题目id,题目对应的选项集合 | 题目对应的答案对象）
+        //3.题目的答案集合转为map格式（key=>题目id | 题目对应的答案对象）
         Map<Long, QuestionAnswer> questionAnswerMap = questionAnswers.stream().collect(Collectors.toMap(
             // key                                       value
-            QuestionAnswer::getQuestionId, questionAnswer -> questionAnswer
+            QuestionAnswer::getQuestionId, questionAnswer -> questionAnswer, (first, second) -> first
         ));
 
-        Map<Long, List<QuestionChoice>> questionChoiceMap = questionChoices.stream()
-            .collect(Collectors.groupingBy(QuestionChoice::getQuestionId));
+        //4.循环题目列表，进行题目的答案赋值工作 [题目一定有答案]
+        questionList.forEach(question -> question.setAnswer(questionAnswerMap.get(question.getId())));
+
+        //5.选项赋值（一次查询）
+        fillQuestionChoices(questionList);
+    }
 
-        //4.循环题目列表，进行题目的选项和方案赋值工作
+    /**
+     * 一次in查询题目列表中所有选择题的选项，按题目id分组排序后赋值
+     * 不循环题目逐个查询，避免1+n问题
+     */
+    private void fillQuestionChoices(List<Question> questionList) {
+        if (ObjectUtils.isEmpty(questionList)) {
+            return;
+        }
+        // 只有选择题才有选项！选择题 type = CHOICE
+        List<Long> choiceQuestionIds = questionList.stream()
+            .filter(question -> "CHOICE".equals(question.getType()))
+            .map(Question::getId)
+            .collect(Collectors.toList());
+        if (choiceQuestionIds.isEmpty()) {
+            return;
+        }
+        LambdaQueryWrapper<QuestionChoice> questionChoiceQueryWrapper = new LambdaQueryWrapper<>();
+        questionChoiceQueryWrapper.in(QuestionChoice::getQuestionId,choiceQuestionIds);
+        Map<Long, List<QuestionChoice>> questionChoiceMap = questionChoiceMapper.selectList(questionChoiceQueryWrapper).stream()
+            .collect(Collectors.groupingBy(QuestionChoice::getQuestionId));
 
         questionList.forEach(question -> {
-           // 给题目的答案赋值 [题目一定有答案]
-           question.setAnswer(questionAnswerMap.get(question.getId()));
-           // 给题目的选项赋值 [只有选择题才有选项！选择题 type = CHOICE]
             if("CHOICE".equals(question.getType())){
                 // 只要是选项的操作，一定要考虑排序的问题！sort
-                List<QuestionChoice> qc = questionChoiceMap.get(question.getId());
+                List<QuestionChoice> qc = questionChoiceMap.getOrDefault(question.getId(), new ArrayList<>());
                 // 字段进行排序 从小到大 正序 .reversed() 倒序
                 qc.sort(Comparator.comparing(QuestionChoice::getSort));
                 question.setChoices(qc);
@@ -164,27 +253,13 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
             question.setChoices(questionChoices);
         }
 
-        // 预留：进行redis的数据缓存zset
-        new Thread(()->{
-           incrementQuestionScore(question.getId());
-        }).start();
+        // 热门题目访问计数：本地累加，定时批量写入redis的zset
+        questionViewCountService.record(question.getId());
 
         return question;
     }
 
 
-    /**
-     * 方法进行题目加分，在排行榜中 被异步调用
-     * @param questionId
-     */
-    private void incrementQuestionScore(Long questionId){
-        Double score = redisUtils.zIncrementScore(CacheConstants.POPULAR_QUESTIONS_KEY, questionId, 1);
-        log.debug("完成id:{}题目的热榜分数累计，累计后的分数为：{}",questionId,score);
-
-
-    }
-
-
     @Transactional(rollbackFor = Exception.class)
     @Override
     public void saveQuestion(Question question) {
@@ -229,6 +304,9 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
 
         // 4.完成答案数据的插入
         questionAnswerMapper.insert(answer);
+
+        // 5.事务提交之后加入检索索引
+        questionSearchService.index(question);
     }
 
     @Override
@@ -271,6 +349,15 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         }
         // 进行答案对的更新
         questionAnswerMapper.updateById(answer);
+
+        // 标准答案可能变了，清除这道题的判卷结果缓存
+        gradingCacheService.evictQuestion(question.getId());
+        popularQuestionsCache.invalidateAll();
+        questionSearchService.index(question);
+
+        // 清除引用了这道题的试卷快照
+        paperQuestionMapper.selectList(new LambdaQueryWrapper<PaperQuestion>().eq(PaperQuestion::getQuestionId,question.getId()))
+            .forEach(paperQuestion -> paperSnapshotService.evict(paperQuestion.getPaperId().longValue()));
     }
 
 
@@ -293,26 +380,52 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
         questionChoiceMapper.delete(new LambdaQueryWrapper<QuestionChoice>().eq(QuestionChoice::getQuestionId,id));
         questionAnswerMapper.delete(new LambdaQueryWrapper<QuestionAnswer>().eq(QuestionAnswer::getQuestionId,id));
         //4.添加事务注解
+
+        //5.清除这道题的判卷结果缓存和热门题目缓存
+        gradingCacheService.evictQuestion(id);
+        popularQuestionsCache.invalidateAll();
+        questionSearchService.remove(id);
     }
 
     @Override
     public List<Question> FindPopularQuestions(Integer size) {
+        return findTrendingQuestions(QuestionTrendingService.RANGE_ALL, size);
+    }
 
+    /**
+     * 查询热门题目（今日 本周 总榜）
+     * 完整组装好（选项 答案）的热门题目列表在本地缓存一小段时间，首页访问不查询数据库
+     * 缓存未命中时：读取一次redis有序集合取id -> 一次listByIds -> 按热度顺序排列 -> 不足时补充最新题目 -> 一次查询选项 一次查询答案
+     * @param range today / week / all
+     * @param size 题目数量
+     * @return 热门题目列表（只读）
+     */
+    @Override
+    public List<Question> findTrendingQuestions(String range, Integer size) {
+        String rankingKey = questionTrendingService.rankingKey(range);
+        int realSize = Math.min(Math.max(size == null ? CacheConstants.POPULAR_QUESTIONS_COUNT : size, 1), POPULAR_QUESTIONS_MAX_SIZE);
+        return popularQuestionsCache.get(rankingKey + ":" + realSize, key -> loadPopularQuestions(rankingKey, realSize));
+    }
+
+    private List<Question> loadPopularQuestions(String rankingKey, int size) {
         //定义一个集合存储热门题目
-        List<Question>popularQuestions = new ArrayList<>();
+        List<Question> popularQuestions = new ArrayList<>(size);
 
-        //1.查询redis中缓存的题目id!(按照顺序访问倒序查询)
-        //有序 按照题目的访问次数倒序
-        Set<Object> popularIds = redisUtils.zReverseRange(CacheConstants.POPULAR_QUESTIONS_KEY, 0, size - 1);
-        //2.根据查询的id查询对应的热门题目集合
-        if(!ObjectUtils.isEmpty(popularIds)) {
+        //1.查询redis中缓存的题目id!(按照热度倒序)
+        Set<Object> popularIds = Collections.emptySet();
+        try {
+            popularIds = redisUtils.zReverseRange(rankingKey, 0, size - 1);
+        } catch (Exception e) {
+            log.warn("查询热门题目id失败，使用最新题目！原因：{}", e.getMessage());
+        }
+        //2.一次查询热门题目，按照有序集合的顺序排列
+        if (!ObjectUtils.isEmpty(popularIds)) {
             List<Long> longlist = popularIds.stream().map(id -> Long.valueOf(id.toString()))
                 .collect(Collectors.toList());
-            //处理热门题目【可能热门题目对，但是热门题目的顺序会有问题】
-//            List<Question> questionList = listByIds(longlist);
-
+            Map<Long, Question> questionMap = listByIds(longlist).stream()
+                .collect(Collectors.toMap(Question::getId, question -> question));
             for (Long id : longlist) {
-                Question question = getById(id);
+                Question question = questionMap.get(id);
                 // 校验：id有，但是题目已经被删除！redis的数据和数据库数据不同步问题！
                 if (question != null) {
                     popularQuestions.add(question);
@@ -320,24 +433,19 @@ public class QuestionServiceImpl extends ServiceImpl<QuestionMapper, Question> i
             }
         }
 
-        //检查热门题目集合数量是否满足size条
+        //3.热门题目数量不足size条，补充最新的题目（排除已经有的题目）
         int diff = size - popularQuestions.size();
-        // 不满足 我们需要自己补充（提目标查询 -》 查询最新的题目）
-        if(diff > 0){
+        if (diff > 0) {
             LambdaQueryWrapper<Question> queryWrapper = new LambdaQueryWrapper<>();
             queryWrapper.orderByDesc(Question::getCreateTime);//根据题目倒序
-
-            // 已经有的id进行过滤和排除
             List<Long> existQuestionId = popularQuestions.stream().map(Question::getId).collect(Collectors.toList());
-            queryWrapper.notIn(ObjectUtils.isEmpty(existQuestionId),Question::getId, existQuestionId);
-            // 切割指定的diff条
+            queryWrapper.notIn(!ObjectUtils.isEmpty(existQuestionId), Question::getId, existQuestionId);
             queryWrapper.last("limit " + diff);//在我们的sql语句最后加一段sql!
-            List<Question> newQuestions = list(queryWrapper);
-            popularQuestions.addAll(newQuestions);
+            popularQuestions.addAll(list(queryWrapper));
         }
-        //4.给题目进行选项和答案赋值即可
+        //4.给题目进行选项和答案赋值（一次查询选项 一次查询答案）
         fillQuestionChoicesAndAnswer(popularQuestions);
-        return popularQuestions;
+        return Collections.unmodifiableList(popularQuestions);
     }
 
 
@@ -0,0 +1,78 @@
+package com.yangjiayu.exam_system_server_online.task;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.yangjiayu.exam_system_server_online.entity.AnswerRecord;
+import com.yangjiayu.exam_system_server_online.entity.ExamRecord;
+import com.yangjiayu.exam_system_server_online.entity.Paper;
+import com.yangjiayu.exam_system_server_online.mapper.AnswerRecordMapper;
+import com.yangjiayu.exam_system_server_online.mapper.ExamRecordMapper;
+import com.yangjiayu.exam_system_server_online.service.LeaderboardService;
+import com.yangjiayu.exam_system_server_online.service.PaperSnapshotService;
+import com.yangjiayu.exam_system_server_online.service.PaperStatsService;
+import com.yangjiayu.exam_system_server_online.vo.ExamLifecycleEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+/**
+ * @Classname ExamEventConsumer
+ * @Description 考试事件的进程内消费者：判卷完成更新排行榜和成绩统计，删除考试记录时移除排行榜 清除成绩统计
+ * 事件可能重复发布，排行榜覆盖写入 成绩统计按考试记录id去重，重复消费没有影响
+ * 判卷完成事件按考试记录的当前状态处理，事件发布前考试记录已经被删除或者重新开始判卷时直接跳过
+ * @Date 2025/11/18 10:20
+ * @Created by YangJiaYu
+ */
+@Slf4j
+@Component
+public class ExamEventConsumer {
+
+    @Autowired
+    private ExamRecordMapper examRecordMapper;
+
+    @Autowired
+    private AnswerRecordMapper answerRecordMapper;
+
+    @Autowired
+    private PaperSnapshotService paperSnapshotService;
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Autowired
+    private PaperStatsService paperStatsService;
+
+    @EventListener
+    public void onExamEvent(ExamLifecycleEvent event) {
+        switch (event.getType()) {
+            case ExamLifecycleEvent.GRADED -> onGraded(event);
+            case ExamLifecycleEvent.DELETED -> onDeleted(event);
+            default -> log.debug("考试事件：{}，考试记录id={}", event.getType(), event.getExamRecordId());
+        }
+    }
+
+    private void onGraded(ExamLifecycleEvent event) {
+        ExamRecord examRecord = examRecordMapper.selectById(event.getExamRecordId());
+        if (examRecord == null || !"已批阅".equals(examRecord.getStatus())) {
+            return;
+        }
+        examRecord.setAnswerRecords(answerRecordMapper.selectList(
+            new LambdaQueryWrapper<AnswerRecord>().eq(AnswerRecord::getExamRecordId, examRecord.getId())));
+        Paper paper = paperSnapshotService.getPaperSummaries(Set.of(examRecord.getExamId().longValue()))
+            .get(examRecord.getExamId().longValue());
+        if (paper != null) {
+            leaderboardService.update(examRecord, paper);
+        }
+        paperStatsService.record(examRecord);
+    }
+
+    private void onDeleted(ExamLifecycleEvent event) {
+        leaderboardService.remove(event.getExamRecordId().intValue(), event.getPaperId());
+        //已经计入的成绩无法单独扣除，清除统计数据下一次查询重建
+        if ("已批阅".equals(event.getRecordStatus())) {
+            paperStatsService.evict(event.getPaperId());
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.yangjiayu.exam_system_server_online.task;
+
+import com.yangjiayu.exam_system_server_online.config.properties.ExamOutboxProperties;
+import com.yangjiayu.exam_system_server_online.service.ExamOutboxService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * @Classname ExamOutboxRelay
+ * @Description 考试事件中继：定时从发件箱批量发布考试事件给下游消费者（排行榜 成绩统计），每天清理过期的已发布事件
+ * 事件锁定使用 for update skip locked，多个节点同时运行不会重复发布同一批事件
+ * @Date 2025/11/18 10:05
+ * @Created by YangJiaYu
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "exam.outbox", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ExamOutboxRelay {
+
+    @Autowired
+    private ExamOutboxService examOutboxService;
+
+    @Autowired
+    private ExamOutboxProperties examOutboxProperties;
+
+    /**
+     * 发布待发布的事件，有积压时连续发布多批
+     */
+    @Scheduled(fixedDelayString = "${exam.outbox.interval-ms:500}")
+    public void relay() {
+        try {
+            for (int i = 0; i < examOutboxProperties.getMaxBatches(); i++) {
+                if (examOutboxService.relay() < examOutboxProperties.getBatchSize()) {
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("发布考试事件失败！原因：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 每天凌晨清理过期的已发布事件
+     */
+    @Scheduled(cron = "0 30 3 * * ?")
+    public void cleanup() {
+        try {
+            int deleted = examOutboxService.cleanup();
+            log.info("清理过期的已发布考试事件：{}条", deleted);
+        } catch (Exception e) {
+            log.error("清理已发布考试事件失败！原因：{}", e.getMessage());
+        }
+    }
+}
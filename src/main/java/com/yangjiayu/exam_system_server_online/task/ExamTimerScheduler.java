@@ -0,0 +1,55 @@
+package com.yangjiayu.exam_system_server_online.task;
+
+import com.yangjiayu.exam_system_server_online.service.ExamService;
+import com.yangjiayu.exam_system_server_online.service.ExamTimerService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * @Classname ExamTimerScheduler
+ * @Description 考试到时自动交卷：定时认领一批到期的考试，走正常的交卷流程（合并答案草稿 写入答题记录 进入判卷队列）
+ * 认领在redis中原子完成，多个节点同时运行不会重复交卷
+ * @Date 2025/11/10 09:20
+ * @Created by YangJiaYu
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "exam.timer", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class ExamTimerScheduler {
+
+    @Autowired
+    private ExamService examService;
+
+    @Autowired
+    private ExamTimerService examTimerService;
+
+    /**
+     * 认领并自动提交到期的考试
+     */
+    @Scheduled(fixedDelayString = "${exam.timer.interval-ms:1000}")
+    public void autoSubmit() {
+        List<Integer> examRecordIds;
+        try {
+            examRecordIds = examTimerService.claimExpired();
+        } catch (Exception e) {
+            log.error("认领到期考试失败！原因：{}", e.getMessage());
+            return;
+        }
+        for (Integer examRecordId : examRecordIds) {
+            try {
+                if (examService.customAutoSubmit(examRecordId)) {
+                    log.info("id={}的考试记录到时自动交卷，已进入判卷队列", examRecordId);
+                }
+                examTimerService.cancel(examRecordId);
+            } catch (Exception e) {
+                //留在有序集合中，租期过后重新认领
+                log.error("id={}的考试记录自动交卷失败！原因：{}", examRecordId, e.getMessage());
+            }
+        }
+    }
+}
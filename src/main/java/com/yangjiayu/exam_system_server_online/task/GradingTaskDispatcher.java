@@ -0,0 +1,117 @@
+package com.yangjiayu.exam_system_server_online.task;
+
+import com.yangjiayu.exam_system_server_online.service.ExamService;
+import com.yangjiayu.exam_system_server_online.service.GradingTaskService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * @Classname GradingTaskDispatcher
+ * @Description 判卷任务调度器：定时从redis判卷队列取任务，交给判卷线程池执行
+ * 线程池的等待队列有空位才取任务，取不完的任务继续留在redis中排队，不会压垮本节点
+ * 本节点正在判卷的任务定时刷新心跳，ai限流排队导致判卷很慢时也不会被当作超时任务重新入队
+ * @Date 2025/11/02 10:40
+ * @Created by YangJiaYu
+ */
+@Slf4j
+@Component
+public class GradingTaskDispatcher {
+
+    @Autowired
+    private ExamService examService;
+
+    @Autowired
+    private GradingTaskService gradingTaskService;
+
+    @Autowired
+    @Qualifier("gradingExecutor")
+    private ThreadPoolTaskExecutor gradingExecutor;
+
+    /**
+     * 本节点正在判卷的考试记录id
+     */
+    private final Set<Integer> gradingIds = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 拉取判卷任务
+     */
+    @Scheduled(fixedDelayString = "${exam.grading.dispatch-interval-ms:500}")
+    public void dispatch() {
+        try {
+            int capacity = gradingExecutor.getThreadPoolExecutor().getQueue().remainingCapacity();
+            for (int i = 0; i < capacity; i++) {
+                Integer examRecordId = gradingTaskService.pollGradingTask();
+                if (examRecordId == null) {
+                    return;
+                }
+                try {
+                    gradingExecutor.execute(() -> grade(examRecordId));
+                } catch (RejectedExecutionException e) {
+                    gradingTaskService.failGradingTask(examRecordId, e);
+                    return;
+                }
+            }
+        } catch (Exception e) {
+            log.error("拉取判卷任务失败！原因：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 每30秒刷新一次本节点正在判卷的任务心跳（远小于判卷超时时间）
+     */
+    @Scheduled(fixedDelay = 30000, initialDelay = 30000)
+    public void heartbeat() {
+        for (Integer examRecordId : gradingIds) {
+            try {
+                gradingTaskService.heartbeat(examRecordId);
+            } catch (Exception e) {
+                log.warn("id={}的考试记录刷新判卷心跳失败！原因：{}", examRecordId, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 每分钟找回一次超时的判卷任务
+     */
+    @Scheduled(fixedDelay = 60000, initialDelay = 30000)
+    public void recover() {
+        try {
+            gradingTaskService.recoverStaleTasks();
+        } catch (Exception e) {
+            log.error("找回超时判卷任务失败！原因：{}", e.getMessage());
+        }
+    }
+
+    /**
+     * 每5分钟兜底扫描一次长时间未批阅的考试记录
+     */
+    @Scheduled(fixedDelay = 300000, initialDelay = 60000)
+    public void requeue() {
+        try {
+            gradingTaskService.requeueStaleRecords();
+        } catch (Exception e) {
+            log.error("兜底扫描未批阅考试记录失败！原因：{}", e.getMessage());
+        }
+    }
+
+    private void grade(Integer examRecordId) {
+        gradingIds.add(examRecordId);
+        try {
+            examService.gradeExam1(examRecordId);
+            gradingTaskService.completeGradingTask(examRecordId);
+            log.info("id={}的考试记录异步判卷完成", examRecordId);
+        } catch (Exception e) {
+            gradingTaskService.failGradingTask(examRecordId, e);
+        } finally {
+            gradingIds.remove(examRecordId);
+        }
+    }
+}
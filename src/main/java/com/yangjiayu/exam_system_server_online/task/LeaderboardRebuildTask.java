@@ -0,0 +1,33 @@
+package com.yangjiayu.exam_system_server_online.task;
+
+import com.yangjiayu.exam_system_server_online.service.LeaderboardService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * @Classname LeaderboardRebuildTask
+ * @Description 排行榜构建任务：启动后以及redis数据丢失（没有构建标记）时从数据库构建排行榜
+ * 构建前查询请求直接降级为数据库查询；重建有全局锁，多个节点同时启动只有一个节点执行
+ * @Date 2025/11/25 10:15
+ * @Created by YangJiaYu
+ */
+@Slf4j
+@Component
+public class LeaderboardRebuildTask {
+
+    @Autowired
+    private LeaderboardService leaderboardService;
+
+    @Scheduled(initialDelay = 10000, fixedDelay = 300000)
+    public void rebuildIfMissing() {
+        try {
+            if (!leaderboardService.isBuilt()) {
+                leaderboardService.rebuild(null);
+            }
+        } catch (Exception e) {
+            log.warn("构建排行榜失败，稍后重试！原因：{}", e.getMessage());
+        }
+    }
+}
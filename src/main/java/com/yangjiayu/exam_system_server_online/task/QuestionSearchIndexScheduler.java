@@ -0,0 +1,31 @@
+package com.yangjiayu.exam_system_server_online.task;
+
+import com.yangjiayu.exam_system_server_online.service.QuestionSearchService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * @Classname QuestionSearchIndexScheduler
+ * @Description 题目检索索引的全量构建：启动后立即构建，之后定时重建，同步其他节点修改的题目
+ * 构建失败时继续使用当前索引（或者回退到like查询），下一次定时重试
+ * @Date 2025/11/24 14:10
+ * @Created by YangJiaYu
+ */
+@Slf4j
+@Component
+public class QuestionSearchIndexScheduler {
+
+    @Autowired
+    private QuestionSearchService questionSearchService;
+
+    @Scheduled(initialDelay = 0, fixedDelayString = "${question.search.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        try {
+            questionSearchService.rebuild();
+        } catch (Exception e) {
+            log.error("构建题目检索索引失败！原因：{}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.yangjiayu.exam_system_server_online.task;
+
+import com.yangjiayu.exam_system_server_online.service.QuestionTrendingService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * @Classname QuestionTrendingScheduler
+ * @Description 定时刷新今日 本周热门题目（按小时分桶时间衰减合并），裁剪累计访问次数总榜
+ * @Date 2025/11/21 09:40
+ * @Created by YangJiaYu
+ */
+@Slf4j
+@Component
+public class QuestionTrendingScheduler {
+
+    @Autowired
+    private QuestionTrendingService questionTrendingService;
+
+    @Scheduled(fixedDelayString = "${question.view-count.trending-refresh-interval-ms:60000}")
+    public void refresh() {
+        try {
+            questionTrendingService.refresh();
+        } catch (Exception e) {
+            log.error("刷新热门题目失败！原因：{}", e.getMessage());
+        }
+    }
+}
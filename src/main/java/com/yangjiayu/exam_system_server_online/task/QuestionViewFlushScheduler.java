@@ -0,0 +1,25 @@
+package com.yangjiayu.exam_system_server_online.task;
+
+import com.yangjiayu.exam_system_server_online.service.QuestionViewCountService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * @Classname QuestionViewFlushScheduler
+ * @Description 定时把本地累加的题目访问计数批量写入redis（热门题目排行）
+ * 只负责提交写入任务，写入在专用线程池中执行，不占用其他定时任务共用的调度线程
+ * @Date 2025/11/20 14:30
+ * @Created by YangJiaYu
+ */
+@Component
+public class QuestionViewFlushScheduler {
+
+    @Autowired
+    private QuestionViewCountService questionViewCountService;
+
+    @Scheduled(fixedDelayString = "${question.view-count.flush-interval-ms:1000}")
+    public void flush() {
+        questionViewCountService.scheduleFlush();
+    }
+}
@@ -0,0 +1,130 @@
+package com.yangjiayu.exam_system_server_online.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 增量json数组解析器
+ *
+ * ai流式返回的文本是一段一段到达的，这个解析器每收到一段文本就向后扫描，
+ * 数组中的某个对象一完整就把它的json字符串返回出来，不需要等全部内容返回再解析
+ *
+ * 支持的结构:
+ * 1. 对象中的数组：{"questions":[{...},{...}]}，取第一个出现的数组
+ * 2. 直接就是数组：[{...},{...}]
+ * 3. json前后的说明文字和```json代码块标记会被忽略
+ *
+ * 只负责切分出完整的对象，对象内部的解析交给fastjson
+ * 非线程安全，一次流式调用使用一个解析器
+ *
+ * @author Yangjiayu
+ * @description 流式ai出题，逐题解析
+ */
+public class JsonArrayStreamParser {
+
+    /**
+     * 当前正在拼接的对象
+     */
+    private final StringBuilder current = new StringBuilder();
+
+    /**
+     * 当前嵌套层数（对象和数组）
+     */
+    private int depth = 0;
+
+    /**
+     * 目标数组所在的层数，-1表示还没有遇到数组
+     */
+    private int arrayDepth = -1;
+
+    /**
+     * 是否遇到了json的开始（第一个 { 或 [ ）
+     */
+    private boolean started = false;
+
+    /**
+     * 目标数组是否已经结束，结束之后的内容全部忽略
+     */
+    private boolean finished = false;
+
+    /**
+     * 是否正在拼接数组中的对象
+     */
+    private boolean capturing = false;
+
+    private boolean inString = false;
+
+    private boolean escape = false;
+
+    /**
+     * 输入一段文本
+     *
+     * @param chunk 新到达的文本
+     * @return 这段文本中完整的数组元素（对象的json字符串），没有则返回空集合
+     */
+    public List<String> feed(String chunk) {
+        List<String> completed = new ArrayList<>();
+        if (chunk == null || finished) {
+            return completed;
+        }
+        for (int i = 0; i < chunk.length() && !finished; i++) {
+            char c = chunk.charAt(i);
+            if (!started) {
+                //json开始之前的说明文字 代码块标记直接跳过
+                if (c != '{' && c != '[') {
+                    continue;
+                }
+                started = true;
+            }
+            if (capturing) {
+                current.append(c);
+            }
+            if (inString) {
+                if (escape) {
+                    escape = false;
+                } else if (c == '\\') {
+                    escape = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                continue;
+            }
+            switch (c) {
+                case '"' -> inString = true;
+                case '{', '[' -> {
+                    depth++;
+                    if (c == '[' && arrayDepth == -1) {
+                        //第一个数组就是要解析的数组
+                        arrayDepth = depth;
+                    } else if (c == '{' && depth == arrayDepth + 1 && !capturing) {
+                        //数组中的一个对象开始了
+                        capturing = true;
+                        current.setLength(0);
+                        current.append(c);
+                    }
+                }
+                case '}', ']' -> {
+                    if (c == '}' && capturing && depth == arrayDepth + 1) {
+                        //数组中的一个对象完整了
+                        completed.add(current.toString());
+                        current.setLength(0);
+                        capturing = false;
+                    } else if (c == ']' && depth == arrayDepth) {
+                        finished = true;
+                    }
+                    depth--;
+                }
+                default -> {
+                }
+            }
+        }
+        return completed;
+    }
+
+    /**
+     * 目标数组是否已经解析完毕
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+}
@@ -0,0 +1,113 @@
+package com.yangjiayu.exam_system_server_online.utils;
+
+/**
+ * long -> int 的原始类型哈希表
+ *
+ * 开放寻址 + 线性探测，key和value都保存在原始类型数组中，
+ * 查询不需要装箱（HashMap<Long,Integer>每次get都会创建Long对象），适合题目id -> 题目位置这种高频查询
+ *
+ * 只支持put和get，不支持删除；构建完成之后只读使用是线程安全的
+ *
+ * @author Yangjiayu
+ * @description 题目id -> 试卷中位置 的索引
+ */
+public class LongIntHashMap {
+
+    private static final float LOAD_FACTOR = 0.5f;
+
+    private long[] keys;
+
+    private int[] values;
+
+    private boolean[] used;
+
+    private int size;
+
+    private int mask;
+
+    public LongIntHashMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, (int) (expectedSize / LOAD_FACTOR)) - 1) << 1;
+        allocate(capacity);
+    }
+
+    /**
+     * 保存，key已经存在时覆盖
+     */
+    public void put(long key, int value) {
+        if (size + 1 > keys.length * LOAD_FACTOR) {
+            resize();
+        }
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        used[slot] = true;
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+    }
+
+    /**
+     * 查询，key不存在返回默认值
+     */
+    public int getOrDefault(long key, int defaultValue) {
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    public boolean containsKey(long key) {
+        int slot = slot(key);
+        while (used[slot]) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slot(long key) {
+        //打散连续的自增id，避免线性探测时聚集
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        used = new boolean[capacity];
+        mask = capacity - 1;
+    }
+
+    private void resize() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        boolean[] oldUsed = used;
+        allocate(oldKeys.length << 1);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldUsed[i]) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LongIntHashMap{size=" + size + ", capacity=" + keys.length + "}";
+    }
+}
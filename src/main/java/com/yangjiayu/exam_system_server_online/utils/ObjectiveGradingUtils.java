@@ -0,0 +1,74 @@
+package com.yangjiayu.exam_system_server_online.utils;
+
+import com.yangjiayu.exam_system_server_online.entity.AnswerRecord;
+import com.yangjiayu.exam_system_server_online.entity.Question;
+
+/**
+ * 客观题（选择 判断）本地判卷工具类
+ * 交卷判卷和整卷重新判卷共用
+ *
+ * @author Yangjiayu
+ * @description 客观题判分
+ */
+public class ObjectiveGradingUtils {
+
+    private ObjectiveGradingUtils() {
+    }
+
+    /**
+     * 客观题（选择 判断）本地判卷
+     * @param answerRecord 答题记录
+     * @param question 题目（含正确答案）
+     */
+    public static void grade(AnswerRecord answerRecord, Question question) {
+        //获取正确的答案和学生的答案
+        String systemAnswer = question.getAnswer().getAnswer();//正确答案
+        String userAnswer = answerRecord.getUserAnswer();
+        // 如果是判断题，用户提交的答案T F -》TRUE 和 FALSE
+        if("JUDGE".equalsIgnoreCase(question.getType())){
+            userAnswer = normalizeJudgeAnswer(userAnswer);
+        }
+        try{
+            //判断题 用户答案TRUE FALSE 【字符串比较】
+            //选择题：用户答案 A A,B  正确答案A A,B
+            if(userAnswer.equalsIgnoreCase(systemAnswer)){
+                //正确
+                answerRecord.setIsCorrect(1);
+                answerRecord.setScore(question.getPaperScore().intValue());
+            }else{
+                answerRecord.setIsCorrect(0);
+                answerRecord.setScore(0);
+            }
+        }catch (Exception e){
+            //判断题目错了 给0分
+            answerRecord.setScore(0);
+            answerRecord.setIsCorrect(0);
+            answerRecord.setAiCorrection("判断过程中报错，直接0分");
+        }
+    }
+
+    /**
+     * 标准化判断题答案，将T/F转换为TRUE/FALSE
+     * @param answer 原始答案
+     * @return 标准化后的答案
+     */
+    public static String normalizeJudgeAnswer(String answer) {
+        if (answer == null || answer.trim().isEmpty()) {
+            return "";
+        }
+
+        String normalized = answer.trim().toUpperCase();
+        switch (normalized) {
+            case "T":
+            case "TRUE":
+            case "正确":
+                return "TRUE";
+            case "F":
+            case "FALSE":
+            case "错":
+                return "FALSE";
+            default:
+                return normalized;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.yangjiayu.exam_system_server_online.utils;
+
+import com.yangjiayu.exam_system_server_online.entity.Question;
+import com.yangjiayu.exam_system_server_online.entity.QuestionChoice;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 题目全文检索的内存倒排索引
+ *
+ * 题目标题 解析 选项内容按字符二元组（bigram，规范化规则同 TextSimilarityUtils）切分，
+ * 倒排表：二元组 -> (题目id -> 加权词频)，标题中的二元组权重为3，解析和选项权重为1
+ *
+ * 检索规则:
+ * 1. 关键字的所有二元组都要出现（AND），从最短的倒排表开始求交集
+ * 2. 分类 类型 难度在求交集时过滤
+ * 3. 相关度 BM25（加权词频 + 文档长度归一化），标题中连续出现整个关键字的再加权；
+ *    相关度相同按创建时间倒序，和原来的列表顺序一致
+ *
+ * 读写锁保护，检索之间不互斥；不依赖spring，方便单独测试
+ *
+ * @author Yangjiayu
+ * @description 题目标题 解析 选项的二元组倒排索引
+ */
+public class QuestionSearchIndex {
+
+    private static final int TITLE_WEIGHT = 3;
+    private static final int CONTENT_WEIGHT = 1;
+
+    /**
+     * BM25参数
+     */
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /**
+     * 标题连续包含整个关键字时的相关度倍数
+     */
+    private static final double PHRASE_BOOST = 1.5;
+
+    private final Map<String, Map<Long, Integer>> postings = new HashMap<>();
+    private final Map<Long, IndexedQuestion> documents = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * 所有题目的加权长度之和（计算平均长度）
+     */
+    private long totalLength;
+
+    /**
+     * 检索结果：当前页的题目id（按相关度排序）和命中总数
+     */
+    public record SearchResult(List<Long> ids, long total) {
+    }
+
+    private record IndexedQuestion(Long id, Long categoryId, String type, String difficulty, long createTime,
+                                   String normalizedTitle, Map<String, Integer> terms, int length) {
+    }
+
+    private record ScoredQuestion(IndexedQuestion question, double score) {
+    }
+
+    // ============== 核心方法 ==============
+
+    /**
+     * 加入或者替换一道题目（需要带上选项）
+     * 题目没有创建时间时（修改题目的请求）保留索引中原来的创建时间
+     */
+    public void put(Question question) {
+        if (question == null || question.getId() == null) {
+            return;
+        }
+        Map<String, Integer> terms = new HashMap<>();
+        addTerms(terms, question.getTitle(), TITLE_WEIGHT);
+        addTerms(terms, question.getAnalysis(), CONTENT_WEIGHT);
+        if (question.getChoices() != null) {
+            for (QuestionChoice choice : question.getChoices()) {
+                addTerms(terms, choice.getContent(), CONTENT_WEIGHT);
+            }
+        }
+        int length = terms.values().stream().mapToInt(Integer::intValue).sum();
+
+        lock.writeLock().lock();
+        try {
+            IndexedQuestion previous = removeInternal(question.getId());
+            long createTime = question.getCreateTime() != null ? question.getCreateTime().getTime()
+                : previous != null ? previous.createTime() : System.currentTimeMillis();
+            IndexedQuestion indexed = new IndexedQuestion(question.getId(), question.getCategoryId(), question.getType(),
+                question.getDifficulty(), createTime, TextSimilarityUtils.normalize(question.getTitle()), terms, length);
+            documents.put(indexed.id(), indexed);
+            terms.forEach((term, frequency) -> postings.computeIfAbsent(term, key -> new HashMap<>()).put(indexed.id(), frequency));
+            totalLength += length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 移除一道题目
+     */
+    public void remove(Long questionId) {
+        if (questionId == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            removeInternal(questionId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 检索题目
+     *
+     * @param keyword 关键字（规范化后至少2个字符）
+     * @param categoryId 分类id，null不过滤
+     * @param type 题目类型，空不过滤
+     * @param difficulty 难度，空不过滤
+     * @param offset 跳过的条数
+     * @param limit 返回的条数
+     * @return 当前页的题目id和命中总数
+     */
+    public SearchResult search(String keyword, Long categoryId, String type, String difficulty, long offset, long limit) {
+        String normalizedKeyword = TextSimilarityUtils.normalize(keyword);
+        if (normalizedKeyword.length() < 2) {
+            return new SearchResult(List.of(), 0);
+        }
+        Set<String> queryTerms = TextSimilarityUtils.bigrams(normalizedKeyword);
+        lock.readLock().lock();
+        try {
+            //1.关键字的每个二元组的倒排表，有一个不存在直接没有结果
+            List<Map.Entry<String, Map<Long, Integer>>> termPostings = new ArrayList<>(queryTerms.size());
+            for (String term : queryTerms) {
+                Map<Long, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    return new SearchResult(List.of(), 0);
+                }
+                termPostings.add(Map.entry(term, posting));
+            }
+            termPostings.sort(Comparator.comparingInt(entry -> entry.getValue().size()));
+
+            //2.从最短的倒排表开始求交集，同时过滤 计算相关度
+            int documentCount = documents.size();
+            double averageLength = documentCount == 0 ? 1 : Math.max(1D, (double) totalLength / documentCount);
+            List<ScoredQuestion> matched = new ArrayList<>();
+            for (Long questionId : termPostings.get(0).getValue().keySet()) {
+                IndexedQuestion indexed = documents.get(questionId);
+                if (!matches(indexed, categoryId, type, difficulty)) {
+                    continue;
+                }
+                double score = 0;
+                boolean all = true;
+                for (Map.Entry<String, Map<Long, Integer>> entry : termPostings) {
+                    Integer frequency = entry.getValue().get(questionId);
+                    if (frequency == null) {
+                        all = false;
+                        break;
+                    }
+                    int df = entry.getValue().size();
+                    double idf = Math.log(1 + (documentCount - df + 0.5) / (df + 0.5));
+                    score += idf * frequency * (K1 + 1) / (frequency + K1 * (1 - B + B * indexed.length() / averageLength));
+                }
+                if (!all) {
+                    continue;
+                }
+                if (indexed.normalizedTitle().contains(normalizedKeyword)) {
+                    score *= PHRASE_BOOST;
+                }
+                matched.add(new ScoredQuestion(indexed, score));
+            }
+
+            //3.相关度倒序 -> 创建时间倒序 -> id倒序，截取当前页
+            List<Long> ids = matched.stream()
+                .sorted(Comparator.comparingDouble(ScoredQuestion::score).reversed()
+                    .thenComparing(scored -> scored.question().createTime(), Comparator.reverseOrder())
+                    .thenComparing(scored -> scored.question().id(), Comparator.reverseOrder()))
+                .skip(Math.max(offset, 0))
+                .limit(Math.max(limit, 0))
+                .map(scored -> scored.question().id())
+                .toList();
+            return new SearchResult(ids, matched.size());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 索引中的题目数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ============== 私有方法 ==============
+
+    /**
+     * 统计文本的二元组加权词频，只有一个字符的文本按这个字符计
+     */
+    private static void addTerms(Map<String, Integer> terms, String text, int weight) {
+        String normalized = TextSimilarityUtils.normalize(text);
+        if (normalized.length() == 1) {
+            terms.merge(normalized, weight, Integer::sum);
+        }
+        for (int i = 0; i + 1 < normalized.length(); i++) {
+            terms.merge(normalized.substring(i, i + 2), weight, Integer::sum);
+        }
+    }
+
+    private static boolean matches(IndexedQuestion indexed, Long categoryId, String type, String difficulty) {
+        return indexed != null
+            && (categoryId == null || categoryId.equals(indexed.categoryId()))
+            && (type == null || type.isEmpty() || type.equals(indexed.type()))
+            && (difficulty == null || difficulty.isEmpty() || difficulty.equals(indexed.difficulty()));
+    }
+
+    /**
+     * 移除题目的所有倒排记录，调用方持有写锁
+     */
+    private IndexedQuestion removeInternal(Long questionId) {
+        IndexedQuestion previous = documents.remove(questionId);
+        if (previous == null) {
+            return null;
+        }
+        for (String term : previous.terms().keySet()) {
+            Map<Long, Integer> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(questionId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+        totalLength -= previous.length();
+        return previous;
+    }
+}
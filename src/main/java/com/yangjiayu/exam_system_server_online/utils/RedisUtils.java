@@ -65,6 +65,26 @@ public class RedisUtils {
         redisTemplate.delete(keys);
     }
 
+    /**
+     * 自增（key不存在时从0开始）
+     * @param key 缓存键
+     * @return 自增后的值
+     */
+    public Long incr(String key) {
+        return redisTemplate.opsForValue().increment(key);
+    }
+
+    /**
+     * key不存在时设置缓存（带过期时间）
+     * @param key 缓存键
+     * @param value 缓存值
+     * @param timeout 过期时间（秒）
+     * @return 是否设置成功，key已经存在返回false
+     */
+    public Boolean setIfAbsent(String key, Object value, long timeout) {
+        return redisTemplate.opsForValue().setIfAbsent(key, value, timeout, TimeUnit.SECONDS);
+    }
+
     /**
      * 设置过期时间
      * @param key 缓存键
@@ -247,6 +267,27 @@ public class RedisUtils {
     public Long lRemove(String key, long count, Object value) {
         return redisTemplate.opsForList().remove(key, count, value);
     }
+
+    /**
+     * 从列表头部放入元素
+     * @param key 缓存键
+     * @param value 值
+     * @return 列表长度
+     */
+    public Long lLeftPush(String key, Object value) {
+        return redisTemplate.opsForList().leftPush(key, value);
+    }
+
+    /**
+     * 从源列表尾部弹出一个元素，同时放入目标列表头部（原子操作）
+     * 可靠队列：取出的任务先放入处理中列表，处理完成后再删除，节点宕机任务不丢失
+     * @param sourceKey 源列表
+     * @param destinationKey 目标列表
+     * @return 弹出的元素，源列表为空返回null
+     */
+    public Object lRightPopAndLeftPush(String sourceKey, String destinationKey) {
+        return redisTemplate.opsForList().rightPopAndLeftPush(sourceKey, destinationKey);
+    }
     
     /**
      * 向有序集合添加元素，如果已存在则更新分数
@@ -0,0 +1,144 @@
+package com.yangjiayu.exam_system_server_online.utils;
+
+import com.yangjiayu.exam_system_server_online.vo.PaperStatsVo;
+import com.yangjiayu.exam_system_server_online.vo.QuestionStatsVo;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedMap;
+
+/**
+ * 试卷成绩统计计算工具类
+ *
+ * 考试得分是不超过试卷总分的整数，直接保存精确的分数分布（分数 -> 人数），
+ * 平均分 标准差 百分位数都从分数分布计算，结果是精确值；分数分布可以直接累加合并
+ * 单题分析只需要累计值（作答人数 答对人数 得分合计 考试总分合计），同样可以增量累加
+ *
+ * @author Yangjiayu
+ * @description 分数分布 百分位数 难度 区分度计算
+ */
+public class ScoreStatistics {
+
+    /**
+     * 直方图分数段数量
+     */
+    private static final int HISTOGRAM_SEGMENTS = 10;
+
+    private ScoreStatistics() {
+    }
+
+    /**
+     * 根据分数分布计算试卷整体统计：人数 平均分 标准差 最低最高分 百分位数 分数段直方图
+     *
+     * @param statsVo 统计结果
+     * @param distribution 分数 -> 人数（按分数升序）
+     * @param totalScore 试卷总分，用来划分分数段
+     */
+    public static void summarize(PaperStatsVo statsVo, SortedMap<Integer, Long> distribution, int totalScore) {
+        long count = 0;
+        long sum = 0;
+        for (Map.Entry<Integer, Long> entry : distribution.entrySet()) {
+            count += entry.getValue();
+            sum += (long) entry.getKey() * entry.getValue();
+        }
+        statsVo.setCount(count);
+        statsVo.setDistribution(distribution);
+        statsVo.setHistogram(histogram(distribution, totalScore));
+        if (count == 0) {
+            statsVo.setMean(0D);
+            statsVo.setStddev(0D);
+            statsVo.setPercentiles(new LinkedHashMap<>());
+            return;
+        }
+        //先求平均分再累加离差平方，分数分布的分段数很少，两遍计算代价可以忽略且没有精度问题
+        double mean = (double) sum / count;
+        double squares = 0;
+        for (Map.Entry<Integer, Long> entry : distribution.entrySet()) {
+            double deviation = entry.getKey() - mean;
+            squares += deviation * deviation * entry.getValue();
+        }
+        statsVo.setMean(mean);
+        statsVo.setStddev(Math.sqrt(squares / count));
+        statsVo.setMin(distribution.firstKey());
+        statsVo.setMax(distribution.lastKey());
+        Map<String, Integer> percentiles = new LinkedHashMap<>();
+        percentiles.put("p25", percentile(distribution, count, 0.25));
+        percentiles.put("p50", percentile(distribution, count, 0.5));
+        percentiles.put("p75", percentile(distribution, count, 0.75));
+        percentiles.put("p90", percentile(distribution, count, 0.9));
+        statsVo.setPercentiles(percentiles);
+    }
+
+    /**
+     * 百分位数（最近秩法）：从低到高第 ceil(p * 人数) 个人的分数
+     *
+     * @param distribution 分数 -> 人数（按分数升序）
+     * @param count 总人数
+     * @param p 百分位 0~1
+     * @return 分数，没有数据返回null
+     */
+    public static Integer percentile(SortedMap<Integer, Long> distribution, long count, double p) {
+        if (count <= 0) {
+            return null;
+        }
+        long rank = Math.max(1, (long) Math.ceil(p * count));
+        long seen = 0;
+        for (Map.Entry<Integer, Long> entry : distribution.entrySet()) {
+            seen += entry.getValue();
+            if (seen >= rank) {
+                return entry.getKey();
+            }
+        }
+        return distribution.lastKey();
+    }
+
+    /**
+     * 根据单题累计值计算 正确率 难度指数 区分度
+     * 区分度使用点二列相关系数：(答对的人平均总分 - 答错的人平均总分) / 总分标准差 * sqrt(p * (1 - p))
+     *
+     * @param questionStats 单题累计值
+     * @param stddev 试卷总分的标准差
+     */
+    public static void analyze(QuestionStatsVo questionStats, double stddev) {
+        long attempts = questionStats.getAttempts() == null ? 0 : questionStats.getAttempts();
+        if (attempts == 0) {
+            return;
+        }
+        long correct = questionStats.getCorrectCount() == null ? 0 : questionStats.getCorrectCount();
+        double p = (double) correct / attempts;
+        questionStats.setCorrectRate(p);
+        if (questionStats.getMaxScore() != null && questionStats.getMaxScore() > 0 && questionStats.getEarnedSum() != null) {
+            questionStats.setDifficulty((double) questionStats.getEarnedSum() / (attempts * questionStats.getMaxScore()));
+        }
+        //全对 全错 或者所有人同分时区分度没有意义
+        if (correct == 0 || correct == attempts || stddev <= 0
+            || questionStats.getTotalSum() == null || questionStats.getCorrectTotalSum() == null) {
+            questionStats.setDiscrimination(0D);
+            return;
+        }
+        double correctMean = (double) questionStats.getCorrectTotalSum() / correct;
+        double wrongMean = (double) (questionStats.getTotalSum() - questionStats.getCorrectTotalSum()) / (attempts - correct);
+        questionStats.setDiscrimination((correctMean - wrongMean) / stddev * Math.sqrt(p * (1 - p)));
+    }
+
+    /**
+     * 按试卷总分分成10个分数段，最后一段包含满分
+     */
+    private static Map<String, Long> histogram(SortedMap<Integer, Long> distribution, int totalScore) {
+        int top = Math.max(totalScore, distribution.isEmpty() ? 0 : distribution.lastKey());
+        int width = Math.max(1, (top + HISTOGRAM_SEGMENTS - 1) / HISTOGRAM_SEGMENTS);
+        int segments = Math.max(1, Math.min(HISTOGRAM_SEGMENTS, (top + width - 1) / width));
+        long[] counts = new long[segments];
+        for (Map.Entry<Integer, Long> entry : distribution.entrySet()) {
+            int index = Math.min(segments - 1, Math.max(0, entry.getKey()) / width);
+            counts[index] += entry.getValue();
+        }
+        Map<String, Long> histogram = new LinkedHashMap<>();
+        for (int i = 0; i < segments; i++) {
+            int low = i * width;
+            int high = i == segments - 1 ? top : (i + 1) * width - 1;
+            histogram.put(low + "-" + high, counts[i]);
+        }
+        return histogram;
+    }
+}
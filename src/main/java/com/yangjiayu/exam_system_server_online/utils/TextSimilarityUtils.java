@@ -0,0 +1,65 @@
+package com.yangjiayu.exam_system_server_online.utils;
+
+import java.text.Normalizer;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 文本相似度工具类
+ *
+ * 基于字符二元组（bigram）的jaccard相似度，适合中文短文本（题目标题）：
+ * 不需要分词，"Java中的多态是什么" 和 "Java中多态是什么？" 的相似度很高
+ *
+ * @author Yangjiayu
+ * @description 题目标题去重 相似题目检索
+ */
+public class TextSimilarityUtils {
+
+    private TextSimilarityUtils() {
+    }
+
+    /**
+     * 规范化文本：全角转半角、忽略大小写、只保留文字和数字
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        return Normalizer.normalize(text, Normalizer.Form.NFKC)
+            .toLowerCase()
+            .replaceAll("[^\\p{L}\\p{N}]", "");
+    }
+
+    /**
+     * 文本的字符二元组集合，只有一个字符时返回这个字符本身
+     */
+    public static Set<String> bigrams(String text) {
+        String normalized = normalize(text);
+        Set<String> bigrams = new HashSet<>();
+        if (normalized.length() == 1) {
+            bigrams.add(normalized);
+        }
+        for (int i = 0; i + 1 < normalized.length(); i++) {
+            bigrams.add(normalized.substring(i, i + 2));
+        }
+        return bigrams;
+    }
+
+    /**
+     * jaccard相似度 = 交集大小 / 并集大小，取值0-1
+     */
+    public static double jaccard(Set<String> a, Set<String> b) {
+        if (a.isEmpty() && b.isEmpty()) {
+            return 1.0;
+        }
+        Set<String> smaller = a.size() <= b.size() ? a : b;
+        Set<String> larger = smaller == a ? b : a;
+        int intersection = 0;
+        for (String gram : smaller) {
+            if (larger.contains(gram)) {
+                intersection++;
+            }
+        }
+        return (double) intersection / (a.size() + b.size() - intersection);
+    }
+}
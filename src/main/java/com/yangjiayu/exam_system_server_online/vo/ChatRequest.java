@@ -1,5 +1,6 @@
 package com.yangjiayu.exam_system_server_online.vo;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Builder;
 import lombok.Data;
 
@@ -25,16 +26,19 @@ public class ChatRequest implements Serializable {
     /**
      * 是否使用流式传输
      */
+    @Builder.Default
     private boolean stream = false; // 是否使用流式传输
 
     /**
      * 生成文本的随机性，介于0和1之间
      */
+    @Builder.Default
     private double temperature = 0.3; // 温度参数
 
     /**
      * 最大生成token数
      */
+    @JsonProperty("max_tokens")
     private Integer maxTokens; // 最大生成token数
 
     private static final long serialVersionUID = 1L; // 序列化版本UID
@@ -0,0 +1,39 @@
+package com.yangjiayu.exam_system_server_online.vo;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 游标分页结果封装类
+ * 不使用页码和offset，下一页通过上一页返回的游标继续查询
+ */
+@Data
+public class CursorPageResult<T> {
+    /** 数据列表 */
+    private List<T> records;
+    /** 下一页游标，没有下一页时为null */
+    private String nextCursor;
+    /** 是否还有下一页 */
+    private boolean hasMore;
+    /** 总记录数，没有要求返回总数时为null */
+    private Long total;
+    /** 总记录数是否为估算值 */
+    private boolean totalApproximate;
+
+    /**
+     * 构造方法
+     */
+    public CursorPageResult() {}
+
+    /**
+     * 构造方法
+     * @param records 数据列表
+     * @param nextCursor 下一页游标
+     */
+    public CursorPageResult(List<T> records, String nextCursor) {
+        this.records = records;
+        this.nextCursor = nextCursor;
+        this.hasMore = nextCursor != null;
+    }
+}
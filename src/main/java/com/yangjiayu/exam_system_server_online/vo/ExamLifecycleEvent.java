@@ -0,0 +1,59 @@
+package com.yangjiayu.exam_system_server_online.vo;
+
+import com.yangjiayu.exam_system_server_online.entity.ExamOutboxEvent;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * 考试生命周期事件 - 发件箱中继任务发布的进程内事件（spring事件）
+ * 同一个事件可能被发布多次（至少一次），消费者需要保证幂等
+ */
+@Data
+public class ExamLifecycleEvent implements Serializable {
+
+    /**
+     * 开始考试（创建进行中的考试记录）
+     */
+    public static final String STARTED = "STARTED";
+
+    /**
+     * 交卷（手动交卷 到时自动交卷）
+     */
+    public static final String SUBMITTED = "SUBMITTED";
+
+    /**
+     * 判卷完成（已批阅）
+     */
+    public static final String GRADED = "GRADED";
+
+    /**
+     * 删除考试记录
+     */
+    public static final String DELETED = "DELETED";
+
+    private Long eventId; // 发件箱事件id
+    private String type; // 事件类型
+    private Long examRecordId; // 考试记录ID
+    private Integer paperId; // 试卷ID
+    private String studentName; // 考生姓名
+    private String recordStatus; // 事件发生时考试记录的状态
+    private Integer score; // 事件发生时考试记录的得分
+    private LocalDateTime occurredAt; // 事件发生时间
+
+    private static final long serialVersionUID = 1L; // 序列化版本号
+
+    public static ExamLifecycleEvent of(ExamOutboxEvent outboxEvent) {
+        ExamLifecycleEvent event = new ExamLifecycleEvent();
+        event.setEventId(outboxEvent.getId());
+        event.setType(outboxEvent.getEventType());
+        event.setExamRecordId(outboxEvent.getExamRecordId());
+        event.setPaperId(outboxEvent.getPaperId());
+        event.setStudentName(outboxEvent.getStudentName());
+        event.setRecordStatus(outboxEvent.getRecordStatus());
+        event.setScore(outboxEvent.getScore());
+        event.setOccurredAt(outboxEvent.getCreateTime());
+        return event;
+    }
+}
@@ -44,6 +44,9 @@ public class ExamRankingVO implements Serializable {
     @Schema(description = "考试用时（分钟）", example = "120")
     private Long duration; // 考试用时，单位分钟
 
+    @Schema(description = "名次，从1开始", example = "1")
+    private Long rank; // 名次
+
     /**
      * 为了保持前端兼容性，提供paper对象格式的数据
      * 前端代码中使用 record.paper.name 和 record.paper.totalScore
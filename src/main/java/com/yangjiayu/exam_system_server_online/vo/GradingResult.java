@@ -0,0 +1,29 @@
+package com.yangjiayu.exam_system_server_online.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * AI判卷结果Vo - 简答题AI判卷返回的得分和评语
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Schema(description = "AI判卷结果")
+public class GradingResult implements Serializable {
+
+    @Schema(description = "AI给出的得分", example = "8")
+    private Integer score; // 得分
+
+    @Schema(description = "评价反馈", example = "答案要点完整，表述清晰")
+    private String feedback; // 评价反馈
+
+    @Schema(description = "扣分原因或得分依据", example = "缺少对多态的说明")
+    private String reason; // 扣分原因
+
+    private static final long serialVersionUID = 1L; // 序列化版本号
+}
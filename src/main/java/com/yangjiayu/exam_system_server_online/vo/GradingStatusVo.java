@@ -0,0 +1,36 @@
+package com.yangjiayu.exam_system_server_online.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 判卷进度Vo - 交卷后前端轮询判卷状态使用
+ */
+@Data
+@Schema(description = "判卷进度信息")
+public class GradingStatusVo implements Serializable {
+
+    @Schema(description = "考试记录ID", example = "1")
+    private Integer examRecordId; // 考试记录ID
+
+    @Schema(description = "判卷任务状态",
+            example = "PENDING",
+            allowableValues = {"PENDING", "GRADING", "RETRYING", "SUCCESS", "FAILED"})
+    private String status; // 判卷任务状态
+
+    @Schema(description = "已经尝试判卷的次数", example = "1")
+    private Integer attempts; // 尝试次数
+
+    @Schema(description = "判卷失败时的错误信息")
+    private String message; // 错误信息
+
+    @Schema(description = "考试记录状态", example = "已完成", allowableValues = {"进行中", "已完成", "已批阅"})
+    private String examStatus; // 考试记录状态
+
+    @Schema(description = "考试得分，批阅完成后才有值", example = "85")
+    private Integer score; // 考试得分
+
+    private static final long serialVersionUID = 1L; // 序列化版本号
+}
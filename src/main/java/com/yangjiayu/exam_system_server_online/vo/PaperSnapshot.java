@@ -0,0 +1,67 @@
+package com.yangjiayu.exam_system_server_online.vo;
+
+import com.alibaba.fastjson.annotation.JSONField;
+import com.yangjiayu.exam_system_server_online.entity.Paper;
+import com.yangjiayu.exam_system_server_online.utils.LongIntHashMap;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+/**
+ * 试卷快照Vo - 已发布试卷组装好的完整详情（试卷 题目 选项 答案，题目已按题型排序）
+ * 发布时生成一次，缓存在本地和redis中，考试 查看 判卷都直接使用，不再查询数据库
+ * 快照中的对象被多个请求共享，只读，不要修改
+ * 同时保存学生答题用的试卷（不含答案）序列化之后的字节，考试接口直接返回
+ * 以及 题目id -> 题目在试卷中的位置 的索引，答题记录排序和判卷时O(1)定位题目
+ */
+@Data
+@NoArgsConstructor
+public class PaperSnapshot implements Serializable {
+
+    /**
+     * 试卷id
+     */
+    private Long paperId;
+
+    /**
+     * 快照版本号，与redis中的版本号不一致说明快照已经过期
+     */
+    private Long version;
+
+    /**
+     * 试卷详情
+     */
+    private Paper paper;
+
+    /**
+     * 学生答题用的试卷（不含答案），已经序列化成 Result 响应的json字节，直接写给前端
+     * 每个节点生成快照时计算，不写入redis
+     */
+    @JSONField(serialize = false, deserialize = false)
+    private transient byte[] studentView;
+
+    /**
+     * 题目id -> 题目在 paper.questions 中的下标
+     * 每个节点生成快照时计算，不写入redis
+     */
+    @JSONField(serialize = false, deserialize = false)
+    private transient LongIntHashMap questionIndex;
+
+    private static final long serialVersionUID = 1L;
+
+    public PaperSnapshot(Long paperId, Long version, Paper paper) {
+        this.paperId = paperId;
+        this.version = version;
+        this.paper = paper;
+    }
+
+    /**
+     * 根据题目id获取题目在试卷中的下标
+     *
+     * @return 下标，题目不在试卷中返回-1
+     */
+    public int indexOf(long questionId) {
+        return questionIndex.getOrDefault(questionId, -1);
+    }
+}
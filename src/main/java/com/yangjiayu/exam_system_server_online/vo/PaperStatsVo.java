@@ -0,0 +1,51 @@
+package com.yangjiayu.exam_system_server_online.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 试卷成绩统计Vo - 教师查看一张试卷的分数分布和题目分析
+ */
+@Data
+@Schema(description = "试卷成绩统计信息")
+public class PaperStatsVo implements Serializable {
+
+    @Schema(description = "试卷ID", example = "1")
+    private Integer paperId; // 试卷ID
+
+    @Schema(description = "试卷总分", example = "100")
+    private Integer totalScore; // 试卷总分
+
+    @Schema(description = "已批阅的考试人数", example = "120")
+    private Long count; // 考试人数
+
+    @Schema(description = "平均分", example = "76.5")
+    private Double mean; // 平均分
+
+    @Schema(description = "标准差", example = "12.3")
+    private Double stddev; // 标准差
+
+    @Schema(description = "最低分", example = "20")
+    private Integer min; // 最低分
+
+    @Schema(description = "最高分", example = "100")
+    private Integer max; // 最高分
+
+    @Schema(description = "百分位数：p25 p50 p75 p90 -> 分数", example = "{\"p50\": 78}")
+    private Map<String, Integer> percentiles; // 百分位数
+
+    @Schema(description = "分数分布：分数 -> 人数")
+    private Map<Integer, Long> distribution; // 分数分布
+
+    @Schema(description = "分数段直方图：分数段（如 90-100） -> 人数，按试卷总分分成10段")
+    private Map<String, Long> histogram; // 分数段直方图
+
+    @Schema(description = "题目分析，按试卷题目顺序")
+    private List<QuestionStatsVo> questions; // 题目分析
+
+    private static final long serialVersionUID = 1L; // 序列化版本号
+}
@@ -0,0 +1,52 @@
+package com.yangjiayu.exam_system_server_online.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 题目作答统计Vo - 试卷成绩统计中的单题分析（正确率 难度 区分度）
+ */
+@Data
+@Schema(description = "题目作答统计信息")
+public class QuestionStatsVo implements Serializable {
+
+    @Schema(description = "题目ID", example = "1")
+    private Long questionId; // 题目ID
+
+    @Schema(description = "题目标题")
+    private String title; // 题目标题
+
+    @Schema(description = "题目类型", example = "CHOICE")
+    private String type; // 题目类型
+
+    @Schema(description = "题目在试卷中的分值", example = "5")
+    private Integer maxScore; // 题目分值
+
+    @Schema(description = "作答人数", example = "120")
+    private Long attempts; // 作答人数
+
+    @Schema(description = "答对人数（部分正确不算）", example = "90")
+    private Long correctCount; // 答对人数
+
+    @Schema(description = "作答人得分合计", example = "480")
+    private Long earnedSum; // 得分合计
+
+    @Schema(description = "作答人考试总分合计", example = "9000")
+    private Long totalSum; // 考试总分合计
+
+    @Schema(description = "答对的人考试总分合计", example = "7200")
+    private Long correctTotalSum; // 答对的人考试总分合计
+
+    @Schema(description = "正确率 = 答对人数 / 作答人数", example = "0.75")
+    private Double correctRate; // 正确率
+
+    @Schema(description = "难度指数 = 平均得分 / 题目分值，越大越容易", example = "0.8")
+    private Double difficulty; // 难度指数
+
+    @Schema(description = "区分度（点二列相关系数），越大越能区分高分和低分考生", example = "0.35")
+    private Double discrimination; // 区分度
+
+    private static final long serialVersionUID = 1L; // 序列化版本号
+}
@@ -0,0 +1,39 @@
+package com.yangjiayu.exam_system_server_online.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.io.Serializable;
+
+/**
+ * 整卷重新判卷进度Vo - 修改标准答案后重新判卷，前端轮询进度使用
+ */
+@Data
+@Schema(description = "整卷重新判卷进度信息")
+public class RegradeProgressVo implements Serializable {
+
+    @Schema(description = "试卷ID", example = "1")
+    private Long paperId; // 试卷ID
+
+    @Schema(description = "重新判卷任务状态",
+            example = "RUNNING",
+            allowableValues = {"NONE", "RUNNING", "SUCCESS", "FAILED"})
+    private String status; // 任务状态
+
+    @Schema(description = "需要重新判卷的答题记录总数", example = "15000")
+    private Long total; // 答题记录总数
+
+    @Schema(description = "已经处理的答题记录数", example = "3000")
+    private Long processed; // 已处理数
+
+    @Schema(description = "得分发生变化的答题记录数", example = "120")
+    private Long changed; // 得分变化数
+
+    @Schema(description = "已经重新汇总总分的考试记录数", example = "300")
+    private Long examRecords; // 考试记录数
+
+    @Schema(description = "失败时的错误信息")
+    private String message; // 错误信息
+
+    private static final long serialVersionUID = 1L; // 序列化版本号
+}
@@ -0,0 +1,83 @@
+package com.yangjiayu.exam_system_server_online.vo;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 学生答题用的试卷Vo - 不包含标准答案、解析和选项的对错
+ * 由试卷快照生成，考试过程中返回给学生，避免答案泄露
+ */
+@Data
+@Schema(description = "学生答题试卷信息（不含答案）")
+public class StudentPaperVo {
+
+    @Schema(description = "试卷ID", example = "1")
+    private Long id; // 试卷ID
+
+    @Schema(description = "试卷名称", example = "Java基础知识测试")
+    private String name; // 试卷名称
+
+    @Schema(description = "试卷描述")
+    private String description; // 试卷描述
+
+    @Schema(description = "试卷总分", example = "100.0")
+    private BigDecimal totalScore; // 总分
+
+    @Schema(description = "题目数量", example = "20")
+    private Integer questionCount; // 题目数量
+
+    @Schema(description = "考试时长（分钟）", example = "120")
+    private Integer duration; // 考试时长
+
+    @Schema(description = "题目列表，按 选择 -> 判断 -> 简答 排序")
+    private List<StudentQuestionDto> questions; // 题目列表
+
+    /**
+     * 题目（不含答案和解析）
+     */
+    @Data
+    @Schema(description = "学生答题题目信息（不含答案）")
+    public static class StudentQuestionDto {
+
+        @Schema(description = "题目ID", example = "1")
+        private Long id; // 题目ID
+
+        @Schema(description = "题目标题内容")
+        private String title; // 题目标题
+
+        @Schema(description = "题目类型", allowableValues = {"CHOICE", "JUDGE", "TEXT"})
+        private String type; // 题目类型
+
+        @Schema(description = "是否为多选题（仅选择题有效）")
+        private Boolean multi; // 是否为多选题
+
+        @Schema(description = "题目难度级别", allowableValues = {"EASY", "MEDIUM", "HARD"})
+        private String difficulty; // 难度
+
+        @Schema(description = "题目在本试卷中的分值", example = "5")
+        private BigDecimal paperScore; // 试卷中的分值
+
+        @Schema(description = "选择题选项列表（不含对错）")
+        private List<StudentChoiceDto> choices; // 选择题选项
+    }
+
+    /**
+     * 选项（不含对错）
+     */
+    @Data
+    @Schema(description = "学生答题选项信息（不含对错）")
+    public static class StudentChoiceDto {
+
+        @Schema(description = "选项ID", example = "1")
+        private Long id; // 选项ID
+
+        @Schema(description = "选项内容")
+        private String content; // 选项内容
+
+        @Schema(description = "选项排序序号", example = "0")
+        private Integer sort; // 排序
+    }
+}
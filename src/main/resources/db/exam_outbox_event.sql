@@ -0,0 +1,18 @@
+-- 考试事件发件箱表（必须执行）
+-- 开始考试 交卷 判卷 删除考试记录都在同一个事务中写入这张表，没有这张表这些操作全部失败
+-- for update skip locked 需要 mysql 8.0+
+create table if not exists exam_outbox_event (
+    id             bigint primary key auto_increment,
+    event_type     varchar(20) not null comment '事件类型：STARTED SUBMITTED GRADED DELETED',
+    exam_record_id bigint      not null comment '考试记录ID',
+    paper_id       int                  comment '试卷ID',
+    student_name   varchar(50)          comment '考生姓名',
+    record_status  varchar(20)          comment '事件发生时考试记录的状态',
+    score          int                  comment '事件发生时考试记录的得分',
+    publish_status tinyint     not null default 0 comment '0-待发布 1-已发布 2-发布失败',
+    attempts       int         not null default 0 comment '发布失败次数',
+    create_time    datetime    not null default current_timestamp,
+    publish_time   datetime,
+    key idx_exam_outbox_pending (publish_status, id),
+    key idx_exam_outbox_published (publish_status, publish_time)
+) comment '考试事件发件箱';
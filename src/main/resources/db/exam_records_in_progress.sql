@@ -0,0 +1,18 @@
+-- 同一个学生同一张试卷只能有一条进行中的考试记录（必须执行）
+-- 开始考试的分布式锁在redis不可用时会跳过，这个唯一索引是重复进行中记录的最后一道防线，
+-- 插入冲突抛出 DuplicateKeyException 后返回已经存在的进行中记录
+-- mysql没有部分唯一索引，使用生成列：只有进行中的记录有值，其他状态为NULL（唯一索引允许多个NULL）
+
+-- 1.先检查是否已经存在重复的进行中记录，有结果时先把多余的记录交卷或者删除，否则第2步建索引失败
+select exam_id, student_name, count(*) as in_progress_count
+from exam_records
+where `status` = '进行中'
+  and is_deleted = 0
+group by exam_id, student_name
+having count(*) > 1;
+
+-- 2.生成列 + 唯一索引
+alter table exam_records
+    add column in_progress_key varchar(128)
+        generated always as (if(`status` = '进行中' and is_deleted = 0, concat(exam_id, ':', student_name), null)) virtual,
+    add unique index uk_exam_records_in_progress (in_progress_key);
@@ -0,0 +1,82 @@
+package com.yangjiayu.exam_system_server_online;
+
+import com.alibaba.fastjson.JSONObject;
+import com.yangjiayu.exam_system_server_online.utils.JsonArrayStreamParser;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 增量json数组解析器测试类
+ *
+ * 测试 JsonArrayStreamParser 的核心功能:
+ * 1. 内容被切成任意小段到达时，逐个返回完整的对象
+ * 2. 忽略json前后的说明文字和代码块标记
+ * 3. 字符串中的括号 引号转义不影响切分
+ * 4. 数组结束后的内容忽略
+ *
+ * @author Yangjiayu
+ * @description 流式ai出题解析测试
+ */
+@DisplayName("增量json数组解析器测试")
+public class JsonArrayStreamParserTest {
+
+    private static final String RESPONSE = "好的，下面是生成的题目：\n```json\n"
+        + "{\n  \"questions\": [\n"
+        + "    {\"title\": \"Java中{}表示什么？\", \"type\": \"TEXT\", \"answer\": \"代码块\"},\n"
+        + "    {\"title\": \"下列说法\\\"正确\\\"的是[ ]\", \"type\": \"CHOICE\", \"multi\": false,\n"
+        + "     \"choices\": [{\"content\": \"A]\", \"isCorrect\": true, \"sort\": 1}, {\"content\": \"}B\", \"isCorrect\": false, \"sort\": 2}]},\n"
+        + "    {\"title\": \"String是基本类型\", \"type\": \"JUDGE\", \"answer\": \"FALSE\"}\n"
+        + "  ]\n}\n```\n以上题目供参考 [完]";
+
+    @Test
+    @DisplayName("测试1: 一次输入完整内容")
+    public void testFeedWhole() {
+        JsonArrayStreamParser parser = new JsonArrayStreamParser();
+        List<String> items = parser.feed(RESPONSE);
+
+        assertEquals(3, items.size());
+        assertTrue(parser.isFinished());
+        assertEquals("Java中{}表示什么？", JSONObject.parseObject(items.get(0)).getString("title"));
+        assertEquals(2, JSONObject.parseObject(items.get(1)).getJSONArray("choices").size());
+        assertEquals("FALSE", JSONObject.parseObject(items.get(2)).getString("answer"));
+    }
+
+    @Test
+    @DisplayName("测试2: 逐个字符输入，题目完整时立即返回")
+    public void testFeedCharByChar() {
+        JsonArrayStreamParser parser = new JsonArrayStreamParser();
+        List<String> items = new ArrayList<>();
+        int firstItemAt = -1;
+        for (int i = 0; i < RESPONSE.length(); i++) {
+            items.addAll(parser.feed(String.valueOf(RESPONSE.charAt(i))));
+            if (firstItemAt == -1 && !items.isEmpty()) {
+                firstItemAt = i;
+            }
+        }
+
+        assertEquals(3, items.size());
+        // 第一道题在它的右括号到达时就返回，不需要等待全部内容
+        assertEquals(RESPONSE.indexOf("代码块\"}") + "代码块\"}".length() - 1, firstItemAt);
+        assertEquals("下列说法\"正确\"的是[ ]", JSONObject.parseObject(items.get(1)).getString("title"));
+    }
+
+    @Test
+    @DisplayName("测试3: 直接返回数组")
+    public void testRootArray() {
+        JsonArrayStreamParser parser = new JsonArrayStreamParser();
+        List<String> items = new ArrayList<>();
+        items.addAll(parser.feed("[{\"score\": 1}, {\"sc"));
+        assertEquals(1, items.size());
+        items.addAll(parser.feed("ore\": 2}]"));
+
+        assertEquals(2, items.size());
+        assertEquals(2, JSONObject.parseObject(items.get(1)).getInteger("score"));
+        assertTrue(parser.isFinished());
+        assertTrue(parser.feed("[{\"score\": 3}]").isEmpty());
+    }
+}
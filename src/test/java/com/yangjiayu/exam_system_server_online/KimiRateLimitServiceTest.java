@@ -0,0 +1,82 @@
+package com.yangjiayu.exam_system_server_online;
+
+import com.yangjiayu.exam_system_server_online.config.properties.KimiRateLimitProperties;
+import com.yangjiayu.exam_system_server_online.service.KimiRateLimitService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.redisson.api.RPermitExpirableSemaphore;
+import org.redisson.api.RRateLimiter;
+import org.redisson.api.RedissonClient;
+import org.redisson.misc.CompletableFutureWrapper;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * kimi调用限流测试类
+ *
+ * 测试 KimiRateLimitService 的在途许可排队:
+ * 1. 在途许可被占满时，等待到截止时间就放弃，抛出 RateLimitTimeoutException
+ * 2. 信号量的等待时间和租期使用同一个单位（毫秒）
+ *
+ * redisson使用mock：信号量在等待时间到期之前拿不到许可，到期返回null（和真实的超时行为一致）
+ *
+ * @author Yangjiayu
+ * @description 限流排队截止时间测试
+ */
+@DisplayName("kimi调用限流测试")
+public class KimiRateLimitServiceTest {
+
+    private RPermitExpirableSemaphore semaphore;
+    private KimiRateLimitService kimiRateLimitService;
+
+    @BeforeEach
+    public void setUp() {
+        RedissonClient redissonClient = mock(RedissonClient.class);
+        RRateLimiter rateLimiter = mock(RRateLimiter.class);
+        semaphore = mock(RPermitExpirableSemaphore.class);
+        when(redissonClient.getRateLimiter(anyString())).thenReturn(rateLimiter);
+        when(redissonClient.getPermitExpirableSemaphore(anyString())).thenReturn(semaphore);
+        when(rateLimiter.trySetRateAsync(any(), anyLong(), anyLong(), any())).thenReturn(new CompletableFutureWrapper<>(true));
+        when(rateLimiter.tryAcquireAsync(anyLong(), anyLong(), any())).thenReturn(new CompletableFutureWrapper<>(true));
+        when(semaphore.trySetPermitsAsync(anyInt())).thenReturn(new CompletableFutureWrapper<>(true));
+        //在途许可已经占满：等待时间到期返回null
+        when(semaphore.tryAcquireAsync(anyLong(), anyLong(), any())).thenAnswer(invocation -> {
+            long waitTime = invocation.getArgument(0);
+            TimeUnit unit = invocation.getArgument(2);
+            CompletableFuture<String> timeout = CompletableFuture.supplyAsync(() -> null,
+                CompletableFuture.delayedExecutor(waitTime, unit));
+            return new CompletableFutureWrapper<>(timeout);
+        });
+
+        KimiRateLimitProperties properties = new KimiRateLimitProperties();
+        properties.setAcquireTimeoutSeconds(1);
+        properties.setPermitLeaseSeconds(180);
+        kimiRateLimitService = new KimiRateLimitService(redissonClient, properties);
+    }
+
+    @Test
+    @DisplayName("测试1: 在途许可占满时等待到截止时间放弃")
+    public void testAcquireGivesUpAtDeadline() {
+        long start = System.currentTimeMillis();
+        assertThrows(KimiRateLimitService.RateLimitTimeoutException.class,
+            () -> kimiRateLimitService.acquire(100).block(Duration.ofSeconds(10)));
+        long elapsed = System.currentTimeMillis() - start;
+        assertTrue(elapsed < 3000, "排队应该在1秒左右放弃，实际等待" + elapsed + "ms");
+    }
+
+    @Test
+    @DisplayName("测试2: 等待时间和租期都按毫秒传给信号量")
+    public void testWaitTimeAndLeaseInMillis() {
+        assertThrows(KimiRateLimitService.RateLimitTimeoutException.class,
+            () -> kimiRateLimitService.acquire(100).block(Duration.ofSeconds(10)));
+        verify(semaphore).tryAcquireAsync(longThat(waitTime -> waitTime > 0 && waitTime <= 1000),
+            eq(TimeUnit.SECONDS.toMillis(180)), eq(TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,149 @@
+package com.yangjiayu.exam_system_server_online;
+
+import com.baomidou.mybatisplus.core.MybatisConfiguration;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.yangjiayu.exam_system_server_online.entity.Question;
+import com.yangjiayu.exam_system_server_online.entity.QuestionChoice;
+import com.yangjiayu.exam_system_server_online.entity.VO.QuestionQueryVo;
+import com.yangjiayu.exam_system_server_online.mapper.QuestionChoiceMapper;
+import com.yangjiayu.exam_system_server_online.mapper.QuestionMapper;
+import com.yangjiayu.exam_system_server_online.service.QuestionSearchService;
+import com.yangjiayu.exam_system_server_online.service.impl.QuestionServiceImpl;
+import org.apache.ibatis.builder.xml.XMLMapperBuilder;
+import org.apache.ibatis.io.Resources;
+import org.apache.ibatis.mapping.ResultMap;
+import org.apache.ibatis.mapping.ResultMapping;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * 题目分页查询次数测试类
+ *
+ * customPageService 原来用 resultMap collection select 分步查询选项，每道题一次选项查询（1+n次），
+ * 现在一次in查询当前页所有选项:
+ * 1. 每页10-500道题，固定2次查询（题目分页 + 选项），不再按题目逐个查询选项
+ * 2. 选项按题目id分组 按sort正序赋值，题目顺序保持分页查询的顺序
+ * 3. 解析真实的 QuestionMapper.xml：分页查询的结果映射中没有嵌套查询（collection select），每一行不会再触发查询
+ *
+ * 单元测试没有数据库，只统计查询次数，不比较耗时
+ *
+ * @author Yangjiayu
+ * @description 题目分页查询1+n问题的查询次数
+ */
+@ExtendWith(MockitoExtension.class)
+@DisplayName("题目分页查询次数测试")
+public class QuestionPageQueryCountTest {
+
+    private static final int CHOICES_PER_QUESTION = 4;
+
+    @Mock
+    private QuestionMapper questionMapper;
+
+    @Mock
+    private QuestionChoiceMapper questionChoiceMapper;
+
+    @Mock
+    private QuestionSearchService questionSearchService;
+
+    @InjectMocks
+    private QuestionServiceImpl questionService;
+
+    @ParameterizedTest(name = "每页{0}道题")
+    @ValueSource(ints = {10, 50, 100, 200, 500})
+    @DisplayName("测试1: 分页查询选项的查询次数和赋值顺序")
+    public void testQueryCount(int pageSize) {
+        doAnswer(invocation -> {
+            IPage<Question> page = invocation.getArgument(0);
+            page.setRecords(questions(pageSize));
+            return page;
+        }).when(questionMapper).selectQuestionPage(any(), any());
+        when(questionChoiceMapper.selectList(any())).thenAnswer(invocation -> {
+            //in查询没有排序：题目倒序 选项sort倒序
+            List<QuestionChoice> choices = new ArrayList<>();
+            for (long questionId = pageSize; questionId >= 1; questionId--) {
+                choices.addAll(choices(questionId));
+            }
+            return choices;
+        });
+
+        Page<Question> page = new Page<>(1, pageSize);
+        questionService.customPageService(page, new QuestionQueryVo());
+
+        //固定2次查询：题目分页 + 一次in查询选项
+        verify(questionMapper, times(1)).selectQuestionPage(any(), any());
+        verify(questionChoiceMapper, times(1)).selectList(any());
+
+        //题目保持分页查询的顺序，选项按sort正序
+        assertEquals(pageSize, page.getRecords().size());
+        for (int i = 0; i < pageSize; i++) {
+            Question question = page.getRecords().get(i);
+            assertEquals(i + 1L, question.getId());
+            List<QuestionChoice> actual = question.getChoices();
+            assertEquals(CHOICES_PER_QUESTION, actual.size());
+            for (int j = 0; j < CHOICES_PER_QUESTION; j++) {
+                assertEquals(question.getId(), actual.get(j).getQuestionId());
+                assertEquals(j, actual.get(j).getSort());
+                assertEquals(question.getId() + "-" + (char) ('A' + j), actual.get(j).getContent());
+            }
+        }
+    }
+
+    @Test
+    @DisplayName("测试2: 分页查询的结果映射没有嵌套查询")
+    public void testNoNestedQueryInMapper() throws Exception {
+        MybatisConfiguration configuration = new MybatisConfiguration();
+        String resource = "mapper/QuestionMapper.xml";
+        try (InputStream inputStream = Resources.getResourceAsStream(resource)) {
+            new XMLMapperBuilder(inputStream, configuration, resource, configuration.getSqlFragments()).parse();
+        }
+        String statementId = QuestionMapper.class.getName() + ".selectQuestionPage";
+        for (ResultMap resultMap : configuration.getMappedStatement(statementId).getResultMaps()) {
+            assertFalse(resultMap.hasNestedQueries(), "分页查询的结果映射不能有嵌套查询（每一行触发一次查询）");
+            for (ResultMapping resultMapping : resultMap.getResultMappings()) {
+                assertNull(resultMapping.getNestedQueryId(), resultMapping.getProperty() + "不能使用分步查询");
+            }
+        }
+    }
+
+    private static List<Question> questions(int size) {
+        List<Question> questions = new ArrayList<>(size);
+        for (long id = 1; id <= size; id++) {
+            Question question = new Question();
+            question.setId(id);
+            question.setType("CHOICE");
+            question.setTitle("第" + id + "题");
+            questions.add(question);
+        }
+        return questions;
+    }
+
+    /**
+     * 一道题的选项，顺序和sort相反（in查询没有排序，由java代码排序）
+     */
+    private static List<QuestionChoice> choices(Long questionId) {
+        List<QuestionChoice> choices = new ArrayList<>(CHOICES_PER_QUESTION);
+        for (int sort = CHOICES_PER_QUESTION - 1; sort >= 0; sort--) {
+            QuestionChoice choice = new QuestionChoice();
+            choice.setQuestionId(questionId);
+            choice.setSort(sort);
+            choice.setContent(questionId + "-" + (char) ('A' + sort));
+            choices.add(choice);
+        }
+        return choices;
+    }
+}
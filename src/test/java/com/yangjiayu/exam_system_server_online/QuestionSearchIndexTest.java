@@ -0,0 +1,108 @@
+package com.yangjiayu.exam_system_server_online;
+
+import com.yangjiayu.exam_system_server_online.entity.Question;
+import com.yangjiayu.exam_system_server_online.entity.QuestionChoice;
+import com.yangjiayu.exam_system_server_online.utils.QuestionSearchIndex;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 题目检索索引测试类
+ *
+ * 测试 QuestionSearchIndex 的核心功能:
+ * 1. 关键字所有二元组都出现才命中，标题 解析 选项内容都能检索到，标题命中的排在前面
+ * 2. 分类 类型 难度过滤和分页
+ * 3. 修改题目替换原来的索引内容，删除题目之后检索不到
+ *
+ * @author Yangjiayu
+ * @description 题目检索索引测试
+ */
+@DisplayName("题目检索索引测试")
+public class QuestionSearchIndexTest {
+
+    @Test
+    @DisplayName("测试1: 关键字检索和相关度排序")
+    public void testSearchRanking() {
+        QuestionSearchIndex index = new QuestionSearchIndex();
+        index.put(question(1L, "Java中的多态是什么？", "多态是面向对象的特性", "CHOICE", 1L, "EASY", 1000L, "重载", "重写"));
+        index.put(question(2L, "下列关于接口的说法正确的是", "Java中的多态通过接口实现", "CHOICE", 1L, "EASY", 2000L));
+        index.put(question(3L, "下列哪个是线程安全的集合", "略", "CHOICE", 2L, "HARD", 3000L, "ConcurrentHashMap", "HashMap"));
+        index.put(question(4L, "JVM垃圾回收", "略", "TEXT", 2L, "HARD", 4000L));
+
+        //标题命中的排在解析命中的前面
+        QuestionSearchIndex.SearchResult result = index.search("中的多态", null, null, null, 0, 10);
+        assertEquals(List.of(1L, 2L), result.ids());
+        assertEquals(2L, result.total());
+
+        //选项内容 + 全角 大小写规范化
+        assertEquals(List.of(3L), index.search("ＣｏｎｃｕｒｒｅｎｔHASH", null, null, null, 0, 10).ids());
+
+        //二元组不全部出现不命中
+        assertEquals(0L, index.search("多态回收", null, null, null, 0, 10).total());
+        //规范化后不足2个字符不检索
+        assertEquals(0L, index.search("多", null, null, null, 0, 10).total());
+    }
+
+    @Test
+    @DisplayName("测试2: 条件过滤和分页")
+    public void testFilterAndPage() {
+        QuestionSearchIndex index = new QuestionSearchIndex();
+        for (long id = 1; id <= 5; id++) {
+            index.put(question(id, "集合框架第" + id + "题", "略", id % 2 == 0 ? "JUDGE" : "CHOICE", id <= 3 ? 1L : 2L, "MEDIUM", id * 1000));
+        }
+
+        //相关度相同按创建时间倒序
+        assertEquals(List.of(5L, 4L, 3L, 2L, 1L), index.search("集合框架", null, null, null, 0, 10).ids());
+        QuestionSearchIndex.SearchResult page = index.search("集合框架", null, null, null, 2, 2);
+        assertEquals(List.of(3L, 2L), page.ids());
+        assertEquals(5L, page.total());
+
+        assertEquals(List.of(3L, 1L), index.search("集合框架", 1L, "CHOICE", null, 0, 10).ids());
+        assertEquals(List.of(4L), index.search("集合框架", 2L, "JUDGE", "MEDIUM", 0, 10).ids());
+        assertEquals(0L, index.search("集合框架", null, null, "HARD", 0, 10).total());
+    }
+
+    @Test
+    @DisplayName("测试3: 修改和删除题目")
+    public void testUpdateAndRemove() {
+        QuestionSearchIndex index = new QuestionSearchIndex();
+        index.put(question(1L, "Spring事务传播行为", "略", "TEXT", 1L, "HARD", 1000L));
+        assertEquals(List.of(1L), index.search("事务传播", null, null, null, 0, 10).ids());
+
+        //修改标题：旧的内容检索不到，没有创建时间时保留原来的创建时间
+        Question updated = question(1L, "Spring Bean的生命周期", "略", "TEXT", 1L, "HARD", 0L);
+        updated.setCreateTime(null);
+        index.put(updated);
+        assertEquals(0L, index.search("事务传播", null, null, null, 0, 10).total());
+        assertEquals(List.of(1L), index.search("生命周期", null, null, null, 0, 10).ids());
+        assertEquals(1, index.size());
+
+        index.remove(1L);
+        assertEquals(0L, index.search("生命周期", null, null, null, 0, 10).total());
+        assertEquals(0, index.size());
+    }
+
+    private static Question question(Long id, String title, String analysis, String type, Long categoryId,
+                                     String difficulty, long createTime, String... choiceContents) {
+        Question question = new Question();
+        question.setId(id);
+        question.setTitle(title);
+        question.setAnalysis(analysis);
+        question.setType(type);
+        question.setCategoryId(categoryId);
+        question.setDifficulty(difficulty);
+        question.setCreateTime(new Date(createTime));
+        question.setChoices(Arrays.stream(choiceContents).map(content -> {
+            QuestionChoice choice = new QuestionChoice();
+            choice.setContent(content);
+            return choice;
+        }).toList());
+        return question;
+    }
+}
@@ -0,0 +1,129 @@
+package com.yangjiayu.exam_system_server_online;
+
+import com.yangjiayu.exam_system_server_online.utils.ScoreStatistics;
+import com.yangjiayu.exam_system_server_online.vo.PaperStatsVo;
+import com.yangjiayu.exam_system_server_online.vo.QuestionStatsVo;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 试卷成绩统计计算测试类
+ *
+ * 测试 ScoreStatistics 的核心功能:
+ * 1. 分数分布计算平均分 标准差 百分位数 分数段
+ * 2. 两份分数分布累加之后的结果和一次性统计相同
+ * 3. 单题的正确率 难度 区分度（和直接计算的相关系数一致）
+ *
+ * @author Yangjiayu
+ * @description 成绩统计计算测试
+ */
+@DisplayName("试卷成绩统计计算测试")
+public class ScoreStatisticsTest {
+
+    @Test
+    @DisplayName("测试1: 分数分布计算整体统计")
+    public void testSummarize() {
+        TreeMap<Integer, Long> distribution = new TreeMap<>();
+        distribution.put(60, 2L);
+        distribution.put(80, 1L);
+        distribution.put(100, 1L);
+        PaperStatsVo statsVo = new PaperStatsVo();
+        ScoreStatistics.summarize(statsVo, distribution, 100);
+
+        assertEquals(4L, statsVo.getCount());
+        assertEquals(75D, statsVo.getMean(), 1e-9);
+        assertEquals(Math.sqrt(275D), statsVo.getStddev(), 1e-9);
+        assertEquals(60, statsVo.getMin());
+        assertEquals(100, statsVo.getMax());
+        assertEquals(60, statsVo.getPercentiles().get("p25"));
+        assertEquals(60, statsVo.getPercentiles().get("p50"));
+        assertEquals(80, statsVo.getPercentiles().get("p75"));
+        assertEquals(100, statsVo.getPercentiles().get("p90"));
+        assertEquals(10, statsVo.getHistogram().size());
+        assertEquals(2L, statsVo.getHistogram().get("60-69"));
+        assertEquals(1L, statsVo.getHistogram().get("90-100"));
+    }
+
+    @Test
+    @DisplayName("测试2: 分数分布累加之后和一次性统计结果相同")
+    public void testMerge() {
+        int[] scores = {35, 72, 72, 88, 91, 100, 64, 72, 50, 99};
+        TreeMap<Integer, Long> all = new TreeMap<>();
+        TreeMap<Integer, Long> merged = new TreeMap<>();
+        TreeMap<Integer, Long> right = new TreeMap<>();
+        for (int i = 0; i < scores.length; i++) {
+            all.merge(scores[i], 1L, Long::sum);
+            (i < 4 ? merged : right).merge(scores[i], 1L, Long::sum);
+        }
+        right.forEach((score, count) -> merged.merge(score, count, Long::sum));
+
+        PaperStatsVo expected = new PaperStatsVo();
+        ScoreStatistics.summarize(expected, all, 100);
+        PaperStatsVo actual = new PaperStatsVo();
+        ScoreStatistics.summarize(actual, merged, 100);
+        assertEquals(expected, actual);
+    }
+
+    @Test
+    @DisplayName("测试3: 单题正确率 难度 区分度")
+    public void testAnalyze() {
+        //四个考生：总分 100 80 60 60，前两人答对这道题（5分）
+        int[] totals = {100, 80, 60, 60};
+        int[] correct = {1, 1, 0, 0};
+        QuestionStatsVo questionStats = new QuestionStatsVo();
+        questionStats.setMaxScore(5);
+        questionStats.setAttempts(4L);
+        questionStats.setCorrectCount(2L);
+        questionStats.setEarnedSum(10L);
+        questionStats.setTotalSum(300L);
+        questionStats.setCorrectTotalSum(180L);
+        ScoreStatistics.analyze(questionStats, Math.sqrt(275D));
+
+        assertEquals(0.5D, questionStats.getCorrectRate(), 1e-9);
+        assertEquals(0.5D, questionStats.getDifficulty(), 1e-9);
+        assertEquals(pearson(correct, totals), questionStats.getDiscrimination(), 1e-9);
+    }
+
+    @Test
+    @DisplayName("测试4: 没有数据和所有人都答对")
+    public void testEdgeCases() {
+        PaperStatsVo statsVo = new PaperStatsVo();
+        ScoreStatistics.summarize(statsVo, new TreeMap<>(), 100);
+        assertEquals(0L, statsVo.getCount());
+        assertNull(statsVo.getMin());
+        assertTrue(statsVo.getPercentiles().isEmpty());
+
+        QuestionStatsVo questionStats = new QuestionStatsVo();
+        questionStats.setAttempts(3L);
+        questionStats.setCorrectCount(3L);
+        questionStats.setTotalSum(240L);
+        questionStats.setCorrectTotalSum(240L);
+        ScoreStatistics.analyze(questionStats, 10D);
+        assertEquals(1D, questionStats.getCorrectRate(), 1e-9);
+        assertEquals(0D, questionStats.getDiscrimination(), 1e-9);
+    }
+
+    private double pearson(int[] x, int[] y) {
+        double meanX = 0;
+        double meanY = 0;
+        for (int i = 0; i < x.length; i++) {
+            meanX += x[i];
+            meanY += y[i];
+        }
+        meanX /= x.length;
+        meanY /= y.length;
+        double covariance = 0;
+        double varianceX = 0;
+        double varianceY = 0;
+        for (int i = 0; i < x.length; i++) {
+            covariance += (x[i] - meanX) * (y[i] - meanY);
+            varianceX += (x[i] - meanX) * (x[i] - meanX);
+            varianceY += (y[i] - meanY) * (y[i] - meanY);
+        }
+        return covariance / Math.sqrt(varianceX * varianceY);
+    }
+}